@@ -0,0 +1,113 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static gitlet.StatusBenchmark.gitlet;
+import static gitlet.Utils.*;
+
+/**
+ * Times a bulk 'gitlet add' and the following commit.  Usage:
+ *
+ * <pre>
+ *   java gitlet.AddBenchmark [FILES [SIZE]]
+ * </pre>
+ *
+ * Creates a repository in a temporary directory holding FILES new files
+ * (default 5000) of SIZE bytes each (default 16384), and runs 'add .' and
+ * then 'commit', each as a separate process.
+ *
+ * <p>Prints a CSV summary to the standard output: the numbers of files
+ * and threads, the file size, and for each command its wall-clock time in
+ * milliseconds and its rates in files and bytes per second.
+ *
+ * @author ian t
+ */
+public class AddBenchmark {
+
+    /**
+     * @param dir   is an empty directory.
+     * @param files is the number of files.
+     * @param size  is the size of each file.
+     *              Create a repository in DIR holding FILES random files
+     *              of SIZE bytes.
+     */
+    static void setUp(File dir, int files, int size)
+        throws IOException, InterruptedException {
+        gitlet(dir, "init");
+        Random rand = new Random(0);
+        byte[] data = new byte[size];
+        for (int k = 0; k < files; k += 1) {
+            rand.nextBytes(data);
+            writeContents(join(dir, String.format("f%06d.txt", k)), data);
+        }
+    }
+
+    /**
+     * @param dir  is a repository.
+     * @param args is a gitlet command.
+     * @return the wall-clock time in milliseconds of running ARGS in DIR.
+     */
+    static double time(File dir, String... args)
+        throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        gitlet(dir, args);
+        return (System.nanoTime() - start) * 1e-6;
+    }
+
+    /**
+     * @param label is the name of a command.
+     * @param ms    is its time in milliseconds.
+     * @param files is the number of files it handled.
+     * @param bytes is the number of bytes it handled.
+     *              Print the statistics of command LABEL.
+     */
+    private static void report(String label, double ms, int files,
+                               long bytes) {
+        System.out.printf("%s_ms,%.1f%n", label, ms);
+        System.out.printf("%s_files_per_s,%.0f%n", label, files * 1e3 / ms);
+        System.out.printf("%s_bytes_per_s,%.0f%n", label, bytes * 1e3 / ms);
+    }
+
+    /**
+     * @param args is FILES and SIZE, as in the class comment.
+     *             Run the benchmark.
+     */
+    public static void main(String... args) {
+        try {
+            int files = args.length > 0 ? Integer.parseInt(args[0]) : 5000,
+                size = args.length > 1 ? Integer.parseInt(args[1]) : 16384;
+            if (files < 1 || size < 1) {
+                throw new NumberFormatException();
+            }
+            File dir = Files.createTempDirectory("gitlet-add").toFile();
+            try {
+                setUp(dir, files, size);
+                double add = time(dir, "add", ".");
+                if (plainFilenamesIn(join(dir, ".gitlet", "stage")).size()
+                        != files + 1) {
+                    throw new IOException("add did not stage every file");
+                }
+                double commit = time(dir, "commit", "benchmark");
+                long bytes = (long) files * size;
+                System.out.println("statistic,value");
+                System.out.printf("files,%d%n", files);
+                System.out.printf("file_bytes,%d%n", size);
+                System.out.printf("threads,%d%n", Stager.PARALLELISM);
+                report("add", add, files, bytes);
+                report("commit", commit, files, bytes);
+            } finally {
+                deleteDirectives(dir);
+            }
+        } catch (NumberFormatException excp) {
+            System.err.println("Usage: java gitlet.AddBenchmark"
+                    + " [FILES [SIZE]]");
+            System.exit(1);
+        } catch (IOException | InterruptedException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,17 +1,40 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-
-import static gitlet.Utils.readContents;
-import static gitlet.Utils.sha1;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Formatter;
 
 /**
- * Booby stores the files content.
+ * Booby stores the files content.  A blob is stored as a file holding
+ * HEADER followed by the raw contents, so that it can be written and
+ * checked out a buffer at a time, or with FileChannel.transferTo, in
+ * constant memory.  Packs keep such files deflated.  Older repositories
+ * hold blobs as serialized Booby objects instead, which are still read.
  *
  * @author ian t
  */
 class Booby implements Serializable {
+    /**
+     * The bytes that start every blob file.
+     */
+    static final byte[] HEADER = {'b', 'l', 'o', 'b'};
+    /**
+     * Size of the buffer used to hash and copy files.
+     */
+    static final int BUFFER_SIZE = 1 << 16;
     /**
      * SUID.
      */
@@ -25,15 +48,6 @@ class Booby implements Serializable {
      */
     private String _name;
 
-    /**
-     * @param file is input file.
-     *             Blob constructor.
-     */
-    Booby(File file) {
-        _boob = readContents(file);
-        _name = "b" + sha1(_boob);
-    }
-
     /**
      * @return file name
      * get file name.
@@ -49,4 +63,138 @@ class Booby implements Serializable {
     byte[] content() {
         return _boob;
     }
+
+    /**
+     * @param file is a plain file.
+     * @return the blob id of the contents of FILE, hashed a buffer at a
+     * time.
+     */
+    static String hash(File file) {
+        MessageDigest md = digest();
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return id(md);
+    }
+
+    /**
+     * @param source is a plain file.
+     * @param dir    is the directory to hold the blob.
+     * @return the id of the contents of SOURCE, after writing them as a
+     * blob file named by that id in DIR.  The contents are hashed as they
+     * are copied, a buffer at a time, into a temporary file that is then
+     * renamed.
+     */
+    static String store(File source, File dir) {
+        MessageDigest md = digest();
+        File temp = null;
+        try (FileChannel in = FileChannel.open(source.toPath(),
+                StandardOpenOption.READ)) {
+            temp = File.createTempFile("blob", ".tmp", dir);
+            try (FileChannel out = FileChannel.open(temp.toPath(),
+                    StandardOpenOption.WRITE)) {
+                out.write(ByteBuffer.wrap(HEADER));
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    md.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            String id = id(md);
+            Files.move(temp.toPath(), new File(dir, id).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return id;
+        } catch (IOException excp) {
+            if (temp != null) {
+                temp.delete();
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @param in   is the contents of a blob object.
+     * @param dest is the file to write.
+     *             Write the contents of the blob read from IN to DEST, a
+     *             buffer at a time.
+     */
+    static void extract(InputStream in, File dest) throws IOException {
+        byte[] head = in.readNBytes(HEADER.length);
+        if (Arrays.equals(head, HEADER)) {
+            Files.copy(in, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Utils.writeContents(dest, legacy(new SequenceInputStream(
+                    new ByteArrayInputStream(head), in)).content());
+        }
+    }
+
+    /**
+     * @param data is the contents of a blob object.
+     * @return the contents of the file stored in DATA.
+     */
+    static byte[] contents(byte[] data) {
+        if (isBlob(data)) {
+            return Arrays.copyOfRange(data, HEADER.length, data.length);
+        }
+        return Utils.deserialize(data, Booby.class).content();
+    }
+
+    /**
+     * @param data is the start of a blob object.
+     * @return true iff DATA starts with HEADER, rather than being a
+     * serialized Booby.
+     */
+    static boolean isBlob(byte[] data) {
+        return data.length >= HEADER.length
+                && Arrays.equals(data, 0, HEADER.length,
+                HEADER, 0, HEADER.length);
+    }
+
+    /**
+     * @param in is a serialized Booby.
+     * @return the Booby read from IN.
+     */
+    private static Booby legacy(InputStream in) throws IOException {
+        try {
+            return Booby.class.cast(new ObjectInputStream(in).readObject());
+        } catch (ClassNotFoundException | ClassCastException excp) {
+            throw new IOException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @return a new SHA-1 digest.
+     */
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /**
+     * @param md is a digest of the contents of a file.
+     * @return the blob id of those contents.
+     */
+    private static String id(MessageDigest md) {
+        Formatter result = new Formatter();
+        for (byte b : md.digest()) {
+            result.format("%02x", b);
+        }
+        return "b" + result.toString();
+    }
 }
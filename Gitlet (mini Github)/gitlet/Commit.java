@@ -124,6 +124,13 @@ class Commit implements Serializable {
         return _adult;
     }
 
+    /**
+     * @return second parent sha1, or null if this is not a merge commit.
+     */
+    String adult2() {
+        return _adult2;
+    }
+
     /**
      * @return the hashmap.
      */
@@ -0,0 +1,411 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * The commit graph: for each commit, its parents and generation number,
+ * kept in a compact binary table so that ancestry questions need no
+ * Commit objects to be read.  The generation of a commit is one more
+ * than the largest generation of its parents (1 for the initial commit),
+ * so a commit can only be an ancestor of commits with larger generations,
+ * which bounds every search.
+ *
+ * <p>Commits are numbered in the order they were added, which puts
+ * parents before children.  The file holds the ints MAGIC and VERSION,
+ * then one record per commit in that order: its 20 SHA-1 bytes, the
+ * numbers of its first and second parents (NONE if absent), and its
+ * generation, all big-endian.  The file is memory-mapped, and new
+ * commits are appended to it by save.  Saved commits are found by id
+ * through a hash table of their records, built when first needed, so
+ * that each lookup takes constant time.  Commits missing from the table,
+ * as in repositories made before it, are added (with their ancestors)
+ * from the ObjectStore when first asked about.
+ *
+ * @author ian t
+ */
+class CommitGraph {
+    /**
+     * Where the graph is kept.
+     */
+    static final String FILE = ".gitlet/objects/info/commit-graph";
+    /**
+     * The first int of the file.
+     */
+    static final int MAGIC = 0x47434731;
+    /**
+     * The second int of the file.
+     */
+    static final int VERSION = 1;
+    /**
+     * The number of an absent commit.
+     */
+    static final int NONE = -1;
+    /**
+     * Sizes in bytes of the file header and of each record.
+     */
+    private static final int HEADER = 8, RECORD = Pack.SHA_BYTES + 12;
+
+    /**
+     * The store holding the commits.
+     */
+    private final ObjectStore _store;
+    /**
+     * The mapped records of the file.
+     */
+    private final ByteBuffer _saved;
+    /**
+     * The number of records in _saved.
+     */
+    private final int _savedSize;
+    /**
+     * The records added since the file was read, as for _saved.
+     */
+    private final ArrayList<byte[]> _added = new ArrayList<>();
+    /**
+     * Maps the ids of commits in _added to their numbers.
+     */
+    private final HashMap<String, Integer> _addedNumbers = new HashMap<>();
+    /**
+     * A hash table of the saved records, or null until first needed: each
+     * slot is 0 or one more than the number of a saved commit, which is
+     * placed by the first four bytes of its SHA-1, probing linearly.
+     */
+    private int[] _slots;
+    /**
+     * The number of records in _added already written by save.
+     */
+    private int _written;
+
+    /**
+     * @param store is the store holding the commits.
+     *              The graph saved in FILE, which need not exist, of the
+     *              commits in STORE.
+     */
+    CommitGraph(ObjectStore store) {
+        _store = store;
+        ByteBuffer saved = ByteBuffer.allocate(0);
+        File file = new File(FILE);
+        if (file.isFile()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ)) {
+                saved = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        channel.size());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        if (saved.capacity() < HEADER || saved.getInt(0) != MAGIC
+                || saved.getInt(4) != VERSION) {
+            _savedSize = 0;
+        } else {
+            _savedSize = (saved.capacity() - HEADER) / RECORD;
+        }
+        _saved = saved;
+    }
+
+    /**
+     * @return the number of commits in the graph.
+     */
+    int size() {
+        return _savedSize + _added.size();
+    }
+
+    /**
+     * @param k is a commit number.
+     * @return the id of commit K.
+     */
+    String id(int k) {
+        byte[] sha = new byte[Pack.SHA_BYTES];
+        record(k).get(sha);
+        return Pack.toId('c', sha);
+    }
+
+    /**
+     * @param k     is a commit number.
+     * @param which is 0 for the first parent and 1 for the second.
+     * @return the number of parent WHICH of commit K, or NONE.
+     */
+    int parent(int k, int which) {
+        return record(k).getInt(Pack.SHA_BYTES + 4 * which);
+    }
+
+    /**
+     * @param k is a commit number.
+     * @return the generation of commit K.
+     */
+    int generation(int k) {
+        return record(k).getInt(Pack.SHA_BYTES + 8);
+    }
+
+    /**
+     * @param k is a commit number.
+     * @return a buffer whose bytes from 0 are record K.
+     */
+    private ByteBuffer record(int k) {
+        if (k < _savedSize) {
+            return _saved.duplicate().position(HEADER + k * RECORD).slice();
+        }
+        return ByteBuffer.wrap(_added.get(k - _savedSize));
+    }
+
+    /**
+     * @param id is a commit id.
+     * @return the number of commit ID, or NONE if it is not in the graph.
+     */
+    int find(String id) {
+        Integer k = _addedNumbers.get(id);
+        if (k != null) {
+            return k;
+        }
+        byte[] sha = Pack.shaBytes(id);
+        if (sha == null || id.charAt(0) != 'c' || _savedSize == 0) {
+            return NONE;
+        }
+        int[] slots = slots();
+        int mask = slots.length - 1;
+        for (int s = ByteBuffer.wrap(sha).getInt() & mask; slots[s] != 0;
+             s = (s + 1) & mask) {
+            if (matches(slots[s] - 1, sha)) {
+                return slots[s] - 1;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @return _slots, building it if needed with at least twice as many
+     * slots as saved records.
+     */
+    private int[] slots() {
+        if (_slots == null) {
+            int[] slots = new int[Integer.highestOneBit(_savedSize) * 4];
+            int mask = slots.length - 1;
+            for (int k = 0; k < _savedSize; k += 1) {
+                int s = _saved.getInt(HEADER + k * RECORD) & mask;
+                while (slots[s] != 0) {
+                    s = (s + 1) & mask;
+                }
+                slots[s] = k + 1;
+            }
+            _slots = slots;
+        }
+        return _slots;
+    }
+
+    /**
+     * @param k   is the number of a saved commit.
+     * @param sha is the SHA-1 bytes of a commit id.
+     * @return true iff commit K has id SHA.
+     */
+    private boolean matches(int k, byte[] sha) {
+        int pos = HEADER + k * RECORD;
+        for (int i = 0; i < sha.length; i += 1) {
+            if (_saved.get(pos + i) != sha[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param id is a commit id.
+     * @return the number of commit ID, first adding it and any of its
+     * ancestors missing from the graph, or NONE if there is no such
+     * commit.
+     */
+    int index(String id) {
+        int k = find(id);
+        if (k != NONE || !_store.contains(id)) {
+            return k;
+        }
+        Deque<String> work = new ArrayDeque<>();
+        work.push(id);
+        while (!work.isEmpty()) {
+            String top = work.peek();
+            if (find(top) != NONE) {
+                work.pop();
+                continue;
+            }
+            Commit commit = _store.readCommit(top);
+            String[] parents = { commit.adult(), commit.adult2() };
+            boolean ready = true;
+            for (String p : parents) {
+                if (p != null && find(p) == NONE && _store.contains(p)) {
+                    work.push(p);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                work.pop();
+                add(top, parents);
+            }
+        }
+        return find(id);
+    }
+
+    /**
+     * @param commit is a commit just made, and so not in the graph.
+     * @return the number of COMMIT, after adding it.
+     */
+    int add(Commit commit) {
+        String[] parents = { commit.adult(), commit.adult2() };
+        for (String p : parents) {
+            if (p != null) {
+                index(p);
+            }
+        }
+        add(commit.showcha2(), parents);
+        return size() - 1;
+    }
+
+    /**
+     * @param id      is a commit id.
+     * @param parents is the ids of its parents, each of which is null,
+     *                absent from the store, or already in the graph.
+     *                Add commit ID with PARENTS.
+     */
+    private void add(String id, String[] parents) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD);
+        record.put(Pack.shaBytes(id));
+        int generation = 1;
+        for (String p : parents) {
+            int k = p == null ? NONE : find(p);
+            record.putInt(k);
+            if (k != NONE) {
+                generation = Math.max(generation, generation(k) + 1);
+            }
+        }
+        record.putInt(generation);
+        _addedNumbers.put(id, size());
+        _added.add(record.array());
+    }
+
+    /**
+     * @param k is a commit number.
+     * @return the numbers of the parents of commit K.
+     */
+    private int[] parents(int k) {
+        int p0 = parent(k, 0), p1 = parent(k, 1);
+        if (p1 == NONE) {
+            return p0 == NONE ? new int[0] : new int[] { p0 };
+        }
+        return p0 == NONE ? new int[] { p1 } : new int[] { p0, p1 };
+    }
+
+    /**
+     * @param ancestor is a commit id.
+     * @param commit   is a commit id.
+     * @return true iff ANCESTOR is COMMIT or one of its ancestors, through
+     * either parent.  Only commits whose generations are at least that
+     * of ANCESTOR are visited.
+     */
+    boolean isAncestor(String ancestor, String commit) {
+        int a = index(ancestor), c = index(commit);
+        if (a == NONE || c == NONE) {
+            return false;
+        }
+        int bound = generation(a);
+        Set<Integer> seen = new HashSet<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(c);
+        seen.add(c);
+        while (!queue.isEmpty()) {
+            int k = queue.poll();
+            if (k == a) {
+                return true;
+            }
+            for (int p : parents(k)) {
+                if (generation(p) >= bound && seen.add(p)) {
+                    queue.add(p);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param id1 is a commit id.
+     * @param id2 is a commit id.
+     * @return the id of a best common ancestor of ID1 and ID2 (one that
+     * is not an ancestor of another common ancestor), or null if they
+     * have none.  Commits are visited in decreasing order of generation,
+     * marked with which of ID1 and ID2 reach them, so the first commit
+     * reached from both is such an ancestor.
+     */
+    String mergeBase(String id1, String id2) {
+        int k1 = index(id1), k2 = index(id2);
+        if (k1 == NONE || k2 == NONE) {
+            return null;
+        }
+        HashMap<Integer, Integer> marks = new HashMap<>();
+        PriorityQueue<Integer> queue = new PriorityQueue<>((x, y) ->
+            generation(x) != generation(y)
+                ? Integer.compare(generation(y), generation(x))
+                : Integer.compare(y, x));
+        marks.put(k1, 1);
+        queue.add(k1);
+        if (marks.merge(k2, 2, (x, y) -> x | y) == 2) {
+            queue.add(k2);
+        }
+        while (!queue.isEmpty()) {
+            int k = queue.poll();
+            int mark = marks.get(k);
+            if (mark == 3) {
+                return id(k);
+            }
+            for (int p : parents(k)) {
+                int old = marks.getOrDefault(p, 0);
+                if ((old | mark) != old) {
+                    marks.put(p, old | mark);
+                    if (old == 0) {
+                        queue.add(p);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Append the commits added since the file was read, or last saved, to
+     * it, creating or replacing it if it was missing or unreadable.
+     */
+    void save() {
+        if (_written == _added.size()) {
+            return;
+        }
+        File file = new File(FILE);
+        file.getParentFile().mkdirs();
+        try (FileChannel out = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long pos = HEADER + (long) (_savedSize + _written) * RECORD;
+            if (_written == 0) {
+                out.truncate(_savedSize == 0 ? 0 : pos);
+            }
+            if (_savedSize == 0 && _written == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(VERSION).flip();
+                out.write(header, 0);
+            }
+            for (; _written < _added.size(); _written += 1) {
+                ByteBuffer buffer = ByteBuffer.wrap(_added.get(_written));
+                while (buffer.hasRemaining()) {
+                    pos += out.write(buffer, pos);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
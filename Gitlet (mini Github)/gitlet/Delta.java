@@ -0,0 +1,225 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Binary deltas: encodings of one byte array (the target) as
+ * instructions to copy ranges of another (the base) and to insert new
+ * bytes.  A delta holds the lengths of the base and target, then a
+ * sequence of instructions, each either COPY followed by an offset in
+ * the base and a length, or INSERT followed by a length and that many
+ * bytes.  All numbers are unsigned varints: seven bits per byte, least
+ * significant first, the high bit marking all bytes but the last.
+ *
+ * <p>create finds copies by hashing the base in BLOCK-byte blocks and
+ * looking up a rolling hash of each BLOCK bytes of the target, extending
+ * each match as far as it goes both ways.
+ *
+ * @author ian t
+ */
+final class Delta {
+    /**
+     * The size of the blocks matched.
+     */
+    static final int BLOCK = 16;
+    /**
+     * Instruction codes.
+     */
+    static final int INSERT = 0, COPY = 1;
+    /**
+     * Multiplier of the rolling hash.
+     */
+    private static final int PRIME = 31;
+    /**
+     * PRIME to the power BLOCK - 1, with int overflow.
+     */
+    private static final int HIGH_POWER;
+
+    static {
+        int power = 1;
+        for (int i = 1; i < BLOCK; i += 1) {
+            power *= PRIME;
+        }
+        HIGH_POWER = power;
+    }
+
+    /**
+     * Not instantiable.
+     */
+    private Delta() {
+    }
+
+    /**
+     * @param base   is the base.
+     * @param target is the target.
+     * @return a delta from BASE to TARGET.
+     */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int[] table = index(base);
+        int mask = table.length - 1;
+        int literal = 0, i = 0;
+        int hash = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            int o = table[hash & mask] - 1;
+            if (o >= 0 && Arrays.equals(base, o, o + BLOCK,
+                    target, i, i + BLOCK)) {
+                int length = BLOCK;
+                while (o + length < base.length && i + length < target.length
+                        && base[o + length] == target[i + length]) {
+                    length += 1;
+                }
+                while (o > 0 && i > literal && base[o - 1] == target[i - 1]) {
+                    o -= 1;
+                    i -= 1;
+                    length += 1;
+                }
+                insert(out, target, literal, i);
+                out.write(COPY);
+                writeVarint(out, o);
+                writeVarint(out, length);
+                i += length;
+                literal = i;
+                if (i + BLOCK <= target.length) {
+                    hash = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    hash = (hash - target[i] * HIGH_POWER) * PRIME
+                        + target[i + BLOCK];
+                }
+                i += 1;
+            }
+        }
+        insert(out, target, literal, target.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param base  is the base of DELTA.
+     * @param delta is a delta.
+     * @return the target of DELTA from BASE.  Throws
+     * IllegalArgumentException if DELTA is not a delta from BASE.
+     */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        if (readVarint(delta, pos) != base.length) {
+            throw new IllegalArgumentException("delta has wrong base");
+        }
+        int size = readVarint(delta, pos);
+        if (size < 0) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        byte[] result = new byte[size];
+        int n = 0;
+        try {
+            while (pos[0] < delta.length) {
+                int op = delta[pos[0]++];
+                if (op == COPY) {
+                    int offset = readVarint(delta, pos),
+                        length = readVarint(delta, pos);
+                    System.arraycopy(base, offset, result, n, length);
+                    n += length;
+                } else if (op == INSERT) {
+                    int length = readVarint(delta, pos);
+                    System.arraycopy(delta, pos[0], result, n, length);
+                    pos[0] += length;
+                    n += length;
+                } else {
+                    throw new IllegalArgumentException("corrupt delta");
+                }
+            }
+        } catch (IndexOutOfBoundsException excp) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        if (n != result.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /**
+     * @param base is a delta base.
+     * @return a hash table of the BLOCK-byte blocks of BASE at multiples
+     * of BLOCK: entry h &amp; (length - 1) is one more than the offset of
+     * the first block with hash h, or 0.
+     */
+    private static int[] index(byte[] base) {
+        int blocks = base.length / BLOCK;
+        int size = Integer.highestOneBit(Math.max(1, 2 * blocks)) * 2;
+        int[] table = new int[size];
+        for (int o = 0; o + BLOCK <= base.length; o += BLOCK) {
+            int slot = hash(base, o) & (size - 1);
+            if (table[slot] == 0) {
+                table[slot] = o + 1;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param data  is an array.
+     * @param start is an offset in DATA.
+     * @return the rolling hash of DATA[START .. START + BLOCK - 1].
+     */
+    private static int hash(byte[] data, int start) {
+        int hash = 0;
+        for (int i = start; i < start + BLOCK; i += 1) {
+            hash = hash * PRIME + data[i];
+        }
+        return hash;
+    }
+
+    /**
+     * @param out    is where instructions are written.
+     * @param target is the target.
+     * @param start  is the first byte to insert.
+     * @param end    is one past the last.
+     *               Write to OUT an instruction inserting
+     *               TARGET[START .. END - 1], if that is not empty.
+     */
+    private static void insert(ByteArrayOutputStream out, byte[] target,
+                               int start, int end) {
+        if (start < end) {
+            out.write(INSERT);
+            writeVarint(out, end - start);
+            out.write(target, start, end - start);
+        }
+    }
+
+    /**
+     * @param out   is where to write.
+     * @param value is a non-negative number.
+     *              Write VALUE to OUT as a varint.
+     */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while (value >= 0x80) {
+            out.write(value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * @param data is an array.
+     * @param pos  is a one-element array holding the position in DATA of
+     *             a varint, which is advanced past it.
+     * @return the varint at POS[0] in DATA.
+     */
+    private static int readVarint(byte[] data, int[] pos) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos[0] >= data.length || shift > 28) {
+                throw new IllegalArgumentException("corrupt delta");
+            }
+            int b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
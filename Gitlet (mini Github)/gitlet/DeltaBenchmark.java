@@ -0,0 +1,222 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static gitlet.Utils.*;
+
+/**
+ * Compares packs of whole objects with packs of deltas.  Usage:
+ *
+ * <pre>
+ *   java gitlet.DeltaBenchmark [REVISIONS [LINES [EDITS]]]
+ * </pre>
+ *
+ * Creates an object store in a temporary directory holding REVISIONS
+ * commits (default 200) of one text file of LINES lines (default 5000),
+ * each commit changing EDITS lines of the last (default 5).  It then
+ * repacks the store with every object whole, and again with deltas of
+ * chains up to Pack.MAX_DEPTH, and for each measures the size of the
+ * objects directory and the time to check out the file: of the last
+ * commit, with a newly opened store, as a command would, and of every
+ * commit in turn, with one store and so with its cache of rebuilt
+ * objects.  Each file checked out is compared with what was committed.
+ *
+ * <p>Prints a CSV summary to the standard output: the numbers of
+ * revisions, lines and edits, the size of the loose objects, and for
+ * each kind of pack its size in bytes and checkout times in milliseconds.
+ *
+ * @author ian t
+ */
+public class DeltaBenchmark {
+
+    /**
+     * The objects directory.
+     */
+    private final File _objects;
+    /**
+     * A file to check out to.
+     */
+    private final File _dest;
+    /**
+     * The ids of the blobs of the file, oldest first.
+     */
+    private final List<String> _blobs = new ArrayList<>();
+    /**
+     * The number of revisions.
+     */
+    private final int _revisions;
+    /**
+     * The number of lines in the file.
+     */
+    private final int _lines;
+    /**
+     * The number of lines changed by each revision.
+     */
+    private final int _edits;
+
+    /**
+     * @param dir       is an empty directory.
+     * @param revisions is the number of revisions.
+     * @param lines     is the number of lines in the file.
+     * @param edits     is the number of lines each revision changes.
+     *                  A benchmark of REVISIONS revisions of a file of
+     *                  LINES lines, EDITS of them changed each time, in
+     *                  DIR.
+     */
+    DeltaBenchmark(File dir, int revisions, int lines, int edits) {
+        _objects = join(dir, "objects");
+        _dest = join(dir, "checkout.txt");
+        _revisions = revisions;
+        _lines = lines;
+        _edits = edits;
+    }
+
+    /**
+     * Commit the revisions.  Commits are built directly, as lineCommit
+     * would, rather than by running gitlet for each.
+     */
+    void setUp() {
+        _objects.mkdirs();
+        ObjectStore store = new ObjectStore(_objects);
+        Random rand = new Random(0);
+        String[] text = new String[_lines];
+        for (int i = 0; i < _lines; i += 1) {
+            text[i] = line(rand);
+        }
+        File file = join(_objects.getParentFile(), "file.txt");
+        String parent = "null";
+        for (int r = 0; r < _revisions; r += 1) {
+            for (int e = 0; r > 0 && e < _edits; e += 1) {
+                text[rand.nextInt(_lines)] = line(rand);
+            }
+            writeContents(file, (String.join("\n", text) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            Commit commit = new Commit("revision " + r, parent);
+            String blob = Booby.store(file, _objects);
+            commit.put("file.txt", blob);
+            store.write(commit.sha1(), commit);
+            _blobs.add(blob);
+            parent = commit.showcha2();
+        }
+        file.delete();
+    }
+
+    /**
+     * @param rand is the source of randomness.
+     * @return a random line of text.
+     */
+    private static String line(Random rand) {
+        StringBuilder line = new StringBuilder();
+        for (int n = 20 + rand.nextInt(60); n > 0; n -= 1) {
+            line.append((char) ('a' + rand.nextInt(26)));
+        }
+        return line.toString();
+    }
+
+    /**
+     * @return the total size of the files in the objects directory.
+     */
+    long size() throws IOException {
+        try (Stream<Path> files = Files.walk(_objects.toPath())) {
+            return files.filter(Files::isRegularFile)
+                .mapToLong(p -> p.toFile().length()).sum();
+        }
+    }
+
+    /**
+     * @param k     is a revision number.
+     * @param store is the store to read.
+     *              Check out revision K from STORE, and check it.
+     */
+    private void checkout(int k, ObjectStore store) throws IOException {
+        store.checkout(_blobs.get(k), _dest);
+        if (!Booby.hash(_dest).equals(_blobs.get(k))) {
+            throw new IOException("revision " + k + " checked out wrongly");
+        }
+    }
+
+    /**
+     * @return the time in milliseconds to check out the last revision
+     * with a new store.
+     */
+    double checkoutLast() throws IOException {
+        long start = System.nanoTime();
+        checkout(_revisions - 1, new ObjectStore(_objects));
+        return (System.nanoTime() - start) * 1e-6;
+    }
+
+    /**
+     * @return the mean time in milliseconds to check out each revision
+     * in turn, newest first, with one store.
+     */
+    double checkoutAll() throws IOException {
+        ObjectStore store = new ObjectStore(_objects);
+        long start = System.nanoTime();
+        for (int k = _revisions - 1; k >= 0; k -= 1) {
+            checkout(k, store);
+        }
+        return (System.nanoTime() - start) * 1e-6 / _revisions;
+    }
+
+    /**
+     * @param depth is the longest chain of deltas.
+     * @param label is the prefix of the statistics printed.
+     *              Repack with chains of at most DEPTH deltas, and print
+     *              the size and checkout times.
+     */
+    void measure(int depth, String label) throws IOException {
+        new ObjectStore(_objects).repack(depth);
+        /* Once to warm up the JIT compiler. */
+        checkoutAll();
+        System.out.printf("%s_bytes,%d%n", label, size());
+        System.out.printf("%s_checkout_ms_last,%.2f%n", label,
+                checkoutLast());
+        System.out.printf("%s_checkout_ms_mean,%.2f%n", label,
+                checkoutAll());
+    }
+
+    /**
+     * @param args is REVISIONS, LINES and EDITS, as in the class comment.
+     *             Run the benchmark.
+     */
+    public static void main(String... args) {
+        try {
+            int revisions = args.length > 0 ? Integer.parseInt(args[0]) : 200,
+                lines = args.length > 1 ? Integer.parseInt(args[1]) : 5000,
+                edits = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+            if (revisions < 1 || lines < 1 || edits < 0) {
+                throw new NumberFormatException();
+            }
+            File dir = Files.createTempDirectory("gitlet-delta").toFile();
+            try {
+                DeltaBenchmark bench =
+                    new DeltaBenchmark(dir, revisions, lines, edits);
+                bench.setUp();
+                System.out.println("statistic,value");
+                System.out.printf("revisions,%d%n", revisions);
+                System.out.printf("lines,%d%n", lines);
+                System.out.printf("edits,%d%n", edits);
+                System.out.printf("loose_bytes,%d%n", bench.size());
+                bench.measure(0, "whole");
+                bench.measure(Pack.MAX_DEPTH, "delta");
+            } finally {
+                deleteDirectives(dir);
+            }
+        } catch (NumberFormatException excp) {
+            System.err.println("Usage: java gitlet.DeltaBenchmark"
+                    + " [REVISIONS [LINES [EDITS]]]");
+            System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+}
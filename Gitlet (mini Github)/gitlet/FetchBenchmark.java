@@ -0,0 +1,163 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static gitlet.Utils.*;
+
+/**
+ * Times fetches between two object stores.  Usage:
+ *
+ * <pre>
+ *   java gitlet.FetchBenchmark [HISTORY [NEW [FILES]]]
+ * </pre>
+ *
+ * Creates a "remote" store in a temporary directory holding HISTORY
+ * commits (default 2000) of a tree of FILES files (default 100), each
+ * commit changing one file, and fetches it all into an empty "local"
+ * store.  It then adds NEW commits (default 10) to the remote and fetches
+ * again.  Both fetches are Transfers, run in this process.  For
+ * comparison, it also times listing the ids of both whole stores, which
+ * fetch used to do before copying anything.
+ *
+ * <p>Prints a CSV summary to the standard output: HISTORY, NEW and FILES,
+ * and for each fetch the number of objects sent and its time in
+ * milliseconds.
+ *
+ * @author ian t
+ */
+public class FetchBenchmark {
+
+    /**
+     * The sending store.
+     */
+    private final ObjectStore _remote;
+    /**
+     * The receiving store.
+     */
+    private final ObjectStore _local;
+    /**
+     * A scratch file for blob contents.
+     */
+    private final File _file;
+    /**
+     * The objects directory of _remote.
+     */
+    private final File _remoteDir;
+    /**
+     * The number of files in the tree.
+     */
+    private final int _files;
+    /**
+     * The source of file contents.
+     */
+    private final Random _rand = new Random(0);
+    /**
+     * The remote's last commit.
+     */
+    private Commit _head;
+
+    /**
+     * @param dir   is an empty directory.
+     * @param files is the number of files in the tree.
+     *              A benchmark of stores in DIR whose commits track FILES
+     *              files.
+     */
+    FetchBenchmark(File dir, int files) {
+        _remoteDir = join(dir, "remote");
+        File localDir = join(dir, "local");
+        _remoteDir.mkdirs();
+        localDir.mkdirs();
+        _remote = new ObjectStore(_remoteDir);
+        _local = new ObjectStore(localDir);
+        _file = join(dir, "file");
+        _files = files;
+        _head = new Commit("initial commit", "null");
+        _remote.write(_head.sha1(), _head);
+    }
+
+    /**
+     * @param n is the number of commits to add.
+     *          Add N commits to the remote, each changing one file, built
+     *          directly as lineCommit would.
+     */
+    @SuppressWarnings("unchecked")
+    void commit(int n) {
+        byte[] data = new byte[1024];
+        for (int k = 0; k < n; k += 1) {
+            Commit commit = new Commit("commit " + k, _head.showcha2());
+            commit.getfile().putAll(_head.getfile());
+            int changes = _head.getfile().isEmpty() ? _files : 1;
+            for (int c = 0; c < changes; c += 1) {
+                _rand.nextBytes(data);
+                writeContents(_file, data);
+                commit.put(String.format("f%04d.txt", _rand.nextInt(_files)),
+                        Booby.store(_file, _remoteDir));
+            }
+            _remote.write(commit.sha1(), commit);
+            _head = commit;
+        }
+    }
+
+    /**
+     * @param label is the prefix of the statistics printed.
+     *              Fetch the remote's head into the local store, and print
+     *              the number of objects sent and the time taken.
+     */
+    void fetch(String label) {
+        long start = System.nanoTime();
+        int sent = new Transfer(_remote, _local).send(_head.showcha2());
+        double time = (System.nanoTime() - start) * 1e-6;
+        System.out.printf("%s_objects,%d%n", label, sent);
+        System.out.printf("%s_ms,%.1f%n", label, time);
+    }
+
+    /**
+     * @return the time in milliseconds to list the ids of both stores.
+     */
+    double list() {
+        long start = System.nanoTime();
+        _remote.ids();
+        _local.ids();
+        return (System.nanoTime() - start) * 1e-6;
+    }
+
+    /**
+     * @param args is HISTORY, NEW and FILES, as in the class comment.
+     *             Run the benchmark.
+     */
+    public static void main(String... args) {
+        try {
+            int history = args.length > 0 ? Integer.parseInt(args[0]) : 2000,
+                fresh = args.length > 1 ? Integer.parseInt(args[1]) : 10,
+                files = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+            if (history < 1 || fresh < 0 || files < 1) {
+                throw new NumberFormatException();
+            }
+            File dir = Files.createTempDirectory("gitlet-fetch").toFile();
+            try {
+                FetchBenchmark bench = new FetchBenchmark(dir, files);
+                bench.commit(history);
+                System.out.println("statistic,value");
+                System.out.printf("history,%d%n", history);
+                System.out.printf("new,%d%n", fresh);
+                System.out.printf("files,%d%n", files);
+                bench.fetch("initial_fetch");
+                bench.commit(fresh);
+                bench.fetch("incremental_fetch");
+                System.out.printf("full_listing_ms,%.1f%n", bench.list());
+            } finally {
+                deleteDirectives(dir);
+            }
+        } catch (NumberFormatException excp) {
+            System.err.println("Usage: java gitlet.FetchBenchmark"
+                    + " [HISTORY [NEW [FILES]]]");
+            System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/**
+ * The objects (commits and blobs) of a repository, named by their ids.  An
+ * object is either loose, a file in the objects directory named by its id, or
+ * packed, in one of the Packs in its pack subdirectory.  New objects are
+ * written loose, except those received by fetch or push, which arrive as a
+ * pack; repack moves them all into a single pack, in which each blob may be
+ * stored as a delta from the blob of the same path in a child of a commit that
+ * has it: deltas run backwards in time, as in git, so that recent files, which
+ * are checked out most, are quickest to rebuild.  Blobs (see Booby) are copied
+ * in and out as streams, so that files of any size take constant memory.
+ *
+ * @author ian t
+ */
+class ObjectStore {
+    /**
+     * The name of the subdirectory of the objects directory holding packs.
+     */
+    static final String PACK_DIR = "pack";
+
+    /**
+     * The objects directory.
+     */
+    private final File _dir;
+    /**
+     * The packs in the pack subdirectory.
+     */
+    private final List<Pack> _packs = new ArrayList<>();
+
+    /**
+     * @param dir is an objects directory, such as .gitlet/objects.
+     *            The objects in DIR, which need not exist yet.
+     */
+    ObjectStore(File dir) {
+        _dir = dir;
+        List<String> names = plainFilenamesIn(join(dir, PACK_DIR));
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(".idx")) {
+                    _packs.add(new Pack(join(dir, PACK_DIR, name)));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id is an object id.
+     * @return true iff I hold the object ID.
+     */
+    boolean contains(String id) {
+        if (join(_dir, id).isFile()) {
+            return true;
+        }
+        for (Pack pack : _packs) {
+            if (pack.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param id is an object id.
+     * @return the length of the contents of the object ID, or -1 if I do
+     * not hold it.
+     */
+    long length(String id) {
+        File loose = join(_dir, id);
+        if (loose.isFile()) {
+            return loose.length();
+        }
+        for (Pack pack : _packs) {
+            long length = pack.length(id);
+            if (length >= 0) {
+                return length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param id is an object id.
+     * @return a stream of the contents of the object ID, as written by
+     * write.  Throws IllegalArgumentException if there is no such object.
+     */
+    InputStream open(String id) {
+        File loose = join(_dir, id);
+        try {
+            if (loose.isFile()) {
+                return new BufferedInputStream(new FileInputStream(loose),
+                        Booby.BUFFER_SIZE);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (Pack pack : _packs) {
+            InputStream in = pack.open(id);
+            if (in != null) {
+                return in;
+            }
+        }
+        throw new IllegalArgumentException("no object " + id);
+    }
+
+    /**
+     * @param id is an object id.
+     * @return the contents of the object ID, as written by write.
+     * Throws IllegalArgumentException if there is no such object.
+     */
+    byte[] read(String id) {
+        try (InputStream in = open(id)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @param id is the id of a commit.
+     * @return the commit ID.
+     */
+    Commit readCommit(String id) {
+        return deserialize(read(id), Commit.class);
+    }
+
+    /**
+     * @param id is the id of a blob.
+     * @return the contents of the file stored as blob ID.  For files that
+     * need not be in memory, use checkout.
+     */
+    byte[] readBlob(String id) {
+        return Booby.contents(read(id));
+    }
+
+    /**
+     * @param id   is the id of a blob.
+     * @param dest is the file to write.
+     *             Write the contents of blob ID to DEST in constant
+     *             memory: with FileChannel.transferTo if the blob is loose,
+     *             and otherwise a buffer at a time.
+     */
+    void checkout(String id, File dest) {
+        File loose = join(_dir, id);
+        try {
+            if (loose.isFile()) {
+                try (FileChannel in = FileChannel.open(loose.toPath(),
+                        StandardOpenOption.READ)) {
+                    ByteBuffer head = ByteBuffer.allocate(Booby.HEADER.length);
+                    in.read(head, 0);
+                    if (Booby.isBlob(head.array())) {
+                        transfer(in, Booby.HEADER.length, dest);
+                        return;
+                    }
+                }
+            }
+            try (InputStream in = open(id)) {
+                Booby.extract(in, dest);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @param id   is an object id.
+     * @param file is a file holding the contents of object ID, such as a
+     *             staged blob.
+     *             Copy FILE into me as the loose object ID, with
+     *             FileChannel.transferTo, unless I already hold it.
+     */
+    private void add(String id, File file) {
+        if (contains(id)) {
+            return;
+        }
+        File temp = tempFile();
+        try (FileChannel in = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            transfer(in, 0, temp);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        install(temp, id);
+    }
+
+    /**
+     * @param id   is an object id.
+     * @param file is a file holding the contents of object ID, such as a
+     *             staged blob, which is consumed.
+     *             Rename FILE to be the loose object ID, unless I already
+     *             hold it, in which case FILE is deleted.  If FILE is on
+     *             another file system, it is copied instead.
+     */
+    void move(String id, File file) {
+        if (contains(id)) {
+            file.delete();
+            return;
+        }
+        try {
+            Files.move(file.toPath(), join(_dir, id).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException excp) {
+            add(id, file);
+            file.delete();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @return a new empty file in my directory whose name is not an id.
+     */
+    private File tempFile() {
+        try {
+            return File.createTempFile("object", ".tmp", _dir);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @param temp is a file in my directory.
+     * @param id   is an object id.
+     *             Rename TEMP to be the loose object ID.
+     */
+    private void install(File temp, String id) {
+        try {
+            Files.move(temp.toPath(), join(_dir, id).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @param in       is an open file.
+     * @param position is where to start reading IN.
+     * @param dest     is the file to write.
+     *                 Replace the contents of DEST with those of IN from
+     *                 POSITION on, using FileChannel.transferTo.
+     */
+    static void transfer(FileChannel in, long position, File dest)
+        throws IOException {
+        try (FileChannel out = FileChannel.open(dest.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    /**
+     * @param id  is an object id.
+     * @param obj is the object.
+     *            Write OBJ as a loose object named ID.
+     */
+    void write(String id, Serializable obj) {
+        writeObject(join(_dir, id), obj);
+    }
+
+    /**
+     * @return the ids of all my objects, in lexicographic order.
+     */
+    SortedSet<String> ids() {
+        SortedSet<String> ids = new TreeSet<>();
+        List<String> loose = plainFilenamesIn(_dir);
+        if (loose != null) {
+            for (String id : loose) {
+                if (Pack.shaBytes(id) != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        for (Pack pack : _packs) {
+            pack.ids(ids);
+        }
+        return ids;
+    }
+
+    /**
+     * @param prefix is a prefix of object ids, in either case.
+     * @return the ids of my objects that start with PREFIX, in
+     * lexicographic order.
+     */
+    SortedSet<String> find(String prefix) {
+        prefix = prefix.toLowerCase();
+        SortedSet<String> ids = new TreeSet<>();
+        List<String> loose = plainFilenamesIn(_dir);
+        if (loose != null) {
+            for (String id : loose) {
+                if (id.startsWith(prefix) && Pack.shaBytes(id) != null) {
+                    ids.add(id);
+                }
+            }
+        }
+        for (Pack pack : _packs) {
+            pack.find(prefix, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Move all my objects into one new pack, with chains of deltas of
+     * length at most Pack.MAX_DEPTH, and delete the loose objects and the
+     * old packs.
+     *
+     * @return the number of objects packed.
+     */
+    int repack() {
+        return repack(Pack.MAX_DEPTH);
+    }
+
+    /**
+     * @param depth is the longest chain of deltas to write, at most
+     *              Pack.MAX_DEPTH; 0 stores every object whole.
+     *              Move all my objects into one new pack, and delete the
+     *              loose objects and the old packs.  Nothing is deleted
+     *              until the new pack has been opened and found to hold
+     *              every object.
+     * @return the number of objects packed.
+     */
+    int repack(int depth) {
+        SortedSet<String> ids = ids();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        join(_dir, PACK_DIR).mkdir();
+        File index = Pack.write(join(_dir, PACK_DIR), ids,
+                deltaBases(ids, depth), this);
+        Pack packed = new Pack(index);
+        if (packed.size() != ids.size()) {
+            throw new IllegalArgumentException("corrupt pack " + index);
+        }
+        for (String id : ids) {
+            if (!packed.contains(id)) {
+                throw new IllegalArgumentException("corrupt pack " + index);
+            }
+        }
+        for (Pack pack : _packs) {
+            if (!pack.indexFile().equals(index)) {
+                pack.indexFile().delete();
+                Pack.packFile(pack.indexFile()).delete();
+            }
+        }
+        _packs.clear();
+        _packs.add(packed);
+        for (String id : plainFilenamesIn(_dir)) {
+            if (ids.contains(id)) {
+                join(_dir, id).delete();
+            }
+        }
+        return ids.size();
+    }
+
+    /**
+     * @param ids    is the ids of objects in SOURCE, none of which I hold.
+     * @param source is the store to read them from.
+     *               Add the objects IDS to me as one new pack, streamed
+     *               from SOURCE, with deltas between them where SOURCE's
+     *               commits among IDS suggest them.
+     */
+    void receive(SortedSet<String> ids, ObjectStore source) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        join(_dir, PACK_DIR).mkdirs();
+        File index = Pack.write(join(_dir, PACK_DIR), ids,
+                source.deltaBases(ids, Pack.MAX_DEPTH), source);
+        _packs.add(new Pack(index));
+    }
+
+    /**
+     * @param ids   is the ids of some of my objects, such as all of them.
+     * @param depth is the longest chain of bases allowed.
+     * @return a map from blob ids to the ids of blobs to store them as
+     * deltas from: for each commit in IDS, the blob of each path it tracks
+     * in its first parent gets the commit's blob of that path, if that
+     * differs, unless it already has a base, either is larger than
+     * Pack.DELTA_LIMIT, or the choice would make a cycle.  Chains longer
+     * than DEPTH are then broken by dropping every (DEPTH + 1)th base.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, String> deltaBases(SortedSet<String> ids,
+                                           int depth) {
+        HashMap<String, String> bases = new HashMap<>();
+        if (depth <= 0) {
+            return bases;
+        }
+        for (String id : ids) {
+            if (id.charAt(0) != 'c') {
+                continue;
+            }
+            Commit commit = readCommit(id);
+            String parent = commit.adult();
+            if (parent == null || !ids.contains(parent)) {
+                continue;
+            }
+            Map<String, String> files = commit.getfile(),
+                before = readCommit(parent).getfile();
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                String base = file.getValue(),
+                    blob = before.get(file.getKey());
+                if (blob != null && !blob.equals(base)
+                        && !bases.containsKey(blob) && ids.contains(blob)
+                        && ids.contains(base) && deltable(blob)
+                        && deltable(base) && !reaches(bases, base, blob)) {
+                    bases.put(blob, base);
+                }
+            }
+        }
+        HashMap<String, Integer> depths = new HashMap<>();
+        for (String blob : new ArrayList<>(bases.keySet())) {
+            Deque<String> chain = new ArrayDeque<>();
+            for (String b = blob; b != null && !depths.containsKey(b);
+                 b = bases.get(b)) {
+                chain.push(b);
+            }
+            while (!chain.isEmpty()) {
+                String b = chain.pop();
+                String base = bases.get(b);
+                int d = base == null ? 0 : depths.get(base) + 1;
+                if (d > depth) {
+                    bases.remove(b);
+                    d = 0;
+                }
+                depths.put(b, d);
+            }
+        }
+        return bases;
+    }
+
+    /**
+     * @param id is an object id.
+     * @return true iff the object ID is known to be small enough to be
+     * deltified.
+     */
+    private boolean deltable(String id) {
+        long length = length(id);
+        return length >= 0 && length <= Pack.DELTA_LIMIT;
+    }
+
+    /**
+     * @param bases maps object ids to the ids of their delta bases.
+     * @param from  is an object id.
+     * @param to    is an object id.
+     * @return true iff TO is FROM or on its chain of bases in BASES.
+     */
+    private static boolean reaches(Map<String, String> bases, String from,
+                                   String to) {
+        for (String b = from; b != null; b = bases.get(b)) {
+            if (b.equals(to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,774 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A packfile: many objects in one file, each compressed, with an index
+ * from object id to position.  Reading an object from a pack costs one
+ * binary search of the index and no system calls, since both files are
+ * memory-mapped.  They are mapped in segments of up to 1 << SEGMENT_BITS
+ * bytes, and all positions are longs, so packs may be of any size.
+ *
+ * <p>An object id is a type letter ('b' for blobs, 'c' for commits)
+ * followed by 40 hex digits of SHA-1.  The pack file, NAME.pack, holds a
+ * header of two ints, PACK_MAGIC and the number of objects, then the
+ * objects, each a kind byte, the long length of its contents, the long
+ * length of what is stored compressed, and the compressed bytes.  A WHOLE
+ * entry stores the contents; a DELTA entry stores a Delta from the
+ * contents of another entry of the pack, its base, whose long position
+ * precedes the compressed bytes.  Bases always precede their deltas, and
+ * no chain of deltas is longer than MAX_DEPTH.  The
+ * index file, NAME.idx, holds two ints, IDX_MAGIC and the number of
+ * objects; a fan-out table of 256 ints, entry k being the number of
+ * objects whose first SHA-1 byte is at most k; and then one record per
+ * object in increasing order of SHA-1 and type: the 20 SHA-1 bytes, the
+ * type letter, and the long position of the object in the pack.  All
+ * values are big-endian.
+ *
+ * <p>Objects rebuilt from deltas are kept in a cache of up to CACHE_BYTES
+ * bytes, so that the bases shared by a chain are rebuilt only once.
+ *
+ * @author ian t
+ */
+class Pack {
+    /**
+     * The first int of a pack file.
+     */
+    static final int PACK_MAGIC = 0x47504b31;
+    /**
+     * The first int of a pack index file.
+     */
+    static final int IDX_MAGIC = 0x47494431;
+    /**
+     * Kind of a pack entry holding a whole object.
+     */
+    static final int WHOLE = 1;
+    /**
+     * Kind of a pack entry holding a delta from another entry.
+     */
+    static final int DELTA = 2;
+    /**
+     * The longest chain of deltas written by write.
+     */
+    static final int MAX_DEPTH = 10;
+    /**
+     * Objects larger than this are never deltified, as they would have to
+     * be held in memory.
+     */
+    static final int DELTA_LIMIT = 1 << 23;
+    /**
+     * The size in bytes of the cache of rebuilt objects.
+     */
+    static final int CACHE_BYTES = 1 << 25;
+    /**
+     * Number of bytes of SHA-1 in an object id.
+     */
+    static final int SHA_BYTES = 20;
+    /**
+     * Entries in the fan-out table.
+     */
+    private static final int FANOUT = 256;
+    /**
+     * Sizes in bytes of the header of the index, and of each record.
+     */
+    private static final int IDX_HEADER = 8 + 4 * FANOUT,
+            RECORD = SHA_BYTES + 1 + 8;
+    /**
+     * Size in bytes of the header of an entry in the pack.
+     */
+    private static final int ENTRY_HEADER = 17;
+    /**
+     * Size in bytes of the position of the base of a DELTA entry.
+     */
+    private static final int BASE_SIZE = 8;
+    /**
+     * Base-2 logarithm of the size in bytes of the mapped segments of a
+     * file.
+     */
+    static final int SEGMENT_BITS = 30;
+    /**
+     * The hexadecimal digits, by value.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    /**
+     * Orders object ids as the records of an index: by SHA-1, then type.
+     */
+    static final Comparator<String> ORDER =
+        Comparator.comparing((String id) -> id.substring(1))
+            .thenComparing(id -> id.charAt(0));
+
+    /**
+     * The mapped pack and index files.
+     */
+    private final Mapped _pack, _index;
+    /**
+     * The number of objects.
+     */
+    private final int _size;
+    /**
+     * The index file.
+     */
+    private final File _indexFile;
+    /**
+     * Maps the positions of recently rebuilt objects to their contents,
+     * least recently used first.
+     */
+    private final LinkedHashMap<Long, byte[]> _cache =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The total size of the contents in _cache.
+     */
+    private long _cached;
+
+    /**
+     * @param index is the index file of the pack, whose pack file is
+     *              alongside it.
+     *              A pack read from INDEX and its pack file.
+     */
+    Pack(File index) {
+        _indexFile = index;
+        _index = new Mapped(index, SEGMENT_BITS);
+        _pack = new Mapped(packFile(index), SEGMENT_BITS);
+        if (_index.size() < IDX_HEADER || _pack.size() < 8
+                || _index.getInt(0) != IDX_MAGIC
+                || _pack.getInt(0) != PACK_MAGIC
+                || _pack.getInt(4) != _index.getInt(4)
+                || IDX_HEADER + (long) _index.getInt(4) * RECORD
+                   != _index.size()) {
+            throw new IllegalArgumentException("corrupt pack " + index);
+        }
+        _size = _index.getInt(4);
+    }
+
+    /**
+     * @param index is a pack index file.
+     * @return the pack file of INDEX.
+     */
+    static File packFile(File index) {
+        String name = index.getName();
+        return new File(index.getParentFile(),
+                name.substring(0, name.length() - ".idx".length()) + ".pack");
+    }
+
+    /**
+     * @return the index file of this pack.
+     */
+    File indexFile() {
+        return _indexFile;
+    }
+
+    /**
+     * @return the number of objects in this pack.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * @param id is an object id.
+     * @return true iff this pack holds the object ID.
+     */
+    boolean contains(String id) {
+        return lookup(id) >= 0;
+    }
+
+    /**
+     * @param id is an object id.
+     * @return the length of the contents of the object ID, or -1 if this
+     * pack does not hold it.
+     */
+    long length(String id) {
+        int k = lookup(id);
+        return k < 0 ? -1 : length(offset(k), 0);
+    }
+
+    /**
+     * @param offset is the position of an entry.
+     * @param which  is 0 for the length of the contents and 1 for the
+     *               length stored.
+     * @return length WHICH of the entry at OFFSET.
+     */
+    private long length(long offset, int which) {
+        return _pack.getLong(offset + 1 + 8 * which);
+    }
+
+    /**
+     * @param offset is the position of a DELTA entry.
+     * @return the position of the base of the entry at OFFSET.
+     */
+    private long base(long offset) {
+        return _pack.getLong(offset + ENTRY_HEADER);
+    }
+
+    /**
+     * @param id is an object id.
+     * @return a stream of the contents of the object ID, or null if this
+     * pack does not hold it.  A whole object is inflated as it is read
+     * from the mapped pack; one stored as a delta is rebuilt first.
+     */
+    InputStream open(String id) {
+        int k = lookup(id);
+        if (k < 0) {
+            return null;
+        }
+        long offset = offset(k);
+        if (_pack.get(offset) == DELTA) {
+            return new ByteArrayInputStream(rebuild(offset));
+        }
+        return stored(offset);
+    }
+
+    /**
+     * @param k is a record number.
+     * @return the position in the pack of the entry of record K.
+     */
+    private long offset(int k) {
+        return _index.getLong(record(k) + SHA_BYTES + 1);
+    }
+
+    /**
+     * @param k is a record number.
+     * @return the position in the index of record K.
+     */
+    private static long record(int k) {
+        return IDX_HEADER + (long) k * RECORD;
+    }
+
+    /**
+     * @param offset is the position of an entry.
+     * @return a stream of the bytes stored in the entry at OFFSET,
+     * inflated as they are read.
+     */
+    private InputStream stored(long offset) {
+        long start = offset + ENTRY_HEADER
+            + (_pack.get(offset) == DELTA ? BASE_SIZE : 0);
+        return new InflaterInputStream(
+                _pack.stream(start, length(offset, 1)));
+    }
+
+    /**
+     * @param offset is the position of an entry.
+     * @return the contents of the object at OFFSET, from the cache if
+     * they are there, and otherwise by inflating it and applying any delta
+     * to its (recursively rebuilt) base, caching the result.
+     */
+    private byte[] rebuild(long offset) {
+        byte[] contents = _cache.get(offset);
+        if (contents != null) {
+            return contents;
+        }
+        try (InputStream in = stored(offset)) {
+            contents = in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (_pack.get(offset) == DELTA) {
+            contents = Delta.apply(rebuild(base(offset)), contents);
+        }
+        if (contents.length <= CACHE_BYTES / 4) {
+            _cache.put(offset, contents);
+            _cached += contents.length;
+            Iterator<byte[]> eldest = _cache.values().iterator();
+            while (_cached > CACHE_BYTES) {
+                _cached -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * @param into is where the ids are added.
+     *             Add the ids of all objects in this pack to INTO.
+     */
+    void ids(Collection<String> into) {
+        for (int k = 0; k < _size; k += 1) {
+            into.add(id(k));
+        }
+    }
+
+    /**
+     * @param prefix is a lower-case prefix of object ids.
+     * @param into   is where the ids are added.
+     *               Add the ids of the objects in this pack that start
+     *               with PREFIX to INTO.  Only the part of the index
+     *               that the fan-out table allows is examined, and only
+     *               the records of the type PREFIX starts with are
+     *               formatted as ids.
+     */
+    void find(String prefix, Collection<String> into) {
+        int lo = 0, hi = _size;
+        if (prefix.length() >= 3) {
+            try {
+                int first = Integer.parseInt(prefix.substring(1, 3), 16);
+                lo = first == 0 ? 0 : fanout(first - 1);
+                hi = fanout(first);
+            } catch (NumberFormatException excp) {
+                return;
+            }
+        }
+        for (int k = lo; k < hi; k += 1) {
+            if (!prefix.isEmpty() && type(k) != prefix.charAt(0)) {
+                continue;
+            }
+            String id = id(k);
+            if (id.startsWith(prefix)) {
+                into.add(id);
+            }
+        }
+    }
+
+    /**
+     * @param k is a fan-out table entry.
+     * @return the number of objects whose first SHA-1 byte is at most K.
+     */
+    private int fanout(int k) {
+        return _index.getInt(8 + 4 * k);
+    }
+
+    /**
+     * @param k is a record number.
+     * @return the object id of record K of the index.
+     */
+    private String id(int k) {
+        long pos = record(k);
+        byte[] sha = new byte[SHA_BYTES];
+        for (int i = 0; i < SHA_BYTES; i += 1) {
+            sha[i] = _index.get(pos + i);
+        }
+        return toId((char) type(k), sha);
+    }
+
+    /**
+     * @param k is a record number.
+     * @return the type letter of record K of the index.
+     */
+    private int type(int k) {
+        return _index.get(record(k) + SHA_BYTES);
+    }
+
+    /**
+     * @param type is a type letter.
+     * @param sha  is the SHA_BYTES bytes of a SHA-1.
+     * @return the object id with TYPE and SHA.
+     */
+    static String toId(char type, byte[] sha) {
+        char[] id = new char[2 * SHA_BYTES + 1];
+        id[0] = type;
+        for (int i = 0; i < SHA_BYTES; i += 1) {
+            id[2 * i + 1] = HEX[sha[i] >> 4 & 0xf];
+            id[2 * i + 2] = HEX[sha[i] & 0xf];
+        }
+        return new String(id);
+    }
+
+    /**
+     * @param id is an object id.
+     * @return the record number of ID in the index, or -1 if absent.
+     */
+    private int lookup(String id) {
+        byte[] sha = shaBytes(id);
+        if (sha == null) {
+            return -1;
+        }
+        int first = sha[0] & 0xff;
+        int lo = first == 0 ? 0 : fanout(first - 1), hi = fanout(first) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, sha, id.charAt(0));
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param k    is a record number.
+     * @param sha  is the SHA-1 of an object id.
+     * @param type is the type letter of that id.
+     * @return a negative, zero, or positive value as record K is before,
+     * the same as, or after the id with SHA and TYPE.
+     */
+    private int compare(int k, byte[] sha, char type) {
+        long pos = record(k);
+        for (int i = 0; i < SHA_BYTES; i += 1) {
+            int cmp = (_index.get(pos + i) & 0xff) - (sha[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return _index.get(pos + SHA_BYTES) - type;
+    }
+
+    /**
+     * @param id is an object id.
+     * @return the SHA-1 bytes of ID, or null if it is not well formed.
+     */
+    static byte[] shaBytes(String id) {
+        if (id.length() != 2 * SHA_BYTES + 1) {
+            return null;
+        }
+        byte[] sha = new byte[SHA_BYTES];
+        for (int i = 0; i < SHA_BYTES; i += 1) {
+            int hi = Character.digit(id.charAt(2 * i + 1), 16),
+                lo = Character.digit(id.charAt(2 * i + 2), 16);
+            if (hi < 0 || lo < 0) {
+                return null;
+            }
+            sha[i] = (byte) (hi << 4 | lo);
+        }
+        return sha;
+    }
+
+    /**
+     * A read-only file mapped in segments, so that it may be larger than
+     * the 2 GiB that one MappedByteBuffer can hold.  Values read may span
+     * segments.
+     */
+    private static class Mapped {
+        /**
+         * The mapped segments, each but the last of 1 << _bits bytes.
+         */
+        private final MappedByteBuffer[] _segments;
+        /**
+         * Base-2 logarithm of the size of a segment.
+         */
+        private final int _bits;
+        /**
+         * The size of the file.
+         */
+        private final long _size;
+
+        /**
+         * @param file is the file to map.
+         * @param bits is the base-2 logarithm of the segment size, at most
+         *             30.
+         *             The contents of FILE, mapped read-only in segments
+         *             of 1 << BITS bytes.
+         */
+        Mapped(File file, int bits) {
+            _bits = bits;
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ)) {
+                _size = channel.size();
+                long segment = 1L << bits;
+                int count = (int) ((_size + segment - 1) >>> bits);
+                _segments = new MappedByteBuffer[count];
+                for (int k = 0; k < _segments.length; k += 1) {
+                    long start = (long) k << bits;
+                    _segments[k] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            start, Math.min(segment, _size - start));
+                }
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /**
+         * @return the size of the file.
+         */
+        long size() {
+            return _size;
+        }
+
+        /**
+         * @param pos is a position in the file.
+         * @return the byte at POS.
+         */
+        byte get(long pos) {
+            return _segments[(int) (pos >>> _bits)]
+                .get((int) (pos & ((1L << _bits) - 1)));
+        }
+
+        /**
+         * @param pos is a position in the file.
+         * @param n   is a number of bytes, at most 8.
+         * @return the big-endian value of the N bytes at POS.
+         */
+        private long get(long pos, int n) {
+            long value = 0;
+            for (int i = 0; i < n; i += 1) {
+                value = value << 8 | get(pos + i) & 0xff;
+            }
+            return value;
+        }
+
+        /**
+         * @param pos is a position in the file.
+         * @return the big-endian int at POS.
+         */
+        int getInt(long pos) {
+            int offset = (int) (pos & ((1L << _bits) - 1));
+            ByteBuffer segment = _segments[(int) (pos >>> _bits)];
+            if (offset + 4 <= segment.limit()) {
+                return segment.getInt(offset);
+            }
+            return (int) get(pos, 4);
+        }
+
+        /**
+         * @param pos is a position in the file.
+         * @return the big-endian long at POS.
+         */
+        long getLong(long pos) {
+            int offset = (int) (pos & ((1L << _bits) - 1));
+            ByteBuffer segment = _segments[(int) (pos >>> _bits)];
+            if (offset + 8 <= segment.limit()) {
+                return segment.getLong(offset);
+            }
+            return get(pos, 8);
+        }
+
+        /**
+         * @param start  is a position in the file.
+         * @param length is a number of bytes.
+         * @return a stream of the LENGTH bytes at START.
+         */
+        InputStream stream(long start, long length) {
+            if (start < 0 || length < 0 || start + length > _size) {
+                throw new IllegalArgumentException("bad position in pack");
+            }
+            return new MappedInput(this, start, start + length);
+        }
+
+        /**
+         * @param pos   is a position in the file.
+         * @param bytes is where the bytes are stored.
+         * @param off   is the first index of BYTES to store into.
+         * @param len   is the most bytes to store.
+         * @return the number of bytes, at most LEN and at least 1, copied
+         * from POS into BYTES[OFF ..], stopping at the end of POS's
+         * segment.
+         */
+        int get(long pos, byte[] bytes, int off, int len) {
+            ByteBuffer segment = _segments[(int) (pos >>> _bits)].duplicate();
+            segment.position((int) (pos & ((1L << _bits) - 1)));
+            len = Math.min(len, segment.remaining());
+            segment.get(bytes, off, len);
+            return len;
+        }
+    }
+
+    /**
+     * An InputStream of a range of bytes of a Mapped file.
+     */
+    private static class MappedInput extends InputStream {
+        /**
+         * The file read.
+         */
+        private final Mapped _file;
+        /**
+         * The position of the next byte to read.
+         */
+        private long _pos;
+        /**
+         * The position just past the last byte to read.
+         */
+        private final long _end;
+
+        /**
+         * @param file  is the file to read.
+         * @param start is the position of the first byte to read.
+         * @param end   is the position just past the last.
+         *              A stream of the bytes of FILE from START up to but
+         *              not including END.
+         */
+        MappedInput(Mapped file, long start, long end) {
+            _file = file;
+            _pos = start;
+            _end = end;
+        }
+
+        @Override
+        public int read() {
+            return _pos < _end ? _file.get(_pos++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            } else if (_pos >= _end) {
+                return -1;
+            }
+            len = _file.get(_pos, b, off, (int) Math.min(len, _end - _pos));
+            _pos += len;
+            return len;
+        }
+    }
+
+    /**
+     * @param dir    is the directory to hold the pack.
+     * @param ids    is the ids of the objects to pack.
+     * @param bases  maps some of IDS to the ids of other objects in IDS
+     *               from which they may be stored as deltas, with no chain
+     *               longer than MAX_DEPTH.
+     * @param source is where the objects are read from.
+     * @return the index file of a new pack in DIR holding the objects IDS
+     * read from SOURCE.  An object with a base in BASES is stored as a
+     * delta if that is less than half its size.  Objects are written in
+     * order of the lengths of their chains, so bases come first.  Both
+     * files are written under temporary names and then renamed, the index
+     * last, so that readers never see a partial pack; if writing fails,
+     * the temporary files are deleted.
+     */
+    static File write(File dir, Collection<String> ids,
+                      Map<String, String> bases, ObjectStore source) {
+        List<String> sorted = new ArrayList<>(ids);
+        sorted.sort(ORDER);
+        String name = "pack-" + Utils.sha1(String.join("\n", sorted));
+        File pack = new File(dir, name + ".pack"),
+            index = new File(dir, name + ".idx"),
+            packTemp = new File(dir, name + ".pack.tmp"),
+            indexTemp = new File(dir, name + ".idx.tmp");
+        HashMap<String, Integer> depths = new HashMap<>();
+        for (String id : sorted) {
+            depth(id, bases, depths);
+        }
+        List<String> order = new ArrayList<>(sorted);
+        order.sort(Comparator.comparing(depths::get));
+        HashMap<String, Long> offsets = new HashMap<>();
+        try {
+            try (FileChannel out = FileChannel.open(packTemp.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER
+                        + BASE_SIZE);
+                header.putInt(PACK_MAGIC).putInt(sorted.size()).flip();
+                out.write(header);
+                for (String id : order) {
+                    offsets.put(id, out.position());
+                    String base = bases.get(id);
+                    if (base == null) {
+                        try (InputStream in = source.open(id)) {
+                            writeEntry(out, header, in, -1, -1);
+                        }
+                        continue;
+                    }
+                    byte[] contents = source.read(id),
+                        delta = Delta.create(source.read(base), contents);
+                    if (delta.length < contents.length / 2) {
+                        writeEntry(out, header,
+                                new ByteArrayInputStream(delta),
+                                offsets.get(base), contents.length);
+                    } else {
+                        writeEntry(out, header,
+                                new ByteArrayInputStream(contents), -1, -1);
+                    }
+                }
+            }
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            new FileOutputStream(indexTemp)))) {
+                out.writeInt(IDX_MAGIC);
+                out.writeInt(sorted.size());
+                int k = 0;
+                for (int first = 0; first < FANOUT; first += 1) {
+                    while (k < sorted.size()
+                            && (shaBytes(sorted.get(k))[0] & 0xff) <= first) {
+                        k += 1;
+                    }
+                    out.writeInt(k);
+                }
+                for (String id : sorted) {
+                    out.write(shaBytes(id));
+                    out.writeByte(id.charAt(0));
+                    out.writeLong(offsets.get(id));
+                }
+            }
+            Files.move(packTemp.toPath(), pack.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.move(indexTemp.toPath(), index.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            packTemp.delete();
+            indexTemp.delete();
+        }
+        return index;
+    }
+
+    /**
+     * @param out    is the pack being written, positioned at the end.
+     * @param header is a buffer for the entry header.
+     * @param in     is the bytes to store.
+     * @param base   is the position of the base of a DELTA entry, or -1
+     *               for a WHOLE entry.
+     * @param length is the length of the contents of a DELTA entry.
+     *               Write an entry storing IN, compressed, to OUT.
+     */
+    private static void writeEntry(FileChannel out, ByteBuffer header,
+                                   InputStream in, long base, long length)
+        throws IOException {
+        long offset = out.position();
+        int start = ENTRY_HEADER + (base < 0 ? 0 : BASE_SIZE);
+        out.position(offset + start);
+        Deflater deflater = new Deflater();
+        DeflaterOutputStream deflated =
+            new DeflaterOutputStream(Channels.newOutputStream(out), deflater,
+                    Booby.BUFFER_SIZE);
+        byte[] buffer = new byte[Booby.BUFFER_SIZE];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            deflated.write(buffer, 0, n);
+        }
+        deflated.finish();
+        header.clear();
+        header.put((byte) (base < 0 ? WHOLE : DELTA))
+            .putLong(base < 0 ? deflater.getBytesRead() : length)
+            .putLong(deflater.getBytesWritten());
+        if (base >= 0) {
+            header.putLong(base);
+        }
+        header.flip();
+        out.write(header, offset);
+        deflater.end();
+    }
+
+    /**
+     * @param id     is an object id.
+     * @param bases  maps object ids to the ids of their delta bases.
+     * @param depths maps object ids to the lengths of their chains of
+     *               bases, and is updated with those of ID and its bases.
+     * @return the length of the chain of bases from ID in BASES.
+     */
+    private static int depth(String id, Map<String, String> bases,
+                             Map<String, Integer> depths) {
+        Integer depth = depths.get(id);
+        if (depth == null) {
+            String base = bases.get(id);
+            depth = base == null ? 0 : depth(base, bases, depths) + 1;
+            depths.put(id, depth);
+        }
+        return depth;
+    }
+}
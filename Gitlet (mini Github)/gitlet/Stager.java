@@ -0,0 +1,145 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Hashes and stages many files at once, as for 'add' with several
+ * operands.  Each file is one task of a work-stealing ForkJoinPool, so
+ * that a few large files do not hold up the rest.  Files are streamed
+ * through Booby.store and StatIndex.hash a buffer at a time, so the
+ * memory in flight is bounded by PARALLELISM buffers of
+ * Booby.BUFFER_SIZE bytes however many or large the files are.
+ *
+ * @author ian t
+ */
+class Stager {
+    /**
+     * The number of files hashed at once.
+     */
+    static final int PARALLELISM =
+        Math.min(Runtime.getRuntime().availableProcessors(), 16);
+
+    /**
+     * The cache of working-file ids.
+     */
+    private final StatIndex _stat;
+    /**
+     * Maps names to the ids of the files in the head commit.
+     */
+    private final Map<String, String> _tracked;
+    /**
+     * Maps names to the ids of the staged files.
+     */
+    private final Map<String, String> _staged;
+    /**
+     * The staging directory.
+     */
+    private final File _dir;
+
+    /**
+     * @param stat    is the cache of working-file ids.
+     * @param tracked maps names to the ids of the files in the head
+     *                commit.
+     * @param staged  maps names to the ids of the staged files.
+     * @param dir     is the staging directory.
+     *                A Stager that stages files into DIR when they differ
+     *                from TRACKED and STAGED.
+     */
+    Stager(StatIndex stat, Map<String, String> tracked,
+           Map<String, String> staged, File dir) {
+        _stat = stat;
+        _tracked = tracked;
+        _staged = staged;
+        _dir = dir;
+    }
+
+    /**
+     * @param names is the names of existing plain files.
+     * @return the ids of the files NAMES, in order, with null for those
+     * that need not be staged: those that are tracked and unchanged, and
+     * not staged with other contents.  The others are written to the
+     * staging directory as blobs.  Untracked files are hashed as they are
+     * copied; tracked ones are hashed first (through the StatIndex) and
+     * copied only if changed.
+     */
+    String[] stage(List<String> names) {
+        String[] ids = new String[names.size()];
+        if (names.isEmpty()) {
+            return ids;
+        }
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            pool.invoke(new Task(names, ids, 0, names.size()));
+        } finally {
+            pool.shutdown();
+        }
+        return ids;
+    }
+
+    /**
+     * @param name is the name of an existing plain file.
+     * @return the id of NAME if it must be staged, having staged it, and
+     * otherwise null.
+     */
+    private String stage(String name) {
+        String tracked = _tracked.get(name), staged = _staged.get(name);
+        if (tracked != null) {
+            String id = _stat.hash(name);
+            if (tracked.equals(id) && (staged == null || staged.equals(id))) {
+                return null;
+            }
+        }
+        return Booby.store(new File(name), _dir);
+    }
+
+    /**
+     * Stages a range of files, splitting it in two until each task has
+     * one file, so that idle threads can steal halves of busy ones'
+     * ranges.
+     */
+    private class Task extends RecursiveAction {
+        /**
+         * The names of all the files.
+         */
+        private final List<String> _names;
+        /**
+         * Where the ids of all the files are recorded.
+         */
+        private final String[] _ids;
+        /**
+         * The range of files of this task, from _lo up to but not
+         * including _hi.
+         */
+        private final int _lo, _hi;
+
+        /**
+         * @param names is the names of all the files.
+         * @param ids   is where their ids are recorded.
+         * @param lo    is the first file of this task.
+         * @param hi    is one past the last.
+         *              A task staging NAMES[LO .. HI - 1] and recording
+         *              their ids in IDS.
+         */
+        Task(List<String> names, String[] ids, int lo, int hi) {
+            _names = names;
+            _ids = ids;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo == 1) {
+                _ids[_lo] = stage(_names.get(_lo));
+            } else {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Task(_names, _ids, _lo, mid),
+                        new Task(_names, _ids, mid, _hi));
+            }
+        }
+    }
+}
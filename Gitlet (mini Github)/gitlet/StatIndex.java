@@ -0,0 +1,260 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A cache of the blob ids of working files, like git's index.  For each
+ * path it records the size, modification time, inode-change time, and
+ * inode number of the file when it was last hashed, and the id found
+ * then.  A file whose stat data are unchanged is not hashed again.
+ *
+ * <p>A file changed within the timestamp granularity of its last
+ * hashing could keep the same stat data, so entries for files modified
+ * less than RACY_MILLIS before the cache is saved are dropped rather
+ * than trusted.  Entries for paths that are no longer plain files are
+ * dropped too.
+ *
+ * <p>hash may be called from several threads at once, as by Stager.
+ *
+ * <p>Since it is read by every status, the cache is kept in a compact
+ * binary file rather than serialized: the int MAGIC and the number of
+ * entries, then for each entry the path (as by writeUTF), the STAT_SIZE
+ * longs of its stat data, and its id (as by writeUTF).
+ *
+ * @author ian t
+ */
+class StatIndex {
+    /**
+     * Where the cache is kept.
+     */
+    static final String FILE = ".gitlet/stat";
+    /**
+     * Entries for files modified less than this many milliseconds before
+     * saving are not saved.  The coarsest common file timestamps (FAT)
+     * are two seconds apart.
+     */
+    static final long RACY_MILLIS = 2000;
+    /**
+     * The first int of the cache file.
+     */
+    static final int MAGIC = 0x47535431;
+    /**
+     * The number of longs of stat data.
+     */
+    private static final int STAT_SIZE = 4;
+
+    /**
+     * The file I am kept in.
+     */
+    private final File _file;
+    /**
+     * Maps each path to what was recorded when it was last hashed.
+     */
+    private final ConcurrentHashMap<String, Entry> _entries =
+        new ConcurrentHashMap<>();
+    /**
+     * True iff I differ from the saved cache.
+     */
+    private volatile boolean _changed;
+
+    /**
+     * @param file is the file the cache is kept in.
+     *             An empty cache kept in FILE.
+     */
+    private StatIndex(File file) {
+        _file = file;
+    }
+
+    /**
+     * @return the saved cache of this repository, or an empty one if there
+     * is none.
+     */
+    static StatIndex load() {
+        return load(new File(FILE));
+    }
+
+    /**
+     * @param file is the file the cache is kept in.
+     * @return the cache saved in FILE, or an empty one if there is none.
+     */
+    static StatIndex load(File file) {
+        StatIndex index = new StatIndex(file);
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file),
+                            Booby.BUFFER_SIZE))) {
+                if (in.readInt() != MAGIC) {
+                    return index;
+                }
+                for (int n = in.readInt(); n > 0; n -= 1) {
+                    String name = in.readUTF();
+                    long[] stat = new long[STAT_SIZE];
+                    for (int i = 0; i < STAT_SIZE; i += 1) {
+                        stat[i] = in.readLong();
+                    }
+                    index._entries.put(name, new Entry(stat, in.readUTF()));
+                }
+            } catch (IOException excp) {
+                /* Ignore an unreadable cache: it is rebuilt as needed. */
+                index._entries.clear();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param name is the path of a plain file.
+     * @return the blob id of the contents of NAME, hashing it only if its
+     * stat data have changed since it was last hashed.
+     */
+    String hash(String name) {
+        long[] stat = stat(new File(name));
+        Entry entry = _entries.get(name);
+        if (entry != null && Arrays.equals(entry._stat, stat)) {
+            return entry._id;
+        }
+        String id = Booby.hash(new File(name));
+        _entries.put(name, new Entry(stat, id));
+        _changed = true;
+        return id;
+    }
+
+    /**
+     * @param name is the path of a plain file.
+     * @return true iff I hold an entry for NAME whose stat data are those
+     * of the file now, so that hash would not read it.
+     */
+    boolean isCached(String name) {
+        Entry entry = _entries.get(name);
+        return entry != null && Arrays.equals(entry._stat,
+                stat(new File(name)));
+    }
+
+    /**
+     * @return the number of paths I hold entries for.
+     */
+    int size() {
+        return _entries.size();
+    }
+
+    /**
+     * Save me if I have changed, dropping entries whose files were
+     * modified too recently to be trusted later, and those of paths that
+     * are no longer plain files.
+     */
+    void save() {
+        for (Iterator<String> i = _entries.keySet().iterator(); i.hasNext();) {
+            if (!new File(i.next()).isFile()) {
+                i.remove();
+                _changed = true;
+            }
+        }
+        if (!_changed) {
+            return;
+        }
+        long racy = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()
+                - RACY_MILLIS);
+        for (Iterator<Entry> i = _entries.values().iterator(); i.hasNext();) {
+            if (i.next()._stat[1] >= racy) {
+                i.remove();
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(_file),
+                        Booby.BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(_entries.size());
+            for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+                out.writeUTF(e.getKey());
+                for (long v : e.getValue()._stat) {
+                    out.writeLong(v);
+                }
+                out.writeUTF(e.getValue()._id);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _changed = false;
+    }
+
+    /**
+     * @param file is a plain file.
+     * @return the size, modification time and inode-change time in
+     * nanoseconds, and inode number of FILE.  Where there are no inodes,
+     * the creation time and 0 stand in for the last two.
+     */
+    static long[] stat(File file) {
+        Path path = file.toPath();
+        try {
+            try {
+                Map<String, Object> attrs = Files.readAttributes(path,
+                        "unix:size,lastModifiedTime,ctime,ino",
+                        LinkOption.NOFOLLOW_LINKS);
+                return new long[] {
+                    (Long) attrs.get("size"),
+                    nanos((FileTime) attrs.get("lastModifiedTime")),
+                    nanos((FileTime) attrs.get("ctime")),
+                    (Long) attrs.get("ino")
+                };
+            } catch (UnsupportedOperationException excp) {
+                BasicFileAttributes attrs = Files.readAttributes(path,
+                        BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                return new long[] {
+                    attrs.size(), nanos(attrs.lastModifiedTime()),
+                    nanos(attrs.creationTime()), 0
+                };
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /**
+     * @param time is a file time.
+     * @return TIME in nanoseconds since the epoch.
+     */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The stat data and blob id of one path.
+     */
+    private static class Entry {
+        /**
+         * The stat data, as from stat.
+         */
+        private final long[] _stat;
+        /**
+         * The blob id.
+         */
+        private final String _id;
+
+        /**
+         * @param stat is the stat data of a file.
+         * @param id   is the blob id of its contents.
+         *             An entry for a file with STAT and ID.
+         */
+        Entry(long[] stat, String id) {
+            _stat = stat;
+            _id = id;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static gitlet.Paths.*;
+import static gitlet.Utils.*;
+
+/**
+ * Times 'gitlet status' on a synthetic tree.  Usage:
+ *
+ * <pre>
+ *   java gitlet.StatusBenchmark [FILES [MODIFIED [SIZE]]]
+ * </pre>
+ *
+ * Creates a repository in a temporary directory whose head commit tracks
+ * FILES files (default 20000) of SIZE bytes each (default 1024), and runs
+ * status in it, each time as a separate process: first with no StatIndex
+ * ("cold"), then again once the index has been saved ("warm"), and then
+ * after changing MODIFIED of the files (default 10).  The tree is made
+ * older than StatIndex.RACY_MILLIS before the first run, as a real tree
+ * would be.
+ *
+ * <p>Prints a CSV summary to the standard output: the numbers of files
+ * and modified files, the file size, and the wall-clock time of each run
+ * of status in milliseconds.
+ *
+ * @author ian t
+ */
+public class StatusBenchmark {
+
+    /**
+     * The repository.
+     */
+    private final File _dir;
+    /**
+     * The number of files.
+     */
+    private final int _files;
+    /**
+     * The number of modified files.
+     */
+    private final int _modified;
+    /**
+     * The size of each file.
+     */
+    private final int _size;
+
+    /**
+     * @param dir      is an empty directory.
+     * @param files    is the number of files.
+     * @param modified is the number of files to modify.
+     * @param size     is the size of each file.
+     *                 A benchmark of FILES files of SIZE bytes, MODIFIED
+     *                 of which are changed, in DIR.
+     */
+    StatusBenchmark(File dir, int files, int modified, int size) {
+        _dir = dir;
+        _files = files;
+        _modified = modified;
+        _size = size;
+    }
+
+    /**
+     * Create the repository and commit the tree.  The commit is built
+     * directly, as lineCommit would, rather than by adding each file in
+     * its own process.
+     */
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException, InterruptedException {
+        gitlet(_dir, "init");
+        File objects = join(_dir, localobjects());
+        File master = join(_dir, local(), "master");
+        Commit parent = readObject(master, Commit.class);
+        Commit commit = new Commit("benchmark", parent.showcha2());
+        Random rand = new Random(0);
+        byte[] data = new byte[_size];
+        for (int k = 0; k < _files; k += 1) {
+            rand.nextBytes(data);
+            File file = join(_dir, name(k));
+            writeContents(file, data);
+            commit.put(name(k), Booby.store(file, objects));
+        }
+        new ObjectStore(objects).write(commit.sha1(), commit);
+        writeObject(master, commit);
+        Thread.sleep(StatIndex.RACY_MILLIS);
+    }
+
+    /**
+     * Change the first MODIFIED files, keeping their sizes.
+     */
+    void modify() {
+        byte[] data = new byte[_size];
+        for (int k = 0; k < _modified; k += 1) {
+            data[0] = (byte) k;
+            writeContents(join(_dir, name(k)), data);
+        }
+    }
+
+    /**
+     * @param k is a file number.
+     * @return the name of file K.
+     */
+    private static String name(int k) {
+        return String.format("f%06d.txt", k);
+    }
+
+    /**
+     * @param dir  is a directory.
+     * @param args is a gitlet command.
+     * @return the standard output of gitlet run with ARGS in DIR, as a
+     * separate process.
+     */
+    static String gitlet(File dir, String... args)
+        throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(join(System.getProperty("java.home"), "bin", "java")
+                .getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        for (String arg : args) {
+            command.add(arg);
+        }
+        Process process = new ProcessBuilder(command).directory(dir)
+                .redirectErrorStream(true).start();
+        String output;
+        try (InputStream in = process.getInputStream()) {
+            output = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (process.waitFor() != 0) {
+            throw new IOException("gitlet failed: " + output);
+        }
+        return output;
+    }
+
+    /**
+     * @param modified is the number of modified files status should
+     *                 report.
+     * @return the wall-clock time of a run of status in milliseconds.
+     */
+    double status(int modified) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String output = gitlet(_dir, "status");
+        double time = (System.nanoTime() - start) * 1e-6;
+        int reported = output.split("\\(modified\\)", -1).length - 1;
+        if (reported != modified) {
+            throw new IOException(String.format("status reported %d modified"
+                    + " files, not %d", reported, modified));
+        }
+        return time;
+    }
+
+    /**
+     * @param args is FILES, MODIFIED and SIZE, as in the class comment.
+     *             Run the benchmark.
+     */
+    public static void main(String... args) {
+        try {
+            int files = args.length > 0 ? Integer.parseInt(args[0]) : 20000,
+                modified = args.length > 1 ? Integer.parseInt(args[1]) : 10,
+                size = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+            if (files < 0 || modified < 0 || modified > files || size < 1) {
+                throw new NumberFormatException();
+            }
+            File dir = Files.createTempDirectory("gitlet-status").toFile();
+            try {
+                StatusBenchmark bench =
+                    new StatusBenchmark(dir, files, modified, size);
+                bench.setUp();
+                double cold = bench.status(0);
+                double warm = bench.status(0);
+                bench.modify();
+                double changed = bench.status(modified);
+                System.out.println("statistic,value");
+                System.out.printf("files,%d%n", files);
+                System.out.printf("modified_files,%d%n", modified);
+                System.out.printf("file_bytes,%d%n", size);
+                System.out.printf("status_ms_cold,%.1f%n", cold);
+                System.out.printf("status_ms_warm,%.1f%n", warm);
+                System.out.printf("status_ms_modified,%.1f%n", changed);
+            } finally {
+                deleteDirectives(dir);
+            }
+        } catch (NumberFormatException excp) {
+            System.err.println("Usage: java gitlet.StatusBenchmark"
+                    + " [FILES [MODIFIED [SIZE]]]");
+            System.exit(1);
+        } catch (IOException | InterruptedException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -85,6 +85,7 @@ class TextCommands {
         PUSH("push"),
         PULL("pull"),
         RMREMOTE("rm-remote"),
+        GC("gc|repack"),
         ERROR(".*"),
         EOF;
 
@@ -1,15 +1,13 @@
 package gitlet;
 
 import java.io.File;
-import java.io.IOException;
 import java.io.PrintStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.Instant;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.List;
 import java.util.Date;
@@ -35,6 +33,19 @@ class TextInterpreter {
      * The command input source.
      */
     private String[] _inputs;
+    /**
+     * The objects of this repository.
+     */
+    private final ObjectStore _store =
+            new ObjectStore(join(localobjects()));
+    /**
+     * The cached blob ids of working files, or null if not yet read.
+     */
+    private StatIndex _stat;
+    /**
+     * The commit graph, or null if not yet read.
+     */
+    private CommitGraph _graph;
 
     {
         _commands.put(INIT, this::lineInit);
@@ -56,6 +67,7 @@ class TextInterpreter {
         _commands.put(PULL, this::linePull);
         _commands.put(RMREMOTE, this::lineRMremote);
         _commands.put(FETCH, this::lineFetch);
+        _commands.put(GC, this::lineGc);
     }
 
     /**
@@ -84,6 +96,12 @@ class TextInterpreter {
         } catch (GitletException e) {
             System.out.printf("Error: %s%n", e.getMessage());
         }
+        if (_stat != null) {
+            _stat.save();
+        }
+        if (_graph != null) {
+            _graph.save();
+        }
     }
 
     /**
@@ -102,8 +120,7 @@ class TextInterpreter {
                     new Date(Instant.EPOCH.getEpochSecond()));
 
             String branch = "master";
-            String path = ".gitlet/objects/";
-            writeObject(join(path, commit.sha1()), commit);
+            _store.write(commit.sha1(), commit);
             writeContents(join(".gitlet/HEAD"), branch.getBytes());
             writeObject(join(".gitlet/refs/heads/master"), commit);
             writeObject(join(".gitlet/delete"), new Remove());
@@ -117,31 +134,55 @@ class TextInterpreter {
     }
 
     /**
-     * Perform the command 'Add OPERANDS[0]'.
+     * Perform the command 'add OPERANDS', each of which is a file or the
+     * working directory, whose plain files are added.  The files are
+     * hashed and staged in parallel by a Stager, and the stage written
+     * once.
      */
+    @SuppressWarnings("unchecked")
     void lineAdd(String... operands) {
+        if (operands == null || operands.length == 0) {
+            System.out.println("Please enter a file name.");
+            return;
+        }
+        File cwd = new File(System.getProperty("user.dir"));
         Platform s = readObject(join(".gitlet/stage/index"), Platform.class);
-        File file = new File(operands[0]);
-        Booby b;
         Remove d = readObject(join(".gitlet/delete"), Remove.class);
-        if (file.exists()) {
-            if (changenotstaged(operands[0])
-                    | trackchange(operands[0])
-                    | !tracked(operands[0])) {
-                String path = ".gitlet/stage/";
-                b = new Booby(file);
-                writeObject(join(path, b.getname()), b);
-                s.put(operands[0], b.getname());
+        String head = readContentsAsString(join(".gitlet/HEAD"));
+        HashMap<String, String> tracked = readObject(join(".gitlet/refs/heads",
+                head), Commit.class).getfile();
+        List<String> names = new ArrayList<>(), all = new ArrayList<>();
+        for (String operand : operands) {
+            File file = new File(operand);
+            if (file.isDirectory()) {
+                if (!file.getAbsoluteFile().toPath().normalize()
+                        .equals(cwd.toPath().normalize())) {
+                    System.out.println("Only the working directory"
+                            + " may be added.");
+                    continue;
+                }
+                names.addAll(plainFilenamesIn(cwd));
+            } else if (file.exists()) {
+                names.add(operand);
+            } else {
+                System.out.println("File does not exist.");
+                all.add(operand);
             }
-        } else {
-            System.out.println("File does not exist.");
         }
-
-        if (tracked(operands[0]) && d.getfile().contains(operands[0])) {
-            d.remove(operands[0]);
-            s.remove(operands[0]);
+        String[] ids = new Stager(stat(), tracked, s.getfile(),
+                join(".gitlet/stage")).stage(names);
+        for (int k = 0; k < ids.length; k += 1) {
+            if (ids[k] != null) {
+                s.put(names.get(k), ids[k]);
+            }
+        }
+        all.addAll(names);
+        for (String name : all) {
+            if (tracked.get(name) != null && d.getfile().contains(name)) {
+                d.remove(name);
+                s.remove(name);
+            }
         }
-
 
         writeObject(join(".gitlet/stage/index"), s);
         writeObject(join(".gitlet/delete"), d);
@@ -178,9 +219,8 @@ class TextInterpreter {
         for (String name : keys) {
             changed = true;
             String sha1 = (String) s.getfile().get(name);
-            Booby b = readObject(join(".gitlet/stage", sha1), Booby.class);
             commit.put(name, sha1);
-            writeObject(join(".gitlet/objects", sha1), b);
+            _store.move(sha1, join(".gitlet/stage", sha1));
         }
 
         Remove e = readObject(join(".gitlet/delete"), Remove.class);
@@ -197,7 +237,8 @@ class TextInterpreter {
             return;
         }
 
-        writeObject(join(".gitlet/objects", commit.sha1()), commit);
+        _store.write(commit.sha1(), commit);
+        graph().add(commit);
         writeObject(join(".gitlet/refs/heads", head), commit);
         writeObject(join(".gitlet/delete"), e);
         for (String f : plainFilenamesIn(".gitlet/stage")) {
@@ -251,12 +292,9 @@ class TextInterpreter {
         String head = readContentsAsString(join(".gitlet/HEAD"));
         Commit current = readObject(join(".gitlet/refs/heads", head),
                 Commit.class);
-        String pathway = ".gitlet/objects";
-        String cha2 = current.showcha2();
-        while (join(pathway, cha2).exists()) {
-            Commit commit = readObject(join(pathway, cha2), Commit.class);
-            commit.print();
-            cha2 = commit.adult();
+        for (int k = graph().index(current.showcha2());
+             k != CommitGraph.NONE; k = graph().parent(k, 0)) {
+            _store.readCommit(graph().id(k)).print();
         }
     }
 
@@ -264,13 +302,9 @@ class TextInterpreter {
      * Perform the command 'global-log'.
      */
     void lineGloballog(String[] unused) {
-        String path = ".gitlet/objects";
-        List<String> rest = plainFilenamesIn(path);
-        for (String c : rest) {
-            if (c.charAt(0) == 'c') {
-                Commit commit = readObject(join(path, c), Commit.class);
-                commit.print();
-            }
+        for (String c : _store.find("c")) {
+            Commit commit = _store.readCommit(c);
+            commit.print();
         }
     }
 
@@ -278,15 +312,12 @@ class TextInterpreter {
      * Perform the command 'Find OPERANDS[0]'.
      */
     void lineFind(String[] operands) {
-        String pathway = ".gitlet/objects";
         boolean find = false;
-        for (String cha2 : plainFilenamesIn(pathway)) {
-            if (join(pathway, cha2).exists() && cha2.charAt(0) == 'c') {
-                Commit commit = readObject(join(pathway, cha2), Commit.class);
-                if (commit.log().equals(operands[0])) {
-                    find = true;
-                    System.out.println(cha2);
-                }
+        for (String cha2 : _store.find("c")) {
+            Commit commit = _store.readCommit(cha2);
+            if (commit.log().equals(operands[0])) {
+                find = true;
+                System.out.println(cha2);
             }
         }
         if (!find) {
@@ -295,7 +326,9 @@ class TextInterpreter {
     }
 
     /**
-     * Perform.
+     * Perform.  HEAD, the stage and the removals are read once, and
+     * working files are hashed through the StatIndex, so only those
+     * changed since they were last hashed are read.
      * @param unuse t
      */
     @SuppressWarnings("unchecked")
@@ -314,7 +347,8 @@ class TextInterpreter {
         System.out.println();
 
         Platform e = readObject(join(".gitlet/stage/index"), Platform.class);
-        List<String> keys = new ArrayList<String>(e.getfile().keySet());
+        HashMap<String, String> staged = e.getfile();
+        List<String> keys = new ArrayList<String>(staged.keySet());
         Collections.sort(keys);
         System.out.println("=== Staged Files ===");
         for (int i = 0; i < keys.size(); i++) {
@@ -329,22 +363,30 @@ class TextInterpreter {
         }
         System.out.println();
 
+        Commit now = readObject(join(".gitlet/refs/heads", head),
+                Commit.class);
+        HashMap<String, String> tracked = now.getfile();
+        List<String> work = plainFilenamesIn(System.getProperty("user.dir"));
+        Set<String> present = new HashSet<>(work);
         System.out.println("=== Modifications Not Staged For Commit ===");
-        for (String f : plainFilenamesIn(System.getProperty("user.dir"))) {
-            if (trackchange(f) && e.getfile().get(f) == null) {
+        for (String f : work) {
+            String t = tracked.get(f), g = staged.get(f);
+            if (t == null && g == null) {
+                continue;
+            }
+            String id = stat().hash(f);
+            if (t != null && !t.equals(id) && g == null) {
                 System.out.format("%s (modified)\n", f);
-            } else if (changenotstaged(f)) {
+            } else if (g != null && !g.equals(id)) {
                 System.out.format("%s (modified)\n", f);
             }
         }
 
-        Commit now = readObject(join(".gitlet/refs/heads", head),
-                Commit.class);
-        for (String f : (Set<String>) now.getfile().keySet()) {
-            if (e.getfile().get(f) != null && !join(f).exists()) {
+        for (String f : tracked.keySet()) {
+            if (staged.get(f) != null && !join(f).exists()) {
                 System.out.format("%s (deleted)\n", f);
             }
-            if (!join(f).exists() && trackdelete(f)
+            if (!join(f).exists() && !present.contains(f)
                     && !d.getfile().contains(f)) {
                 System.out.format("%s (deleted)\n", f);
             }
@@ -352,8 +394,8 @@ class TextInterpreter {
         System.out.println();
 
         System.out.println("=== Untracked Files ===");
-        for (String f : plainFilenamesIn(System.getProperty("user.dir"))) {
-            if (!tracked(f) && !staged(f)) {
+        for (String f : work) {
+            if (tracked.get(f) == null && staged.get(f) == null) {
                 System.out.format("%s\n", f);
             }
         }
@@ -361,76 +403,25 @@ class TextInterpreter {
     }
 
     /**
-     * @param name is filename
-     * @return true if the file is tracked
+     * @return the CommitGraph of this repository, read when first needed
+     * and saved, if changed, after the command.
      */
-    boolean tracked(String name) {
-        String top = readContentsAsString(join(".gitlet/HEAD"));
-        Commit current = readObject(join(".gitlet/refs/heads", top),
-                Commit.class);
-        if (current.getfile().get(name) != null) {
-            return true;
+    CommitGraph graph() {
+        if (_graph == null) {
+            _graph = new CommitGraph(_store);
         }
-        return false;
+        return _graph;
     }
 
     /**
-     * @param name is filename
-     * @return true if the file is staged
+     * @return the StatIndex of this repository, read when first needed
+     * and saved, if changed, after the command.
      */
-    boolean staged(String name) {
-        Platform s = readObject(join(".gitlet/stage/index"), Platform.class);
-        if (s.getfile().get(name) != null) {
-            return true;
+    StatIndex stat() {
+        if (_stat == null) {
+            _stat = StatIndex.load();
         }
-        return false;
-    }
-
-    /**
-     * @param name is filename
-     * @return true if the file is tracked but changed
-     */
-    boolean trackchange(String name) {
-        String head = readContentsAsString(join(".gitlet/HEAD"));
-        Commit now = readObject(join(".gitlet/refs/heads", head),
-                Commit.class);
-        String newcha2 = "b" + sha1(readContentsAsString(join(name)));
-        if (now.getfile().get(name) != null
-                && !now.getfile().get(name).equals(newcha2)) {
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * @param name is filename
-     * @return true if the file is tracked but changed
-     */
-    boolean trackdelete(String name) {
-        String head = readContentsAsString(join(".gitlet/HEAD"));
-        Commit current = readObject(join(".gitlet/refs/heads", head),
-                Commit.class);
-        if (current.getfile().get(name) != null
-                && !plainFilenamesIn(System.getProperty("user.dir"))
-                .contains(name)) {
-            return true;
-        }
-        return false;
-    }
-
-    /**
-     * @param name is filename
-     * @return true if the file is staged but changed
-     */
-    boolean changenotstaged(String name) {
-        Platform s = readObject(join(".gitlet/stage/index"), Platform.class);
-        String newsha1 = "b" + sha1(readContentsAsString(join(name)));
-        if (s.getfile().get(name) != null
-                && !s.getfile().get(name).equals(newsha1)) {
-            return true;
-        }
-        return false;
-
+        return _stat;
     }
 
     /**
@@ -445,9 +436,7 @@ class TextInterpreter {
                     Commit.class);
             String boobysha1 = (String) current.getfile().get(name);
             if (boobysha1 != null) {
-                Booby b = readObject(join(".gitlet/objects", boobysha1),
-                        Booby.class);
-                writeContents(join(name), b.content());
+                _store.checkout(boobysha1, join(name));
                 return;
             } else {
                 System.out.println("File does not exist in that commit.");
@@ -457,24 +446,16 @@ class TextInterpreter {
             if (operands[1].equals("--")) {
                 String commitid = operands[0];
                 String name = operands[2];
-                String path = ".gitlet/objects";
                 Boolean exsitid = false;
-                for (String sha1 : plainFilenamesIn(path)) {
+                for (String sha1 : _store.find(commitid)) {
                     if (sha1.charAt(0) == 'c') {
-                        Commit commit = readObject(join(path, sha1),
-                                Commit.class);
-                        if (commitid.regionMatches(true, 0,
-                                sha1, 0, commitid.length())) {
-                            exsitid = true;
-                            if (commit.getfile().get(name) != null) {
-                                String boobysha1 = (String)
-                                        commit.getfile().get(name);
-                                Booby b = readObject(join(".gitlet/objects",
-                                        boobysha1),
-                                        Booby.class);
-                                writeContents(join(name), b.content());
-                                return;
-                            }
+                        Commit commit = _store.readCommit(sha1);
+                        exsitid = true;
+                        if (commit.getfile().get(name) != null) {
+                            String boobysha1 = (String)
+                                    commit.getfile().get(name);
+                            _store.checkout(boobysha1, join(name));
+                            return;
                         }
                     }
                 }
@@ -520,8 +501,7 @@ class TextInterpreter {
             for (String f : plainFilenamesIn(System.getProperty
                     ("user.dir"))) {
                 if (!libcurrent.contains(f) && library.contains(f)
-                        && !gs.getfile().get(f).equals("b"
-                        + sha1(readContentsAsString(join(f))))) {
+                        && !gs.getfile().get(f).equals(Booby.hash(join(f)))) {
                     System.out.println("There is an untracked file in "
                             + "the way; delete it or add it first.");
                     return;
@@ -530,10 +510,8 @@ class TextInterpreter {
 
             for (String title : library) {
                 String cha2 = (String) gs.getfile().get(title);
-                Booby b = readObject(join(".gitlet/objects", cha2),
-                        Booby.class);
-                writeContents(join(System.getProperty("user.dir"), title),
-                        b.content());
+                _store.checkout(cha2,
+                        join(System.getProperty("user.dir"), title));
             }
 
             for (String name : libcurrent) {
@@ -601,47 +579,43 @@ class TextInterpreter {
         String top = readContentsAsString(join(".gitlet/HEAD"));
         Commit current = readObject(join(".gitlet/refs/heads", top),
                 Commit.class);
-        String path = ".gitlet/objects";
         boolean find = false;
-        for (String cha2 : plainFilenamesIn(path)) {
+        for (String cha2 : _store.find(commitid)) {
             if (cha2.charAt(0) == 'c') {
-                if (commitid.regionMatches(true, 0,
-                        cha2, 0, commitid.length())) {
-                    find = true;
-                    Commit commit = readObject(join(path, cha2), Commit.class);
-                    Set<String> givenkey = commit.getfile().keySet();
-                    Set<String> currkey = current.getfile().keySet();
-                    for (String f : plainFilenamesIn(System.getProperty
-                            ("user.dir"))) {
-                        if (!currkey.contains(f) && givenkey.contains(f)
-                                && !commit.getfile().get(f).equals("b"
-                                + sha1(readContentsAsString(join(f))))) {
-                            System.out.println("There is an untracked file "
-                                    + "in the way; delete it or add it first.");
-                            return;
-                        }
+                find = true;
+                Commit commit = _store.readCommit(cha2);
+                Set<String> givenkey = commit.getfile().keySet();
+                Set<String> currkey = current.getfile().keySet();
+                for (String f : plainFilenamesIn(System.getProperty
+                        ("user.dir"))) {
+                    if (!currkey.contains(f) && givenkey.contains(f)
+                            && !commit.getfile().get(f)
+                            .equals(Booby.hash(join(f)))) {
+                        System.out.println("There is an untracked file "
+                                + "in the way; delete it or add it first.");
+                        return;
                     }
+                }
 
-                    for (String title: givenkey) {
-                        String[] file = new String[3];
-                        file[0] = commit.showcha2();
-                        file[1] = "--";
-                        file[2] = title;
-                        lineCheckout(file);
-                    }
+                for (String title: givenkey) {
+                    String[] file = new String[3];
+                    file[0] = commit.showcha2();
+                    file[1] = "--";
+                    file[2] = title;
+                    lineCheckout(file);
+                }
 
-                    List<String> k = plainFilenamesIn(System.getProperty
-                            ("user.dir"));
-                    for (String f : k) {
-                        if (!givenkey.contains(f)) {
-                            join(f).delete();
-                        }
+                List<String> k = plainFilenamesIn(System.getProperty
+                        ("user.dir"));
+                for (String f : k) {
+                    if (!givenkey.contains(f)) {
+                        join(f).delete();
                     }
-
-                    writeObject(join(".gitlet/refs/heads", top),
-                            commit);
-                    writeObject(join(".gitlet/stage/index"), new Platform());
                 }
+
+                writeObject(join(".gitlet/refs/heads", top),
+                        commit);
+                writeObject(join(".gitlet/stage/index"), new Platform());
             }
         }
 
@@ -686,8 +660,7 @@ class TextInterpreter {
         for (String f : plainFilenamesIn(System.getProperty
                 ("user.dir"))) {
             if (!currkey.contains(f) && keygive.contains(f)
-                    && !given.getfile().get(f).equals("b"
-                    + sha1(readContentsAsString(join(f))))) {
+                    && !given.getfile().get(f).equals(Booby.hash(join(f)))) {
                 System.out.println("There is an untracked file in the "
                         + "way; delete it or add it first.");
                 return;
@@ -699,6 +672,9 @@ class TextInterpreter {
     }
 
     /**
+     * Find the split point of CURRENT and GIVEN in the commit graph,
+     * following both parents of merge commits.
+     *
      * @param nowbranch is current branch.
      * @param twiggiventous   is given branch.
      * @param split         is the commit where two branches splits.
@@ -710,38 +686,19 @@ class TextInterpreter {
     void lineMerge(Commit current, Commit given, Commit split,
                    String nowbranch, String twiggiventous,
                    Set<String> keycurr, Set<String> keygiv) {
-        String pathcommit = ".gitlet/objects";
-        ArrayList<String> oldcom1 = new ArrayList<String>();
-        ArrayList<String> oldcom2 = new ArrayList<String>();
         String currcha2 = current.showcha2();
-
-        while (join(pathcommit, currcha2).exists()) {
-            oldcom1.add(currcha2);
-            current = readObject(join(pathcommit, currcha2), Commit.class);
-            currcha2 = current.adult();
-        }
-
-        if (oldcom1.contains(given.showcha2())) {
+        String givensha1 = given.showcha2();
+        if (graph().isAncestor(givensha1, currcha2)) {
             System.out.println("Given branch is an ancestor "
                     + "of the current branch.");
             return;
         }
-        String givensha1 = given.showcha2();
-        while (join(pathcommit, givensha1).exists()) {
-            oldcom2.add(givensha1);
-            if (givensha1.equals(oldcom1.get(0))) {
-                System.out.println("Current branch fast-forwarded.");
-                writeObject(join(".gitlet/refs/heads", nowbranch),
-                        oldcom2.get(0));
-                return;
-            } else if (oldcom1.contains(givensha1)) {
-                split = readObject(join(pathcommit, givensha1),
-                        Commit.class);
-                break;
-            }
-            given = readObject(join(pathcommit, givensha1), Commit.class);
-            givensha1 = given.adult();
+        if (graph().isAncestor(currcha2, givensha1)) {
+            System.out.println("Current branch fast-forwarded.");
+            writeObject(join(".gitlet/refs/heads", nowbranch), given);
+            return;
         }
+        split = _store.readCommit(graph().mergeBase(currcha2, givensha1));
 
         lineMerge(nowbranch, twiggiventous, split, keycurr, keygiv);
     }
@@ -760,7 +717,6 @@ class TextInterpreter {
         Set<String> keys = split.getfile().keySet();
         boolean conflict = false;
         String path = ".gitlet/refs/heads";
-        String pathtocommit = ".gitlet/objects";
         Commit given = readObject(join(path, twiggiventous), Commit.class);
         Commit current = readObject(join(path, nowtwig), Commit.class);
         for (String name : keys) {
@@ -772,17 +728,15 @@ class TextInterpreter {
                     filetodelete[0] = (String) split.getfile().get(name);
                     lineRemove(name);
                 } else {
-                    Booby b = readObject(join(".gitlet/objects",
-                            (String) given.getfile().get(name)), Booby.class);
-                    writeContents(join(name), b.content());
+                    _store.checkout((String) given.getfile().get(name),
+                            join(name));
                     lineAdd(name);
                 }
             } else if (!split.getfile().get(name)
                     .equals(given.getfile().get(name))
                     && !split.getfile().get(name)
                     .equals(current.getfile().get(name))) {
-                conflict = printconflict(given, current, name,
-                        pathtocommit, conflict);
+                conflict = printconflict(given, current, name, conflict);
             }
         }
 
@@ -810,41 +764,40 @@ class TextInterpreter {
      * @param current    is current branch.
      * @param given      is given branch.
      * @param name       is the commit where two branches splits.
-     * @param pathcommit is the list of file names in current commit
      * @param conflict   is the list of file names in given commit
      * @return true if has confilict.
      */
     boolean printconflict(Commit given, Commit current, String name,
-                          String pathcommit, boolean conflict) {
+                          boolean conflict) {
         if (given.getfile().get(name) != null
                 && current.getfile().get(name) != null
                 && !given.getfile().get(name)
                 .equals(current.getfile().get(name))) {
-            Booby givenb = readObject(join(pathcommit,
-                    (String) given.getfile().get(name)), Booby.class);
-            Booby currentb = readObject(join(pathcommit,
-                    (String) current.getfile().get(name)), Booby.class);
+            byte[] givenb = _store.readBlob((String)
+                    given.getfile().get(name));
+            byte[] currentb = _store.readBlob((String)
+                    current.getfile().get(name));
             writeContents(join(System.getProperty("user.dir"), name),
                     "<<<<<<< HEAD\n",
-                    currentb.content(), "=======\n", givenb.content(),
+                    currentb, "=======\n", givenb,
                     ">>>>>>>\n");
             lineAdd(name);
             conflict = true;
         } else if (given.getfile().get(name) == null
                 && current.getfile().get(name) != null) {
-            Booby currentb = readObject(join(pathcommit,
-                    (String) current.getfile().get(name)), Booby.class);
+            byte[] currentb = _store.readBlob((String)
+                    current.getfile().get(name));
             writeContents(join(System.getProperty("user.dir"), name),
                     "<<<<<<< HEAD\n",
-                    currentb.content(), "=======\n", ">>>>>>>\n");
+                    currentb, "=======\n", ">>>>>>>\n");
             lineAdd(name);
             conflict = true;
         } else if (given.getfile().get(name) != null
                 && current.getfile().get(name) == null) {
-            Booby givenb = readObject(join(pathcommit,
-                    (String) given.getfile().get(name)), Booby.class);
+            byte[] givenb = _store.readBlob((String)
+                    given.getfile().get(name));
             writeContents(join(System.getProperty("user.dir"), name),
-                    "<<<<<<< HEAD\n", "=======\n", givenb.content(),
+                    "<<<<<<< HEAD\n", "=======\n", givenb,
                     ">>>>>>>\n");
             lineAdd(name);
             conflict = true;
@@ -891,21 +844,10 @@ class TextInterpreter {
         if (!join(local(), localtwig).exists()) {
             lineBranch(localtwig);
         }
-        try {
-            List<String> k = plainFilenamesIn(join(".gitlet", objects()));
-            for (String f : plainFilenamesIn(join(path, objects()))) {
-                if (!k.contains(f)) {
-
-                    Path f1 = join(path, objects(), f).toPath();
-                    Path f2 = join(".gitlet", objects(), f).toPath();
-                    Files.copy(f1, f2);
-                }
-            }
-        } catch (IOException excp) {
-            throw new IllegalArgumentException(excp.getMessage());
-        }
-        writeObject(join(local(), localtwig),
-                readObject(join(path, heads(), arg2), Commit.class));
+        Commit head = readObject(join(path, heads(), arg2), Commit.class);
+        new Transfer(new ObjectStore(join(path, objects())), _store)
+            .send(head.showcha2());
+        writeObject(join(local(), localtwig), head);
     }
 
     /**
@@ -935,36 +877,18 @@ class TextInterpreter {
         }
 
         Commit nowcom = readObject(join(local(), localhead()), Commit.class);
-        ArrayList<String> oldiecom = new ArrayList<String>();
-        String nowhas = nowcom.showcha2();
         Commit intcom = null;
         if (join(dirname, heads(), mytwig).exists()) {
             intcom = readObject(join(dirname, heads(),
                     mytwig), Commit.class);
         }
 
-        while (join(localobjects(), nowhas).exists()) {
-            oldiecom.add(nowhas);
-            nowcom = readObject(join(localobjects(), nowhas),
-                    Commit.class);
-            nowhas = nowcom.adult();
-        }
-
-        nowcom = readObject(join(local(), localhead()), Commit.class);
-        if (intcom == null | oldiecom.contains(intcom.showcha2())) {
+        if (intcom == null
+                || graph().isAncestor(intcom.showcha2(), nowcom.showcha2())) {
             writeObject(join(local(), localhead()),
                     nowcom);
-            List<String> k = plainFilenamesIn(join(dirname, objects()));
-            for (String f : plainFilenamesIn(join(".gitlet", objects()))) {
-                if (!k.contains(f)) {
-                    try {
-                        Files.copy(join(".gitlet", objects(), f).toPath(),
-                                join(dirname, objects(), f).toPath());
-                    } catch (IOException excp) {
-                        throw new IllegalArgumentException(excp.getMessage());
-                    }
-                }
-            }
+            new Transfer(_store, new ObjectStore(join(dirname, objects())))
+                .send(nowcom.showcha2());
             writeObject(join(dirname, heads(), mytwig), nowcom);
         } else {
             System.out.println("Please pull down "
@@ -972,6 +896,15 @@ class TextInterpreter {
         }
     }
 
+    /**
+     * @param unused is input args.
+     *               Perform the command 'gc': move all objects, loose and
+     *               packed, into a single pack.
+     */
+    void lineGc(String[] unused) {
+        _store.repack();
+    }
+
     /**
      * @param args is input args.
      *             remove the local branch that stores remote ones.
@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Sends the objects of a branch from one repository's store to
+ * another's, as for fetch and push.  The two sides negotiate as in git:
+ * the sender offers the commits of the branch, newest first, and the
+ * receiver says which it already has.  A commit the receiver has, with
+ * all that it reaches, is a common commit and is not walked past, so the
+ * walk stops at the boundary of what the receiver already holds.  The
+ * objects sent are then exactly the commits beyond that boundary and the
+ * blobs they track that the receiver lacks, written straight into the
+ * receiver as one pack (see ObjectStore.receive).  The work done is thus
+ * proportional to what is missing, not to the size of either repository.
+ *
+ * @author ian t
+ */
+class Transfer {
+    /**
+     * The parent id of an initial commit.
+     */
+    private static final String NO_PARENT = "null";
+
+    /**
+     * The store sending objects.
+     */
+    private final ObjectStore _from;
+    /**
+     * The store receiving them.
+     */
+    private final ObjectStore _to;
+    /**
+     * The commits that the receiver lacks, newest first.
+     */
+    private final List<String> _wants = new ArrayList<>();
+    /**
+     * The common commits at which the walk stopped.
+     */
+    private final Set<String> _haves = new HashSet<>();
+
+    /**
+     * @param from is the store sending objects.
+     * @param to   is the store receiving them.
+     *             A transfer from FROM to TO.
+     */
+    Transfer(ObjectStore from, ObjectStore to) {
+        _from = from;
+        _to = to;
+    }
+
+    /**
+     * @param head is the id of a commit in the sending store.
+     * @return the number of objects sent to make the receiver hold HEAD
+     * and everything it reaches.
+     */
+    int send(String head) {
+        negotiate(head);
+        SortedSet<String> objects = missing();
+        _to.receive(objects, _from);
+        return objects.size();
+    }
+
+    /**
+     * @param head is the id of a commit in the sending store.
+     *             Walk back from HEAD through the parents of each commit
+     *             the receiver lacks, recording those commits in _wants
+     *             and the common commits reached in _haves.
+     */
+    void negotiate(String head) {
+        Set<String> seen = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(head);
+        seen.add(head);
+        while (!queue.isEmpty()) {
+            String id = queue.poll();
+            if (_to.contains(id)) {
+                _haves.add(id);
+                continue;
+            }
+            _wants.add(id);
+            Commit commit = _from.readCommit(id);
+            for (String p : new String[] { commit.adult(), commit.adult2() }) {
+                if (p != null && !p.equals(NO_PARENT) && seen.add(p)) {
+                    queue.add(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the ids of the commits in _wants and of the blobs they
+     * track that the receiver lacks.  Blobs tracked by the common commits
+     * are known to be there without asking.
+     */
+    @SuppressWarnings("unchecked")
+    SortedSet<String> missing() {
+        Set<String> had = new HashSet<>();
+        for (String id : _haves) {
+            had.addAll(((Map<String, String>) _from.readCommit(id)
+                    .getfile()).values());
+        }
+        SortedSet<String> objects = new TreeSet<>(_wants);
+        for (String id : _wants) {
+            for (String blob : ((Map<String, String>) _from.readCommit(id)
+                    .getfile()).values()) {
+                if (!had.contains(blob) && !objects.contains(blob)
+                        && !_to.contains(blob)) {
+                    objects.add(blob);
+                }
+            }
+        }
+        return objects;
+    }
+}
@@ -4,6 +4,17 @@ package gitlet;
 import ucb.junit.textui;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static gitlet.Utils.*;
+
 public class UnitTest {
 
 
@@ -16,6 +27,178 @@ public class UnitTest {
     public void placeholderTest() {
     }
 
+    /**
+     * A file hashed long enough ago is a warm hit in a reloaded
+     * StatIndex, a same-size edit that keeps its modification time is
+     * still seen, and the entry goes once the file does.
+     */
+    @Test
+    public void statIndexTest() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-stat").toFile();
+        try {
+            File file = join(dir, "f.txt"), cache = join(dir, "stat");
+            String name = file.getPath();
+            writeContents(file, "version 1\n");
+            FileTime aged = FileTime.fromMillis(System.currentTimeMillis()
+                    - 100 * StatIndex.RACY_MILLIS);
+            Files.setLastModifiedTime(file.toPath(), aged);
+            StatIndex index = StatIndex.load(cache);
+            String before = index.hash(name);
+            index.save();
+
+            index = StatIndex.load(cache);
+            assertTrue(index.isCached(name));
+            assertEquals(before, index.hash(name));
+
+            writeContents(file, "version 2\n");
+            Files.setLastModifiedTime(file.toPath(), aged);
+            assertFalse(index.isCached(name));
+            String after = index.hash(name);
+            assertNotEquals(before, after);
+            assertEquals(Booby.hash(file), after);
+            index.save();
+
+            file.delete();
+            index = StatIndex.load(cache);
+            assertEquals(1, index.size());
+            index.save();
+            assertEquals(0, StatIndex.load(cache).size());
+        } finally {
+            deleteDirectives(dir);
+        }
+    }
+
+    /**
+     * @param seed is a random seed.
+     * @param n    is a length.
+     * @return N bytes made from SEED.
+     */
+    private static byte[] randomBytes(long seed, int n) {
+        byte[] result = new byte[n];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /**
+     * @param parts are byte arrays.
+     * @return PARTS, concatenated.
+     */
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @param base   is a delta base.
+     * @param target is a delta target.
+     * @return a delta from BASE to TARGET, having checked that it
+     * rebuilds TARGET.
+     */
+    private static byte[] roundTrip(byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        return delta;
+    }
+
+    /**
+     * Deltas from and to empty arrays, and of targets shorter than a
+     * block, are all inserts.
+     */
+    @Test
+    public void deltaEmptyAndShortTest() {
+        byte[] empty = new byte[0], data = randomBytes(1, 100),
+            small = Arrays.copyOf(data, Delta.BLOCK - 1);
+        assertArrayEquals(new byte[] { 0, 0 }, roundTrip(empty, empty));
+        assertArrayEquals(new byte[] { 100, 0 }, roundTrip(data, empty));
+        assertArrayEquals(concat(new byte[] { 0, 100, Delta.INSERT, 100 },
+                data), roundTrip(empty, data));
+        assertArrayEquals(concat(new byte[] { 100, Delta.BLOCK - 1,
+            Delta.INSERT, Delta.BLOCK - 1 }, small), roundTrip(data, small));
+    }
+
+    /**
+     * A target sharing nothing with its base is one insert, and one
+     * equal to it is one copy.
+     */
+    @Test
+    public void deltaInsertAndCopyTest() {
+        byte[] base = randomBytes(2, 1000), other = randomBytes(3, 1000);
+        byte[] delta = roundTrip(base, other);
+        assertEquals(Delta.INSERT, delta[4]);
+        assertEquals(4 + 1 + 2 + other.length, delta.length);
+        assertArrayEquals(new byte[] { (byte) 0xe8, 7, (byte) 0xe8, 7,
+            Delta.COPY, 0, (byte) 0xe8, 7 }, roundTrip(base, base));
+        byte[] edited = base.clone();
+        edited[500] ^= 1;
+        assertTrue(roundTrip(base, edited).length < 30);
+    }
+
+    /**
+     * Matches found at a block extend backwards over equal bytes, but
+     * not past the end of the last insert or copy.
+     */
+    @Test
+    public void deltaBackwardsTest() {
+        byte[] base = randomBytes(4, 100);
+        byte[] lead = { 1, 2, 3 };
+        base[4] = 0;
+        assertArrayEquals(concat(new byte[] { 100, 98, Delta.INSERT, 3 },
+                lead, new byte[] { Delta.COPY, 5, 95 }),
+                roundTrip(base, concat(lead,
+                        Arrays.copyOfRange(base, 5, 100))));
+        assertArrayEquals(new byte[] { 100, 65, Delta.COPY, 0, 32,
+            Delta.COPY, 31, 33 },
+                roundTrip(base, concat(Arrays.copyOfRange(base, 0, 32),
+                        Arrays.copyOfRange(base, 31, 64))));
+    }
+
+    /**
+     * A delta applied to the wrong base is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaWrongBaseTest() {
+        byte[] base = randomBytes(5, 100);
+        Delta.apply(Arrays.copyOf(base, 99), Delta.create(base, base));
+    }
+
+    /**
+     * A truncated delta is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaTruncatedTest() {
+        byte[] base = randomBytes(6, 100),
+            delta = Delta.create(base, randomBytes(7, 100));
+        Delta.apply(base, Arrays.copyOf(delta, delta.length - 1));
+    }
+
+    /**
+     * A delta with an unknown instruction is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaBadInstructionTest() {
+        Delta.apply(new byte[0], new byte[] { 0, 1, 7, 0 });
+    }
+
+    /**
+     * A delta copying from beyond its base is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaBadCopyTest() {
+        Delta.apply(new byte[10], new byte[] { 10, 10, Delta.COPY, 5, 10 });
+    }
+
+    /**
+     * A delta with a negative target length is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaBadLengthTest() {
+        Delta.apply(new byte[0], new byte[] { 0, (byte) 0xff, (byte) 0xff,
+            (byte) 0xff, (byte) 0xff, 0x0f });
+    }
+
 }
 
 
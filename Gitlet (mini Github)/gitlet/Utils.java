@@ -8,6 +8,7 @@ import java.io.Serializable;
 import java.io.ObjectOutputStream;
 import java.io.ObjectInputStream;
 import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.BufferedOutputStream;
 import java.nio.charset.StandardCharsets;
@@ -259,6 +260,21 @@ class Utils {
         }
     }
 
+    /**
+     * Return an object of type T deserialized from BYTES, casting it to
+     * EXPECTEDCLASS.  Throws IllegalArgumentException in case of problems.
+     */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try (ObjectInputStream in =
+                     new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
     /* MESSAGES AND ERROR REPORTING */
 
@@ -1,7 +1,14 @@
 package tablut;
 
-
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A Player that automatically generates moves.
@@ -24,11 +31,184 @@ class AI extends Player {
      * A magnitude greater than a normal value.
      */
     private static final int INFTY = Integer.MAX_VALUE;
+    /**
+     * The deepest search attempted when moves are limited by time.
+     */
+    private static final int MAX_SEARCH_DEPTH = 64;
+    /**
+     * The number of positions searched between checks of the clock (a
+     * power of 2).
+     */
+    private static final int CLOCK_INTERVAL = 1024;
+    /**
+     * The deepest quiescence search below a leaf of the main search.
+     */
+    private static final int QUIESCENCE_DEPTH = 6;
+    /**
+     * The most positions a quiescence search from one leaf may visit.
+     */
+    private static final int QUIESCENCE_NODES = 512;
+    /**
+     * Move-ordering priorities: the move from the transposition table (or
+     * the previous iteration), captures, king moves toward the edge, and
+     * killer moves, in decreasing order.  Other moves are ordered by
+     * their history scores, which are kept below KILLER_PRIORITY.
+     */
+    private static final int HASH_PRIORITY = 1 << 30,
+        CAPTURE_PRIORITY = 1 << 29, KING_PRIORITY = 1 << 28,
+        KILLER_PRIORITY = 1 << 27;
+    /**
+     * The number of killer moves remembered for each ply.
+     */
+    private static final int KILLERS = 2;
     /**
      * The move found by the last call to one of the ...FindMove methods
      * below.
      */
     private Move _lastFoundMove;
+    /**
+     * The best move found by the last completed iteration of the current
+     * search, or null if none has completed.
+     */
+    private Move _rootMove;
+    /**
+     * The value of _rootMove, for white.
+     */
+    private int _rootValue;
+    /**
+     * Statistics of the current (or last) search.
+     */
+    private SearchStats _stats = new SearchStats();
+    /**
+     * The value of System.nanoTime() after which the current search is
+     * abandoned.  May be changed by another thread while I search in the
+     * background.
+     */
+    private volatile long _deadline;
+    /**
+     * True iff my background search has been cancelled.
+     */
+    private volatile boolean _stopped;
+    /**
+     * True iff I search in the background (on a single thread) while the
+     * opponent thinks.
+     */
+    private boolean _background;
+    /**
+     * The AI searching on the opponent's time, or null if none.
+     */
+    private AI _ponderer;
+    /**
+     * The thread running _ponderer's search.
+     */
+    private Thread _ponderThread;
+    /**
+     * The opponent's reply predicted by the pondering search.
+     */
+    private Move _ponderMove;
+    /**
+     * The position searched by _ponderer: the current position after
+     * _ponderMove.
+     */
+    private Board _ponderBoard;
+    /**
+     * The move found by my last background search, valid once its thread
+     * has finished.
+     */
+    private Move _ponderResult;
+    /**
+     * True iff the current iteration was abandoned for lack of time.
+     */
+    private boolean _outOfTime;
+    /**
+     * The value of the position searched by the last call to
+     * parallelSearch.
+     */
+    private int _lastValue;
+    /**
+     * The depth of the current iteration, so that _rootDepth - depth is
+     * the ply (distance from the root) of a search to depth.
+     */
+    private int _rootDepth;
+    /**
+     * _killers[p] holds the Move.index() of the most recent quiet moves
+     * that caused a cutoff at ply p, most recent first (-1 if none).
+     */
+    private final int[][] _killers = new int[MAX_SEARCH_DEPTH + 1][KILLERS];
+    /**
+     * _history[f][t] measures how often the quiet move from the square
+     * with index f to the one with index t has caused cutoffs, weighted
+     * toward deep searches.  Each parallel worker has its own copy, whose
+     * changes are merged into mine after each parallel search.
+     */
+    private final int[][] _history =
+        new int[Square.NUM_SQUARES][Square.NUM_SQUARES];
+    /**
+     * The AIs that search root moves for me in parallel, one for each
+     * live thread of _workersPool, reused across iterations and moves.
+     * Those of threads the pool has retired are dropped after each
+     * parallel search.
+     */
+    private final ConcurrentHashMap<Thread, AI> _workers =
+        new ConcurrentHashMap<>();
+    /**
+     * The pool whose threads _workers belong to.
+     */
+    private ForkJoinPool _workersPool;
+    /**
+     * The number of parallel searches I have started.  A worker prepares
+     * for a new one when this differs from its _workerRound.
+     */
+    private int _round;
+    /**
+     * For a worker, the _round of the parallel search it last prepared
+     * for, or -1.
+     */
+    private int _workerRound = -1;
+    /**
+     * Per-ply buffers of legal moves, in the encoding of Move.encode,
+     * allocated on first use.
+     */
+    private final IntMoveList[] _moves =
+        new IntMoveList[MAX_SEARCH_DEPTH + 1];
+    /**
+     * Per-ply buffers for sorting moves: ordering keys and copies of the
+     * moves they refer to.
+     */
+    private final long[][] _orderKeys = new long[MAX_SEARCH_DEPTH + 1][];
+    /**
+     * Per-ply copies of the move lists being sorted.
+     */
+    private final int[][] _orderMoves = new int[MAX_SEARCH_DEPTH + 1][];
+    /**
+     * True iff moves are ordered heuristically, rather than randomly
+     * apart from the transposition-table move.
+     */
+    private boolean _moveOrdering = true;
+    /**
+     * True iff leaves of the main search are resolved by a quiescence
+     * search of tactical moves.
+     */
+    private boolean _quiescence = true;
+    /**
+     * Per-ply move buffers of the quiescence search, allocated on first
+     * use.
+     */
+    private final IntMoveList[] _quiescenceMoves =
+        new IntMoveList[QUIESCENCE_DEPTH];
+    /**
+     * The number of positions the current quiescence search may still
+     * visit.
+     */
+    private int _quiescenceLeft;
+    /**
+     * The static evaluation I use, or null to use the controller's.
+     */
+    private Evaluator _evaluator;
+    /**
+     * The transposition table I use, or null to use the controller's.
+     */
+    private TranspositionTable _table;
 
     /**
      * A new AI with no piece or controller (intended to produce
@@ -47,7 +227,8 @@ class AI extends Player {
 
     /**
      * Return a heuristically determined maximum search depth
-     * based on characteristics of BOARD.
+     * based on characteristics of BOARD, for use when moves are not
+     * limited by time.
      */
     private static int maxDepth(Board board) {
         if (board.moveCount() <= 5) {
@@ -64,27 +245,323 @@ class AI extends Player {
 
     @Override
     String myMove() {
-        Move mv = findMove();
+        Move mv = bookMove();
+        if (mv != null) {
+            stopPondering();
+        } else {
+            mv = finishPondering();
+            if (mv == null) {
+                mv = _controller.runSearch(this::findMove);
+            }
+            _controller.recordStats(_stats);
+        }
         _controller.reportMove(mv);
         return mv.toString();
     }
 
+    @Override
+    void moveMade(Move move) {
+        if (move == null) {
+            stopPondering();
+        } else if (board().get(move.to()).side() == _myPiece) {
+            startPondering();
+        } else if (move != _ponderMove) {
+            stopPondering();
+        }
+    }
+
     @Override
     boolean isManual() {
         return false;
     }
 
+    /**
+     * Return the best move for the current position in the controller's
+     * opening book, or null if there is none (or the book is disabled).
+     */
+    private Move bookMove() {
+        OpeningBook book = _controller.openingBook();
+        return book == null ? null : book.bestMove(board());
+    }
+
     /**
      * Return a move for me from the current position, assuming there
      * is a move.
      */
     private Move findMove() {
-        Board b = new Board(board());
-        _lastFoundMove = null;
+        int budget = _controller.moveTime();
+        return findMove(budget > 0 ? MAX_SEARCH_DEPTH : maxDepth(board()));
+    }
+
+    /**
+     * Return a move for me from the current position, assuming there is
+     * a move, searching at most LIMIT levels deep (and within the
+     * controller's time budget, if any).
+     */
+    Move findMove(int limit) {
+        int budget = _controller.moveTime();
+        _deadline = budget > 0
+            ? System.nanoTime() + budget * 1000000L : Long.MAX_VALUE;
+        return search(board(), limit);
+    }
+
+    /**
+     * Return a move for the side to move in START, assuming there is a
+     * move, searching at most LIMIT levels deep, and stopping early if
+     * the search passes _deadline or is cancelled.  Returns null only if
+     * cancelled before completing one level.  Positions covered by the
+     * controller's endgame tablebase are searched one level deep, which
+     * suffices since the values of their successors are exact.
+     */
+    private Move search(Board start, int limit) {
+        Board b = new Board(start);
+        transpositionTable().newSearch();
         int sense = (b.turn() == Piece.WHITE ? 1 : -1);
-        findMove(b, maxDepth(b), true, sense,
-                -1 * WINNING_VALUE, WINNING_VALUE);
-        return _lastFoundMove;
+        _stats.start();
+        _outOfTime = false;
+        _rootMove = null;
+        for (int[] killers : _killers) {
+            Arrays.fill(killers, -1);
+        }
+        for (int[] history : _history) {
+            for (int i = 0; i < history.length; i += 1) {
+                history[i] /= 2;
+            }
+        }
+        Tablebase tablebase = _controller.tablebase();
+        if (tablebase != null && tablebase.covers(b)) {
+            limit = Math.min(limit, 1);
+        }
+        for (int depth = 1; depth <= limit; depth += 1) {
+            _lastFoundMove = null;
+            _rootDepth = depth;
+            int value = findMove(b, depth, true, sense,
+                                 -1 * WINNING_VALUE, WINNING_VALUE);
+            if (_outOfTime) {
+                break;
+            }
+            _rootMove = _lastFoundMove;
+            _rootValue = value;
+            _stats.completed(depth, value);
+            if (_rootMove == null || Math.abs(value) == WINNING_VALUE) {
+                break;
+            }
+        }
+        _stats.finish(principalVariation(start, _stats.depth()));
+        return _rootMove;
+    }
+
+    /**
+     * Return the value for white of the move returned by the last call
+     * to findMove, as found by its last completed iteration.
+     */
+    int lastValue() {
+        return _rootValue;
+    }
+
+    /**
+     * Return the number of positions visited by the last call to
+     * findMove, including those visited by parallel workers.
+     */
+    long nodes() {
+        return _stats.nodes();
+    }
+
+    /**
+     * Return the number of positions visited by quiescence searches in
+     * the last call to findMove (included in nodes()), including those
+     * visited by parallel workers.
+     */
+    long quiescenceNodes() {
+        return _stats.quiescenceNodes();
+    }
+
+    /**
+     * Return the statistics of my last search (that of findMove, or the
+     * background search whose result my last move used).
+     */
+    SearchStats stats() {
+        return _stats;
+    }
+
+    /**
+     * Resolve the leaves of the main search with a quiescence search iff
+     * ON.
+     */
+    void setQuiescence(boolean on) {
+        _quiescence = on;
+    }
+
+    /**
+     * Order moves heuristically iff ON; otherwise order them randomly,
+     * apart from trying the transposition-table move first.
+     */
+    void setMoveOrdering(boolean on) {
+        _moveOrdering = on;
+    }
+
+    /**
+     * Evaluate positions with EVALUATOR rather than the controller's
+     * evaluator (if EVALUATOR is null, use the controller's).
+     */
+    void setEvaluator(Evaluator evaluator) {
+        _evaluator = evaluator;
+    }
+
+    /**
+     * Use TABLE as my transposition table rather than the controller's
+     * (if TABLE is null, use the controller's).  My background and
+     * parallel searches share it.
+     */
+    void setTranspositionTable(TranspositionTable table) {
+        _table = table;
+    }
+
+    /**
+     * Return the transposition table I use.
+     */
+    TranspositionTable transpositionTable() {
+        return _table == null ? _controller.transpositionTable() : _table;
+    }
+
+    /**
+     * Count a visited position at distance PLY from the root and return
+     * true iff the current search has run out of time or been cancelled.
+     * Only searches that have completed at least one iteration may run
+     * out of time.
+     */
+    private boolean outOfTime(int ply) {
+        if ((_stats.countNode(ply) & (CLOCK_INTERVAL - 1)) == 0
+            && (_stopped
+                || _rootMove != null && System.nanoTime() > _deadline)) {
+            _outOfTime = true;
+        }
+        return _outOfTime;
+    }
+
+    /**
+     * Return up to MAX moves of the principal variation from BOARD, as
+     * recorded in the transposition table: the best move, the best reply
+     * to it, and so on.
+     */
+    List<Move> principalVariation(Board board, int max) {
+        List<Move> result = new ArrayList<>();
+        Board b = new Board(board);
+        TranspositionTable table = transpositionTable();
+        while (result.size() < max && b.winner() == null) {
+            long entry = table.probe(b.hashKey());
+            int index = entry == TranspositionTable.ABSENT
+                ? -1 : TranspositionTable.move(entry);
+            if (index == -1) {
+                break;
+            }
+            Move mv = Move.mv(index);
+            if (mv == null || !b.isLegal(mv)) {
+                break;
+            }
+            result.add(mv);
+            b.makeMove(mv);
+        }
+        return result;
+    }
+
+    /**
+     * If pondering is enabled and my opponent is manual, start searching
+     * in the background the position that follows the reply predicted
+     * for my opponent, by a separate AI sharing the transposition table.
+     * Assumes that I have just moved.
+     */
+    private void startPondering() {
+        stopPondering();
+        Board board = board();
+        boolean manualOpponent = _myPiece == Piece.WHITE
+            ? _controller.manualBlack() : _controller.manualWhite();
+        if (!_controller.pondering() || !manualOpponent
+            || board.winner() != null) {
+            return;
+        }
+        List<Move> pv = principalVariation(board, 1);
+        if (pv.isEmpty()) {
+            return;
+        }
+        Board next = new Board(board);
+        next.makeMove(pv.get(0));
+        if (next.winner() != null) {
+            return;
+        }
+        AI ponderer = new AI(_myPiece, _controller);
+        ponderer._background = true;
+        ponderer._evaluator = _evaluator;
+        ponderer._table = _table;
+        ponderer._moveOrdering = _moveOrdering;
+        ponderer._quiescence = _quiescence;
+        ponderer._deadline = Long.MAX_VALUE;
+        int limit = _controller.moveTime() > 0
+            ? MAX_SEARCH_DEPTH : maxDepth(next);
+        _ponderer = ponderer;
+        _ponderMove = pv.get(0);
+        _ponderBoard = next;
+        _ponderThread = new Thread(() ->
+            ponderer._ponderResult = ponderer.search(next, limit));
+        _ponderThread.setDaemon(true);
+        _ponderThread.start();
+    }
+
+    /**
+     * Cancel any background search and wait for it to finish.
+     */
+    private void stopPondering() {
+        if (_ponderThread != null) {
+            _ponderer._stopped = true;
+            joinPonderer();
+        }
+    }
+
+    /**
+     * If a background search of the current position is under way, let
+     * it continue for the controller's time budget (if any), and return
+     * the move it finds.  Otherwise, cancel any background search and
+     * return null.
+     */
+    private Move finishPondering() {
+        if (_ponderThread == null) {
+            return null;
+        }
+        if (_ponderBoard.hashKey() != board().hashKey()
+            || !_ponderBoard.encodedBoard().equals(board().encodedBoard())) {
+            stopPondering();
+            return null;
+        }
+        int budget = _controller.moveTime();
+        if (budget > 0) {
+            _ponderer._deadline = System.nanoTime() + budget * 1000000L;
+        }
+        AI ponderer = _ponderer;
+        joinPonderer();
+        _stats = ponderer._stats;
+        return ponderer._ponderResult;
+    }
+
+    /**
+     * Wait for the background search thread to finish and forget it.
+     */
+    private void joinPonderer() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                _ponderThread.join();
+                break;
+            } catch (InterruptedException excp) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        _ponderThread = null;
+        _ponderer = null;
+        _ponderMove = null;
+        _ponderBoard = null;
     }
 
     /**
@@ -93,140 +570,495 @@ class AI extends Player {
      * should have maximal value or have value > BETA if SENSE==1,
      * and minimal value or value < ALPHA if SENSE==-1. Searches up to
      * DEPTH levels.  Searching at level 0 simply returns a static estimate
-     * of the board value and does not set _lastMoveFound.
+     * of the board value and does not set _lastMoveFound.  Results are
+     * stored in and reused from the controller's transposition table.
+     * Positions other than the root that the controller's endgame
+     * tablebase covers are given their exact values without search.
+     * When the search runs out of time, returns a meaningless value and
+     * sets _outOfTime.
      *
      * @author wikipedia
      */
     private int findMove(Board board, int depth, boolean saveMove,
                          int sense, int alpha, int beta) {
-        if (depth == 0 || board.winner() != null) {
+        int ply = _rootDepth - depth;
+        if (outOfTime(ply)) {
+            return 0;
+        }
+        Tablebase tablebase = _controller.tablebase();
+        if (board.winner() != null) {
             return staticScore(board);
+        } else if (!saveMove && tablebase != null
+                   && tablebase.covers(board)) {
+            return tablebaseScore(tablebase, board);
+        } else if (depth == 0) {
+            if (!_quiescence) {
+                return staticScore(board);
+            }
+            _quiescenceLeft = QUIESCENCE_NODES;
+            return quiesce(board, 0, sense, alpha, beta);
         }
-        if (sense == 1) {
-            int value = -1 * WINNING_VALUE;
-            ArrayList<Move> moves =
-                    (ArrayList<Move>) board.legalMoves(Piece.WHITE);
-            for (int ind = moves.size() - 1; ind >= 1; ind--) {
-                int j = _controller.randInt(ind + 1);
-                Move tmp = moves.get(j);
-                moves.set(j, moves.get(ind)); moves.set(ind, tmp);
-            }
-            if (moves.size() > 0) {
-                Move mv = moves.get(0);
-                for (int i = 0; i < moves.size(); i++) {
-                    mv = moves.get(i); board.makeMove(mv);
-                    value = Math.max(value, findMove(board, depth - 1,
-                            false, sense * -1, alpha, beta));
-                    board.undo(); alpha = Math.max(alpha, value);
-                    if (alpha >= beta) {
-                        break;
-                    }
+        TranspositionTable table = transpositionTable();
+        long key = board.hashKey();
+        int alpha0 = alpha, beta0 = beta;
+        long entry = table.probe(key);
+        _stats.countProbe(entry != TranspositionTable.ABSENT);
+        int hashMove = entry == TranspositionTable.ABSENT
+            ? -1 : TranspositionTable.move(entry);
+        if (entry != TranspositionTable.ABSENT && !saveMove
+            && TranspositionTable.depth(entry) >= depth) {
+            int score = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT) {
+                table.recordCutoff();
+                return score;
+            } else if (bound == TranspositionTable.LOWER) {
+                alpha = Math.max(alpha, score);
+            } else {
+                beta = Math.min(beta, score);
+            }
+            if (alpha >= beta) {
+                table.recordCutoff();
+                return score;
+            }
+        }
+        int n = orderMoves(board, sense,
+            saveMove && _rootMove != null ? _rootMove.index() : hashMove,
+            ply);
+        IntMoveList moves = _moves[ply];
+        int value;
+        int best;
+        ForkJoinPool pool = _controller.searchPool();
+        if (saveMove && pool != null && n > 1 && !_background) {
+            best = parallelSearch(pool, board, moves, n, depth, sense,
+                                  alpha, beta);
+            value = _lastValue;
+        } else {
+            value = -sense * WINNING_VALUE;
+            best = -1;
+            for (int i = 0; i < n; i += 1) {
+                int mv = moves.get(i);
+                board.makeMove(mv);
+                int v = findMove(board, depth - 1, false, -sense,
+                                 alpha, beta);
+                board.undo();
+                if (_outOfTime) {
+                    return 0;
                 }
-                if (saveMove) {
-                    _lastFoundMove = mv;
+                if (best == -1 || sense * v > sense * value) {
+                    value = v;
+                    best = mv;
                 }
-            }
-            return value;
-        } else if (sense == -1) {
-            int value = WINNING_VALUE;
-            ArrayList<Move> moves =
-                    (ArrayList<Move>) board.legalMoves(Piece.BLACK);
-            for (int ind = moves.size() - 1; ind >= 1; ind--) {
-                int j = _controller.randInt(ind + 1);
-                Move tmp = moves.get(j);
-                moves.set(j, moves.get(ind));
-                moves.set(ind, tmp);
-            }
-            if (moves.size() > 0) {
-                Move mv = moves.get(0);
-                for (int i = 0; i < moves.size(); i++) {
-                    mv = moves.get(i); board.makeMove(mv);
-                    value = Math.min(value, findMove(board, depth - 1,
-                            false,
-                            sense * -1, alpha, beta));
-                    board.undo(); beta = Math.min(beta, value);
-                    if (beta <= alpha) {
-                        break;
-                    }
+                if (sense == 1) {
+                    alpha = Math.max(alpha, value);
+                } else {
+                    beta = Math.min(beta, value);
                 }
-                if (saveMove) {
-                    _lastFoundMove = mv;
+                if (alpha >= beta) {
+                    _stats.countCutoff(i == 0);
+                    if (!Move.isCapture(mv)) {
+                        recordCutoff(mv, depth, ply);
+                    }
+                    break;
                 }
             }
-            return value;
+        }
+        if (_outOfTime) {
+            return 0;
+        }
+        if (saveMove && best != -1) {
+            _lastFoundMove = Move.mv(best);
+        }
+        int bound = value <= alpha0 ? TranspositionTable.UPPER
+            : value >= beta0 ? TranspositionTable.LOWER
+            : TranspositionTable.EXACT;
+        table.store(key, depth, bound, value,
+                    best == -1 ? -1 : Move.index(best));
+        return value;
+    }
+
+    /**
+     * Return the value of BOARD, a leaf of the main search reached by
+     * PLY tactical moves, for the side indicated by SENSE, as for findMove
+     * with window ALPHA, BETA.  Only tactical moves are searched, and the
+     * side to move may instead stand pat on the static value.  The search
+     * stops at QUIESCENCE_DEPTH or when _quiescenceLeft runs out.
+     */
+    private int quiesce(Board board, int ply, int sense,
+                        int alpha, int beta) {
+        int standPat = staticScore(board);
+        if (board.winner() != null || ply == QUIESCENCE_DEPTH
+            || _quiescenceLeft <= 0) {
+            return standPat;
+        }
+        if (sense == 1) {
+            if (standPat >= beta) {
+                return standPat;
+            }
+            alpha = Math.max(alpha, standPat);
         } else {
+            if (standPat <= alpha) {
+                return standPat;
+            }
+            beta = Math.min(beta, standPat);
+        }
+        if (_quiescenceMoves[ply] == null) {
+            _quiescenceMoves[ply] = new IntMoveList();
+        }
+        IntMoveList moves = _quiescenceMoves[ply];
+        int n = board.legalMoves(board.turn(), moves);
+        int value = standPat;
+        for (int i = 0; i < n && _quiescenceLeft > 0; i += 1) {
+            int mv = moves.get(i);
+            if (!isTactical(board, mv)) {
+                continue;
+            }
+            _quiescenceLeft -= 1;
+            _stats.countQuiescenceNode();
+            if (outOfTime(_rootDepth + ply + 1)) {
+                return 0;
+            }
+            board.makeMove(mv);
+            int v = quiesce(board, ply + 1, -sense, alpha, beta);
+            board.undo();
+            if (_outOfTime) {
+                return 0;
+            }
+            if (sense * v > sense * value) {
+                value = v;
+            }
+            if (sense == 1) {
+                alpha = Math.max(alpha, value);
+            } else {
+                beta = Math.min(beta, value);
+            }
+            if (alpha >= beta) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Return true iff the encoded move MV in BOARD is tactical: it
+     * captures, it brings a second or later attacker next to the king, or
+     * it moves the king to the edge or away from two or more attackers.
+     */
+    private static boolean isTactical(Board board, int mv) {
+        if (Move.isCapture(mv)) {
+            return true;
+        }
+        Piece p = board.get(Square.sq(Move.fromIndex(mv)));
+        Square to = Square.sq(Move.toIndex(mv));
+        if (p == Piece.KING) {
+            return to.isEdge() || board.kingAttackers() >= 2;
+        }
+        return p == Piece.BLACK && board.kingAttackers() >= 1
+            && to.adjacent(board.kingPosition());
+    }
+
+    /**
+     * Store the legal moves in BOARD for the side indicated by SENSE (1
+     * for white, -1 for black) in _moves[PLY], best first according to
+     * the move-ordering heuristics, with FIRST the index of the move to
+     * try first (or -1), and PLY the distance from the root.  Ties are
+     * broken randomly.  Return the number of moves.
+     */
+    private int orderMoves(Board board, int sense, int first, int ply) {
+        if (_moves[ply] == null) {
+            _moves[ply] = new IntMoveList();
+            _orderMoves[ply] = new int[Board.MAX_MOVES];
+            _orderKeys[ply] = new long[Board.MAX_MOVES];
+        }
+        IntMoveList moves = _moves[ply];
+        int n = board.legalMoves(sense == 1 ? Piece.WHITE : Piece.BLACK,
+                                 moves);
+        long[] keys = _orderKeys[ply];
+        int[] copy = _orderMoves[ply];
+        for (int i = 0; i < n; i += 1) {
+            int mv = moves.get(i);
+            copy[i] = mv;
+            keys[i] = (long) priority(board, mv, first, ply) << 32
+                | (long) _controller.randInt(1 << 16) << 16 | i;
+        }
+        Arrays.sort(keys, 0, n);
+        for (int i = 0; i < n; i += 1) {
+            moves.set(i, copy[(int) (keys[n - 1 - i] & 0xffff)]);
+        }
+        return n;
+    }
+
+    /**
+     * Return the ordering priority of the encoded move MV in BOARD, where
+     * FIRST is the index of the move to try first and PLY is the distance
+     * from the root.  Moves with higher priorities are tried first.
+     */
+    private int priority(Board board, int mv, int first, int ply) {
+        int index = Move.index(mv);
+        if (index == first) {
+            return HASH_PRIORITY;
+        } else if (!_moveOrdering) {
             return 0;
+        } else if (Move.isCapture(mv)) {
+            return CAPTURE_PRIORITY;
+        }
+        Square from = Square.sq(Move.fromIndex(mv)),
+            to = Square.sq(Move.toIndex(mv));
+        if (board.get(from) == Piece.KING
+            && edgeDistance(to) < edgeDistance(from)) {
+            return KING_PRIORITY + Board.SIZE - edgeDistance(to);
+        }
+        for (int k = 0; k < KILLERS; k += 1) {
+            if (_killers[ply][k] == index) {
+                return KILLER_PRIORITY + KILLERS - k;
+            }
         }
+        return Math.min(_history[from.index()][to.index()],
+                        KILLER_PRIORITY - 1);
     }
+
     /**
-     * helps return a heuristic value for BOARD.
+     * Return the number of squares between SQ and the nearest edge.
      */
-    private static final int MAGICNUM = 60;
+    private static int edgeDistance(Square sq) {
+        return Math.min(Math.min(sq.col(), Board.SIZE - 1 - sq.col()),
+                        Math.min(sq.row(), Board.SIZE - 1 - sq.row()));
+    }
+
     /**
-     * helps return a heuristic value for BOARD.
+     * Record that the quiet encoded move MV caused a cutoff in a search to
+     * DEPTH at PLY.
      */
-    private static final float MAGICNUM1 = 0.75f;
+    private void recordCutoff(int mv, int depth, int ply) {
+        int index = Move.index(mv);
+        int[] killers = _killers[ply];
+        if (killers[0] != index) {
+            System.arraycopy(killers, 0, killers, 1, KILLERS - 1);
+            killers[0] = index;
+        }
+        int[] history = _history[Move.fromIndex(mv)];
+        int to = Move.toIndex(mv);
+        history[to] = Math.min(history[to] + depth * depth,
+                               KILLER_PRIORITY - 1);
+    }
+
     /**
-     * Return a heuristic value for BOARD.
+     * Search the first N of MOVES, the legal moves from the root position
+     * BOARD, to DEPTH with the window ALPHA, BETA, as for findMove with
+     * SENSE, using the workers of POOL.  Return the best encoded move
+     * found and set _lastValue to its value.  The first move is searched
+     * alone to establish a bound; the rest are then searched in parallel,
+     * each on its own copy of BOARD by the worker AI of the pool thread
+     * that runs it, sharing the best bound found so far.  The workers'
+     * statistics and history tables are then merged into mine.
      */
-    public static int staticScore(Board board) {
-        if (board.winner() == Piece.BLACK) {
-            return -1 * WINNING_VALUE;
-        } else if (board.winner() == Piece.WHITE) {
-            return WINNING_VALUE;
+    private int parallelSearch(ForkJoinPool pool, Board board,
+                               IntMoveList moves, int n, int depth,
+                               int sense, int alpha, int beta) {
+        int best = moves.get(0);
+        board.makeMove(best);
+        int value = findMove(board, depth - 1, false, -sense, alpha, beta);
+        board.undo();
+        _lastValue = value;
+        if (_outOfTime || (sense == 1 ? value >= beta : value <= alpha)) {
+            return best;
         }
-        Square kingSq = board.kingPosition();
-        double minInWay = 100f;
-        for (int i = 0; i < 4; i++) {
-            Square s;
-            int steps = 1;
-            double inWay = 0;
-            while (true) {
-                s = kingSq.rookMove(i, steps);
-                if (s == null || board.get(s).side() != Piece.EMPTY) {
-                    inWay = Math.min(inWay, minInWay);
-                    break;
-                }
-                if (s.row() == 8 || s.row() == 0
-                        || s.col() == 8 || s.col() == 0) {
-                    return WINNING_VALUE - (MAGICNUM);
-                }
-                if (board.get(s).side() == Piece.BLACK) {
-                    inWay++;
+        AtomicInteger bound =
+            new AtomicInteger(sense == 1 ? Math.max(alpha, value)
+                              : Math.min(beta, value));
+        if (pool != _workersPool) {
+            _workers.clear();
+            _workersPool = pool;
+        }
+        _round += 1;
+        RootTask[] tasks = new RootTask[n - 1];
+        for (int i = 0; i < tasks.length; i += 1) {
+            tasks[i] = new RootTask(board, moves.get(i + 1), depth - 1,
+                                    -sense, alpha, beta, bound);
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        List<AI> used = new ArrayList<>();
+        for (Iterator<Map.Entry<Thread, AI>> i =
+                 _workers.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<Thread, AI> entry = i.next();
+            AI worker = entry.getValue();
+            if (worker._workerRound == _round) {
+                used.add(worker);
+                _stats.add(worker._stats);
+                _outOfTime |= worker._outOfTime;
+            }
+            if (!entry.getKey().isAlive()) {
+                i.remove();
+            }
+        }
+        mergeHistory(used);
+        for (RootTask task : tasks) {
+            if (task.improved() && sense * task._value > sense * value) {
+                value = task._value;
+                best = task._move;
+            }
+        }
+        _lastValue = value;
+        return best;
+    }
+
+    /**
+     * Add to my history table the changes that the workers USED made to
+     * their copies of it during the last parallel search.
+     */
+    private void mergeHistory(List<AI> used) {
+        for (int f = 0; f < _history.length; f += 1) {
+            for (int t = 0; t < _history[f].length; t += 1) {
+                long sum = _history[f][t];
+                for (AI worker : used) {
+                    sum += worker._history[f][t] - _history[f][t];
                 }
-                steps++;
-            }
-            inWay = Math.min(inWay, minInWay);
-        }
-        double wallDist = Math.min(Math.min(kingSq.col(),
-                8 - kingSq.col()), Math.min(kingSq.row(), 8 - kingSq.row()));
-        double wallDistMul = MAGICNUM1;
-        double kscore = wallDist * wallDistMul + minInWay;
-        double ceil = 1000.0;
-        kscore = kscore / ceil;
-        int[][] tups = {{0, 2}, {2, 0}, {1, 3}, {3, 1}};
-        for (int ti = 0; ti < 4; ti++) {
-            int d1 = tups[ti][0];
-            int d2 = tups[ti][1];
-            if (board.get(kingSq.rookMove(d1, 1)) == Piece.BLACK) {
-                for (int d = 0; d < 4; d++) {
-                    int steps = 1;
-                    while (true) {
-                        Square s = kingSq.rookMove(d2, 1).rookMove(d, steps);
-                        if (s == null) {
-                            break;
-                        }
-                        if (board.get(s).side() == Piece.BLACK) {
-                            return -1 * WINNING_VALUE + MAGICNUM;
-                        } else if (board.get(s).side() == Piece.WHITE) {
-                            break;
-                        }
-                        steps++;
-                    }
+                _history[f][t] = (int) Math.min(sum, KILLER_PRIORITY - 1);
+            }
+        }
+    }
+
+    /**
+     * Prepare me, a worker of PARENT, for PARENT's parallel search number
+     * ROUND, unless I already have: take PARENT's settings, the state of
+     * its current iteration, and a copy of its history table, and clear my
+     * statistics.
+     */
+    private void prepare(AI parent, int round) {
+        if (_workerRound == round) {
+            return;
+        }
+        _workerRound = round;
+        _deadline = parent._deadline;
+        _rootMove = parent._rootMove;
+        _rootDepth = parent._rootDepth;
+        _moveOrdering = parent._moveOrdering;
+        _evaluator = parent._evaluator;
+        _table = parent._table;
+        _quiescence = parent._quiescence;
+        _outOfTime = false;
+        _stats.start();
+        for (int f = 0; f < _history.length; f += 1) {
+            System.arraycopy(parent._history[f], 0, _history[f], 0,
+                             _history[f].length);
+        }
+    }
+
+    /**
+     * A search of the position after one root move, performed on a
+     * separate copy of the board by the worker AI of the pool thread that
+     * runs it.
+     */
+    private class RootTask extends RecursiveAction {
+
+        /**
+         * The encoded root move searched.
+         */
+        private final int _move;
+        /**
+         * My copy of the root position.
+         */
+        private final Board _board;
+        /**
+         * The shared best value for the root mover.
+         */
+        private final AtomicInteger _bound;
+        /**
+         * Depth and sense of the search after the root move.
+         */
+        private final int _depth, _sense;
+        /**
+         * The window of the search.
+         */
+        private int _alpha, _beta;
+        /**
+         * The value found.
+         */
+        private int _value;
+
+        /**
+         * A task that searches MOVE made on a copy of BOARD to DEPTH, as
+         * for findMove with SENSE, within the window ALPHA, BETA narrowed
+         * by BOUND, the best value found so far for the mover at the root.
+         */
+        RootTask(Board board, int move, int depth, int sense,
+                 int alpha, int beta, AtomicInteger bound) {
+            _board = new Board(board);
+            _move = move;
+            _depth = depth;
+            _sense = sense;
+            _alpha = alpha;
+            _beta = beta;
+            _bound = bound;
+        }
+
+        @Override
+        protected void compute() {
+            if (_sense == -1) {
+                _alpha = Math.max(_alpha, _bound.get());
+            } else {
+                _beta = Math.min(_beta, _bound.get());
+            }
+            AI worker = _workers.computeIfAbsent(Thread.currentThread(),
+                t -> new AI(_myPiece, _controller));
+            worker.prepare(AI.this, _round);
+            _board.makeMove(_move);
+            _value = worker.findMove(_board, _depth, false, _sense,
+                                     _alpha, _beta);
+            if (!worker._outOfTime && improved()) {
+                if (_sense == -1) {
+                    _bound.accumulateAndGet(_value, Math::max);
+                } else {
+                    _bound.accumulateAndGet(_value, Math::min);
                 }
             }
         }
-        return (int) (kscore * ((double) WINNING_VALUE));
+
+        /**
+         * Return true iff the search found a value better for the root
+         * mover than the bound it started with (and so is not merely a
+         * bound itself).
+         */
+        boolean improved() {
+            return _sense == -1 ? _value > _alpha : _value < _beta;
+        }
+    }
+
+    /**
+     * Return the exact value for white of BOARD, which TABLEBASE covers:
+     * 0 for a draw, and otherwise a win for one side that is less
+     * decisive the more moves it takes.
+     */
+    private static int tablebaseScore(Tablebase tablebase, Board board) {
+        int value = tablebase.probe(board);
+        if (value == Tablebase.DRAW) {
+            return 0;
+        }
+        int score = WILL_WIN_VALUE - value;
+        if (Tablebase.isWin(value) == (board.turn() == Piece.WHITE)) {
+            return score;
+        }
+        return -score;
+    }
+
+    /**
+     * Return a heuristic value for BOARD, using my evaluator (by default
+     * the controller's) unless the game is over.
+     */
+    int staticScore(Board board) {
+        if (board.winner() == Piece.BLACK) {
+            return -1 * WINNING_VALUE;
+        } else if (board.winner() == Piece.WHITE) {
+            return WINNING_VALUE;
+        }
+        Evaluator eval =
+            _evaluator == null ? _controller.evaluator() : _evaluator;
+        return eval.score(board);
     }
 
 }
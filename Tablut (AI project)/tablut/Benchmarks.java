@@ -0,0 +1,218 @@
+package tablut;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Microbenchmarks of the move generator, move making, static evaluation,
+ * and search.  Usage: java tablut.Benchmarks [FILE].  Each benchmark is
+ * run for WARMUP_ROUNDS untimed rounds, to let the JIT compiler settle,
+ * and then for ROUNDS timed rounds of about ROUND_MILLIS each.  Results
+ * (mean and standard deviation of the time per operation over the timed
+ * rounds) are printed and, if FILE is given, written to it as CSV.
+ *
+ * @author IanTien
+ */
+public class Benchmarks {
+
+    /**
+     * Number of untimed and timed rounds of each benchmark.
+     */
+    private static final int WARMUP_ROUNDS = 5, ROUNDS = 10;
+    /**
+     * Approximate length of a round in milliseconds.
+     */
+    private static final int ROUND_MILLIS = 200;
+    /**
+     * Random seed used to choose positions and moves.
+     */
+    private static final long SEED = 61;
+    /**
+     * Number of positions used by the benchmarks of single operations.
+     */
+    private static final int NUM_POSITIONS = 256;
+
+    /**
+     * A benchmarked operation.
+     */
+    private interface Workload {
+        /**
+         * Perform the operation REPS times and return a value that
+         * depends on the results, so that they cannot be optimized away.
+         */
+        long run(int reps);
+    }
+
+    /**
+     * Positions from random games, without winners.
+     */
+    private final Board[] _positions = new Board[NUM_POSITIONS];
+    /**
+     * A legal move in each of _positions.
+     */
+    private final Move[] _moves = new Move[NUM_POSITIONS];
+    /**
+     * A move buffer.
+     */
+    private final IntMoveList _buffer = new IntMoveList();
+    /**
+     * A controller for the AIs searched.
+     */
+    private final Controller _controller =
+        new Controller(new NullView(), null, new NullReporter(),
+                       new AI(), new AI(), false);
+    /**
+     * Results, one CSV line per benchmark.
+     */
+    private final List<String> _results = new ArrayList<>();
+
+    /**
+     * Benchmarks on positions chosen at random.
+     */
+    Benchmarks() {
+        Random rand = new Random(SEED);
+        Board board = new Board();
+        int n = 0;
+        while (n < NUM_POSITIONS) {
+            List<Move> moves = board.legalMoves(board.turn());
+            if (board.winner() != null || moves.isEmpty()) {
+                board.init();
+                continue;
+            }
+            if (rand.nextInt(4) == 0) {
+                _positions[n] = new Board(board);
+                _moves[n] = moves.get(rand.nextInt(moves.size()));
+                n += 1;
+            }
+            board.makeMove(moves.get(rand.nextInt(moves.size())));
+        }
+    }
+
+    /**
+     * Run all benchmarks.
+     */
+    void runAll() {
+        measure("legalMoves_buffer", reps -> {
+            long sum = 0;
+            for (int r = 0; r < reps; r += 1) {
+                Board b = _positions[r & (NUM_POSITIONS - 1)];
+                sum += b.legalMoves(b.turn(), _buffer);
+            }
+            return sum;
+        });
+        measure("legalMoves_list", reps -> {
+            long sum = 0;
+            for (int r = 0; r < reps; r += 1) {
+                Board b = _positions[r & (NUM_POSITIONS - 1)];
+                sum += b.legalMoves(b.turn()).size();
+            }
+            return sum;
+        });
+        measure("makeMove_undo", reps -> {
+            long sum = 0;
+            for (int r = 0; r < reps; r += 1) {
+                int p = r & (NUM_POSITIONS - 1);
+                Board b = _positions[p];
+                b.makeMove(_moves[p]);
+                sum += b.positionKey();
+                b.undo();
+            }
+            return sum;
+        });
+        AI ai = new AI(Piece.WHITE, _controller);
+        measure("staticScore", reps -> {
+            long sum = 0;
+            for (int r = 0; r < reps; r += 1) {
+                sum += ai.staticScore(_positions[r & (NUM_POSITIONS - 1)]);
+            }
+            return sum;
+        });
+        for (int depth = 2; depth <= 3; depth += 1) {
+            final int d = depth;
+            measure("findMove_depth" + d, reps -> {
+                long sum = 0;
+                for (int r = 0; r < reps; r += 1) {
+                    Board b = _positions[r & (NUM_POSITIONS - 1)];
+                    _controller.board().copy(b);
+                    _controller.setSeed(SEED);
+                    _controller.transpositionTable().clear();
+                    sum += new AI(b.turn(), _controller).findMove(d).index();
+                }
+                return sum;
+            });
+        }
+    }
+
+    /**
+     * Measure WORK under NAME, print the result, and record it.
+     */
+    private void measure(String name, Workload work) {
+        int reps = 1;
+        long sink = 0;
+        long target = ROUND_MILLIS * 1000000L;
+        while (true) {
+            long start = System.nanoTime();
+            sink += work.run(reps);
+            if (System.nanoTime() - start >= target / 4) {
+                break;
+            }
+            reps *= 2;
+        }
+        long start = System.nanoTime();
+        sink += work.run(reps);
+        reps = (int) Math.max(1, reps * target
+                              / Math.max(1, System.nanoTime() - start));
+        for (int k = 0; k < WARMUP_ROUNDS; k += 1) {
+            sink += work.run(reps);
+        }
+        double sum, sumSq;
+        sum = sumSq = 0;
+        for (int k = 0; k < ROUNDS; k += 1) {
+            start = System.nanoTime();
+            sink += work.run(reps);
+            double perOp = (double) (System.nanoTime() - start) / reps;
+            sum += perOp;
+            sumSq += perOp * perOp;
+        }
+        double mean = sum / ROUNDS;
+        double stddev = Math.sqrt(Math.max(0, sumSq / ROUNDS - mean * mean));
+        System.out.printf("%-20s %14.1f ns/op  +- %10.1f  %14.0f ops/sec"
+                          + "  (%x)%n", name, mean, stddev, 1e9 / mean,
+                          sink & 0xff);
+        _results.add(String.format("%s,%d,%.1f,%.1f,%.0f", name,
+                                   (long) reps * ROUNDS, mean, stddev,
+                                   1e9 / mean));
+    }
+
+    /**
+     * Write the results as CSV to OUT.
+     */
+    void write(PrintStream out) {
+        out.println("benchmark,ops,ns_per_op,ns_per_op_stddev,ops_per_sec");
+        for (String line : _results) {
+            out.println(line);
+        }
+    }
+
+    /**
+     * Run the benchmarks, writing the results to the file named by
+     * ARGS[0], if present.
+     */
+    public static void main(String... args) {
+        Benchmarks bench = new Benchmarks();
+        bench.runAll();
+        if (args.length > 0) {
+            try (PrintStream out = new PrintStream(args[0])) {
+                bench.write(out);
+            } catch (FileNotFoundException excp) {
+                System.err.printf("Could not open file: %s%n",
+                                  excp.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
+}
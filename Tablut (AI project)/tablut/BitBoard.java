@@ -0,0 +1,132 @@
+package tablut;
+
+import static tablut.Square.*;
+
+/**
+ * Precomputed masks for the bitboard representation of a Tablut position.
+ * A set of squares is an 81-bit mask held in two longs: bit I of the low
+ * word is the square with index I for I < 64, and bit I - 64 of the high
+ * word is the square with index I for the rest.
+ *
+ * @author IanTien
+ */
+final class BitBoard {
+
+    /**
+     * The number of square indices held in the low word of a mask.
+     */
+    static final int WORD = 64;
+    /**
+     * LO[i] and HI[i] are the two words of the mask holding only the
+     * square with index i.
+     */
+    static final long[] LO = new long[NUM_SQUARES],
+            HI = new long[NUM_SQUARES];
+    /**
+     * RAY_LO[i][d] and RAY_HI[i][d] are the two words of the mask of
+     * ROOK_SQUARES[i][d].
+     */
+    static final long[][] RAY_LO = new long[NUM_SQUARES][4],
+            RAY_HI = new long[NUM_SQUARES][4];
+    /**
+     * STEP[i][d] is the index of the square one step from the square with
+     * index i in direction d, or -1 if that is off the board.
+     */
+    static final int[][] STEP = new int[NUM_SQUARES][4];
+    /**
+     * STRIDE[d] is the difference in index between adjacent squares
+     * along direction d.
+     */
+    static final int[] STRIDE = { BOARD_SIZE, 1, BOARD_SIZE, 1 };
+    /**
+     * The two words of the mask of all edge squares.
+     */
+    static final long EDGE_LO, EDGE_HI;
+
+    static {
+        long edgeLo, edgeHi;
+        edgeLo = edgeHi = 0;
+        for (Square sq : SQUARE_LIST) {
+            int i = sq.index();
+            if (i < WORD) {
+                LO[i] = 1L << i;
+            } else {
+                HI[i] = 1L << (i - WORD);
+            }
+            if (sq.isEdge()) {
+                edgeLo |= LO[i];
+                edgeHi |= HI[i];
+            }
+        }
+        for (Square sq : SQUARE_LIST) {
+            int i = sq.index();
+            for (int d = 0; d < 4; d += 1) {
+                for (Square sq1 : ROOK_SQUARES[i][d]) {
+                    RAY_LO[i][d] |= LO[sq1.index()];
+                    RAY_HI[i][d] |= HI[sq1.index()];
+                }
+                Square next = sq.rookMove(d, 1);
+                STEP[i][d] = next == null ? -1 : next.index();
+            }
+        }
+        EDGE_LO = edgeLo;
+        EDGE_HI = edgeHi;
+    }
+
+    /**
+     * Not instantiable.
+     */
+    private BitBoard() {
+    }
+
+    /**
+     * Return true iff the mask LO, HI contains the square with index I.
+     */
+    static boolean contains(long lo, long hi, int i) {
+        if (i < WORD) {
+            return (lo & (1L << i)) != 0;
+        } else {
+            return (hi & (1L << (i - WORD))) != 0;
+        }
+    }
+
+    /**
+     * Return the number of squares in the mask LO, HI.
+     */
+    static int count(long lo, long hi) {
+        return Long.bitCount(lo) + Long.bitCount(hi);
+    }
+
+    /**
+     * Return the index of the square in the mask LO, HI that comes first
+     * when travelling in direction DIR, or -1 if the mask is empty.  When
+     * LO, HI is restricted to a single ray in direction DIR, this is the
+     * nearest square on that ray.
+     */
+    static int nearest(long lo, long hi, int dir) {
+        if (dir == 0 || dir == 1) {
+            if (lo != 0) {
+                return Long.numberOfTrailingZeros(lo);
+            } else if (hi != 0) {
+                return WORD + Long.numberOfTrailingZeros(hi);
+            }
+        } else {
+            if (hi != 0) {
+                return 2 * WORD - 1 - Long.numberOfLeadingZeros(hi);
+            } else if (lo != 0) {
+                return WORD - 1 - Long.numberOfLeadingZeros(lo);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the number of steps in direction DIR from the square with
+     * index FROM to the square with index TO, assuming they lie on a
+     * common rook ray.
+     */
+    static int distance(int from, int to, int dir) {
+        return Math.abs(to - from) / STRIDE[dir];
+    }
+
+}
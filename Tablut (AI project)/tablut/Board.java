@@ -1,13 +1,12 @@
 package tablut;
 
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Stack;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Formatter;
-import java.util.HashSet;
-import java.util.Iterator;
 
+import static tablut.BitBoard.*;
 import static tablut.Piece.*;
 import static tablut.Square.*;
 
@@ -22,6 +21,11 @@ class Board {
      * The number of squares on a side of the board.
      */
     static final int SIZE = 9;
+    /**
+     * An upper bound on the number of legal moves of one side: at most
+     * 16 pieces, each with at most 2 * (SIZE - 1) moves.
+     */
+    static final int MAX_MOVES = 16 * 2 * (SIZE - 1);
     /**
      * The throne (or castle) square and its four surrounding squares..
      */
@@ -48,12 +52,53 @@ class Board {
         sq(2, 4), sq(6, 4)
     };
     /**
-     * Remove record of current position in the set of positions encountered,
-     * unless it is a repeated position or we are at the first move.
+     * Index of the throne square.
+     */
+    private static final int THRONE_INDEX = THRONE.index();
+    /**
+     * The two words of the mask of the throne square.
+     */
+    private static final long THRONE_LO = LO[THRONE_INDEX],
+            THRONE_HI = HI[THRONE_INDEX];
+    /**
+     * The two words of the mask of the throne and its orthogonally
+     * adjacent squares.
+     */
+    private static final long THRONE_AREA_LO, THRONE_AREA_HI;
+
+    static {
+        long lo, hi;
+        lo = hi = 0;
+        for (Square s : new Square[] {
+                THRONE, NTHRONE, STHRONE, WTHRONE, ETHRONE }) {
+            lo |= LO[s.index()];
+            hi |= HI[s.index()];
+        }
+        THRONE_AREA_LO = lo;
+        THRONE_AREA_HI = hi;
+    }
+
+    /**
+     * Zobrist keys: ZOBRIST[p.ordinal()][i] is the key of Piece p on the
+     * square with index i (the EMPTY entries are 0).  The seed is fixed so
+     * that keys are the same from run to run.
      */
-    private final ArrayList<Square> throneAndorthogonalSquares =
-            new ArrayList<Square>(Arrays.asList(sq(4, 4), sq(4, 5),
-                    sq(4, 3), sq(3, 4), sq(5, 4)));
+    private static final long[][] ZOBRIST = new long[4][NUM_SQUARES];
+    /**
+     * Zobrist key XORed into hashKey() when it is white's move.
+     */
+    private static final long WHITE_TO_MOVE;
+
+    static {
+        Random keys = new Random(0x7AB1D7L);
+        for (Piece p : new Piece[] { WHITE, BLACK, KING }) {
+            for (int i = 0; i < NUM_SQUARES; i += 1) {
+                ZOBRIST[p.ordinal()][i] = keys.nextLong();
+            }
+        }
+        WHITE_TO_MOVE = keys.nextLong();
+    }
+
     /**
      * _lim.
      **/
@@ -63,17 +108,40 @@ class Board {
      **/
     protected final int _inft = 999999;
     /**
-     * gameBoard.
+     * Occupancy of the board: _lo[p.ordinal()] and _hi[p.ordinal()] are
+     * the two words of the mask of squares holding Piece p, for p one of
+     * WHITE, BLACK, or KING (the EMPTY entries are unused).  WHITE does
+     * not include the king.
+     **/
+    private final long[] _lo = new long[4], _hi = new long[4];
+    /**
+     * Undo records of the moves made since the initial position, in order.
+     * Records are reused, so only the first _undoCount are live.
+     **/
+    private final ArrayList<UndoRecord> _undoRecords = new ArrayList<>();
+    /**
+     * Number of live entries in _undoRecords.
+     **/
+    private int _undoCount;
+    /**
+     * The positions (by positionKey()) encountered so far.  A position is
+     * recorded at most once, since reaching it again ends the game.
      **/
-    private Piece[][] gameBoard = new Piece[9][9];
+    private final HashSet<Long> _positions = new HashSet<>();
     /**
-     * Stack for save states.
+     * Zobrist key of the pieces on the board, maintained by put.
      **/
-    private Stack<String> gameBoardStates = new Stack<String>();
+    private long _positionKey;
     /**
-     * ArrayList for save states.
+     * _counts[p.ordinal()] is the number of squares holding Piece p,
+     * maintained by put.
      **/
-    private ArrayList<String> gameBoardStates1 = new ArrayList<>();
+    private final int[] _counts = new int[4];
+    /**
+     * Number of black pieces orthogonally adjacent to the king, maintained
+     * by put.
+     **/
+    private int _kingAttackers;
     /**
      * True when current board is a repeated position (ending the game).
      */
@@ -124,16 +192,15 @@ class Board {
         _turn = model.turn();
         _kingPosition = model.kingPosition();
         _lim = _inft;
-        for (int i = 0; i < 9; i++) {
-            for (int x = 0; x < 9; x++) {
-                gameBoard[i][x] = EMPTY;
-            }
-        }
-        for (int i = 0; i < 9; i++) {
-            for (int x = 0; x < 9; x++) {
-                this.gameBoard[i][x] = model.gameBoard[i][x];
-            }
-        }
+        _repeated = model._repeated;
+        System.arraycopy(model._lo, 0, _lo, 0, _lo.length);
+        System.arraycopy(model._hi, 0, _hi, 0, _hi.length);
+        System.arraycopy(model._counts, 0, _counts, 0, _counts.length);
+        _kingAttackers = model._kingAttackers;
+        _positionKey = model._positionKey;
+        _undoCount = 0;
+        _positions.clear();
+        _positions.addAll(model._positions);
     }
 
     /**
@@ -146,22 +213,31 @@ class Board {
         _kingPosition = THRONE;
         _lim = _inft;
         clearUndo();
-        for (int i = 0; i < 9; i++) {
-            for (int x = 0; x < 9; x++) {
-                gameBoard[i][x] = EMPTY;
-            }
-        }
-        gameBoard[THRONE.col()][THRONE.row()] = KING;
+        clearSquares();
+        put(KING, THRONE);
         for (Square s : INITIAL_DEFENDERS) {
-            gameBoard[s.col()][s.row()] = WHITE;
-
+            put(WHITE, s);
         }
         for (Square s : INITIAL_ATTACKERS) {
-            gameBoard[s.col()][s.row()] = BLACK;
-
+            put(BLACK, s);
         }
-        gameBoardStates1.add(encodedBoard().substring(1));
-        gameBoardStates.push(encodedBoard());
+        checkRepeated();
+    }
+
+    /**
+     * Remove all pieces from the board, forgetting its history, and make
+     * it TURN's move.  Used to set up arbitrary positions with put, which
+     * must include putting the king.
+     */
+    void clear(Piece turn) {
+        _winner = null;
+        _moveCount = 0;
+        _turn = turn;
+        _kingPosition = null;
+        _lim = _inft;
+        _repeated = false;
+        clearUndo();
+        clearSquares();
     }
 
     /**
@@ -199,16 +275,40 @@ class Board {
 
     /**
      * Record current position and set winner() next mover if the current
-     * position is a repeat.
+     * position is a repeat.  Return true iff the position was recorded.
      */
-    private void checkRepeated() {
-        String n = encodedBoard().substring(1);
-        if (gameBoardStates1.contains(n)) {
-            _repeated = true;
-            _winner = _turn.opponent();
-        } else {
-            gameBoardStates1.add(n);
+    private boolean checkRepeated() {
+        if (_positions.add(_positionKey)) {
+            return true;
         }
+        _repeated = true;
+        _winner = _turn.opponent();
+        return false;
+    }
+
+    /**
+     * Remove the current position from the positions encountered.
+     */
+    private void forgetPosition() {
+        _positions.remove(_positionKey);
+    }
+
+    /**
+     * Return a 64-bit Zobrist hash of the current position, including the
+     * side to move.  Equal positions have equal keys; unequal positions
+     * have equal keys only with negligible probability.  Suitable as a
+     * transposition-table key.
+     */
+    long hashKey() {
+        return _turn == WHITE ? _positionKey ^ WHITE_TO_MOVE : _positionKey;
+    }
+
+    /**
+     * Return a 64-bit Zobrist hash of the pieces on the board, ignoring
+     * the side to move.  This is the key used for repetition detection.
+     */
+    long positionKey() {
+        return _positionKey;
     }
 
     /**
@@ -245,7 +345,23 @@ class Board {
      * 0 <= COL, ROW <= 9.
      */
     final Piece get(int col, int row) {
-        return gameBoard[col][row];
+        return get(row * SIZE + col);
+    }
+
+    /**
+     * Return the contents of the square with index INDEX.
+     */
+    private Piece get(int index) {
+        if (contains(_lo[WHITE.ordinal()], _hi[WHITE.ordinal()], index)) {
+            return WHITE;
+        } else if (contains(_lo[BLACK.ordinal()], _hi[BLACK.ordinal()],
+                            index)) {
+            return BLACK;
+        } else if (contains(_lo[KING.ordinal()], _hi[KING.ordinal()],
+                            index)) {
+            return KING;
+        }
+        return EMPTY;
     }
 
     /**
@@ -259,18 +375,117 @@ class Board {
      * Set square S to P.
      */
     final void put(Piece p, Square s) {
-        gameBoard[s.col()][s.row()] = p;
+        int i = s.index();
+        Piece old = get(i);
+        _positionKey ^= ZOBRIST[old.ordinal()][i] ^ ZOBRIST[p.ordinal()][i];
+        _counts[old.ordinal()] -= 1;
+        _counts[p.ordinal()] += 1;
+        if ((old == BLACK) != (p == BLACK) && _kingPosition != null
+            && isAdjacent(i, _kingPosition.index())) {
+            _kingAttackers += p == BLACK ? 1 : -1;
+        }
+        long lo = ~LO[i], hi = ~HI[i];
+        for (int k = 0; k < _lo.length; k += 1) {
+            _lo[k] &= lo;
+            _hi[k] &= hi;
+        }
+        if (p != EMPTY) {
+            _lo[p.ordinal()] |= LO[i];
+            _hi[p.ordinal()] |= HI[i];
+        }
         if (p == KING) {
             _kingPosition = s;
+            _kingAttackers = 0;
+            for (int d = 0; d < 4; d += 1) {
+                int n = STEP[i][d];
+                if (n != -1 && contains(_lo[BLACK.ordinal()],
+                                        _hi[BLACK.ordinal()], n)) {
+                    _kingAttackers += 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true iff the squares with indices I and K are orthogonally
+     * adjacent.
+     */
+    private static boolean isAdjacent(int i, int k) {
+        return STEP[k][0] == i || STEP[k][1] == i || STEP[k][2] == i
+            || STEP[k][3] == i;
+    }
+
+    /**
+     * Remove all pieces from the board.
+     */
+    private void clearSquares() {
+        for (int k = 0; k < _lo.length; k += 1) {
+            _lo[k] = _hi[k] = 0;
+        }
+        _counts[EMPTY.ordinal()] = NUM_SQUARES;
+        _counts[WHITE.ordinal()] = _counts[BLACK.ordinal()] = 0;
+        _counts[KING.ordinal()] = 0;
+        _kingAttackers = 0;
+        _positionKey = 0;
+    }
+
+    /**
+     * Return the number of squares holding P, where WHITE does not
+     * include the king.  Maintained incrementally, so this takes constant
+     * time.
+     */
+    int pieceCount(Piece p) {
+        return _counts[p.ordinal()];
+    }
+
+    /**
+     * Store the indices of the squares holding P (where WHITE does not
+     * include the king) in SQUARES, in increasing order, and return their
+     * number.  SQUARES must have room for pieceCount(P) indices.
+     */
+    int squares(Piece p, int[] squares) {
+        int n = 0;
+        for (int w = 0; w < 2; w += 1) {
+            long bits = w == 0 ? _lo[p.ordinal()] : _hi[p.ordinal()];
+            for (; bits != 0; bits &= bits - 1) {
+                squares[n] = w * WORD + Long.numberOfTrailingZeros(bits);
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Return the number of black pieces orthogonally adjacent to the king.
+     * Maintained incrementally, so this takes constant time.
+     */
+    int kingAttackers() {
+        return _kingAttackers;
+    }
+
+    /**
+     * Return the number of directions in which the king has an
+     * unobstructed path to the edge of the board.
+     */
+    int kingOpenRays() {
+        int k = _kingPosition.index(), open = 0;
+        long occLo = occupiedLo(), occHi = occupiedHi();
+        for (int d = 0; d < 4; d += 1) {
+            if ((RAY_LO[k][d] & occLo) == 0 && (RAY_HI[k][d] & occHi) == 0) {
+                open += 1;
+            }
         }
+        return open;
     }
 
     /**
-     * Set square S to P and record for undoing.
+     * Return the number of squares between the king and the nearest edge
+     * of the board.
      */
-    final void revPut(Piece p, Square s) {
-        gameBoardStates.push(encodedBoard());
-        put(p, s);
+    int kingEdgeDistance() {
+        Square k = _kingPosition;
+        return Math.min(Math.min(k.col(), SIZE - 1 - k.col()),
+                        Math.min(k.row(), SIZE - 1 - k.row()));
     }
 
     /**
@@ -286,19 +501,11 @@ class Board {
      * squares along it, other than FROM, must be empty.
      */
     boolean isUnblockedMove(Square from, Square to) {
-        int dir = from.direction(to);
-
-        SqList n = ROOK_SQUARES[from.index()][dir];
-
-        for (Square i : n) {
-            if (i == to && get(to) == EMPTY) {
-                break;
-            } else if (gameBoard[i.col()][i.row()] != EMPTY) {
-                return false;
-            }
-        }
-
-        return true;
+        int dir = from.direction(to), i = from.index();
+        int blocker = nearest(occupiedLo() & RAY_LO[i][dir],
+                              occupiedHi() & RAY_HI[i][dir], dir);
+        return blocker == -1
+            || distance(i, blocker, dir) > distance(i, to.index(), dir);
     }
 
     /**
@@ -335,52 +542,120 @@ class Board {
      * @param sq2 a
      * @return g
      */
-    private boolean captureHelper(Square sq0, Square sq2) {
-        Square r = sq0.between(sq2);
-        if (get(r) != KING) {
-            return hostile(sq0, get(r)) && hostile(sq2, get(r));
-        } else {
-            if (throneAndorthogonalSquares.contains(kingPosition())
-                    && hostile(kingPosition().rookMove(0, 1), WHITE)
-                    && hostile(kingPosition().rookMove(1, 1), WHITE)
-                    && hostile(kingPosition().rookMove(2, 1), WHITE)
-                    && hostile(kingPosition().rookMove(3, 1), WHITE)) {
-                return true;
-            } else if (!throneAndorthogonalSquares.contains(kingPosition())) {
-                return hostile(sq0, get(r)) && hostile(sq2, get(r));
+    private boolean captureHelper(int sq0, int sq2) {
+        Piece r = get((sq0 + sq2) / 2);
+        if (r != KING) {
+            return hostile(sq0, r) && hostile(sq2, r);
+        }
+        int k = _kingPosition.index();
+        if (contains(THRONE_AREA_LO, THRONE_AREA_HI, k)) {
+            for (int d = 0; d < 4; d += 1) {
+                if (!hostile(STEP[k][d], WHITE)) {
+                    return false;
+                }
             }
+            return true;
         }
-        return false;
+        return hostile(sq0, r) && hostile(sq2, r);
     }
 
     /**
      * Move FROM-TO, assuming this is a legal move.
      */
     void makeMove(Square from, Square to) {
-        Piece temp = gameBoard[from.col()][from.row()];
-        revPut(temp, to);
-        gameBoard[from.col()][from.row()] = EMPTY;
+        Piece temp = get(from);
+        UndoRecord rec = pushUndo(from, to);
+        put(temp, to);
+        put(EMPTY, from);
         _moveCount += 1;
-        HashSet<Square> t = pieceLocations(get(to));
-        for (int i = 0; i < 4; i++) {
-            Square test = to.rookMove(i, 2);
-            if ((t.contains(test) || test == THRONE)
-                    && get(to.between(test)) != EMPTY
-                    && captureHelper(to, test)) {
-                capture(to, test);
+        int t = to.index();
+        for (int d = 0; d < 4; d += 1) {
+            if (captures(t, d)) {
+                int test = STEP[STEP[t][d]][d];
+                rec.captured(t, test, get((t + test) / 2));
+                capture(t, test);
             }
         }
-        checkRepeated();
+        rec._recorded = checkRepeated();
         checkForWinner();
         _turn = temp.opponent();
     }
+
+    /**
+     * Return true iff the piece on the square with index T, having just
+     * moved there, captures the piece next to it in direction DIR.
+     */
+    private boolean captures(int t, int dir) {
+        int mid = STEP[t][dir];
+        int test = mid == -1 ? -1 : STEP[mid][dir];
+        if (test == -1) {
+            return false;
+        }
+        Piece mover = get(t);
+        return (contains(sideLo(mover), sideHi(mover), test)
+                || test == THRONE_INDEX)
+            && get(mid) != EMPTY
+            && captureHelper(t, test);
+    }
+
+    /**
+     * Return true iff MOVE, assumed legal, would capture at least one
+     * piece.  Does not change the position.
+     */
+    boolean isCapture(Move move) {
+        Piece p = get(move.from());
+        int t = move.to().index();
+        for (int d = 0; d < 4; d += 1) {
+            int n = STEP[t][d];
+            if (n != -1 && get(n).side() == p.opponent()) {
+                return captureMask(move.from().index(), t) != 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the mask of directions (bit d for direction d) in which the
+     * move from the square with index FROM to the one with index TO,
+     * assumed legal, would capture.  The move is tried and taken back, so
+     * callers should first check that TO is next to an opposing piece.
+     * Does not change the position.
+     */
+    private int captureMask(int from, int to) {
+        Piece p = get(from);
+        Square king = _kingPosition;
+        put(EMPTY, sq(from));
+        put(p, sq(to));
+        int mask = captureMask(to);
+        put(EMPTY, sq(to));
+        put(p, sq(from));
+        _kingPosition = king;
+        return mask;
+    }
+
+    /**
+     * Return the mask of directions (bit d for direction d) in which the
+     * piece on the square with index TO would capture had it just moved
+     * there.  Since captures depend only on the position after a move,
+     * this is the same whichever square it came from.
+     */
+    int captureMask(int to) {
+        int mask = 0;
+        for (int d = 0; d < 4; d += 1) {
+            if (captures(to, d)) {
+                mask |= 1 << d;
+            }
+        }
+        return mask;
+    }
+
     /**
      * Remove record of current position in the set of positions encountered,
      * unless it is a repeated position or we are at the first move.
      */
     void checkForWinner() {
-        if (kingPosition().row() == 0 || kingPosition().row() == 8
-                || kingPosition().col() == 0 || kingPosition().col() == 8) {
+        int k = _kingPosition.index();
+        if (contains(EDGE_LO, EDGE_HI, k)) {
             _winner = WHITE;
         }
         if (!hasMove(_turn.opponent())) {
@@ -389,10 +664,9 @@ class Board {
         if (moveCount() >= _lim) {
             _winner = _turn;
         }
-        if (get(kingPosition()) == EMPTY) {
+        if (!contains(_lo[KING.ordinal()], _hi[KING.ordinal()], k)) {
             _winner = BLACK;
         }
-
     }
 
     /**
@@ -401,6 +675,14 @@ class Board {
     void makeMove(Move move) {
         makeMove(move.from(), move.to());
     }
+
+    /**
+     * Move according to the encoded move MOVE (see Move.encode), assuming
+     * it is a legal move.
+     */
+    void makeMove(int move) {
+        makeMove(sq(Move.fromIndex(move)), sq(Move.toIndex(move)));
+    }
     /**
      * Remove record of current position in the set of positions encountered,
      * unless it is a repeated position or we are at the first move.
@@ -408,79 +690,79 @@ class Board {
      * @param p p
      * @return t
      */
-    private boolean hostile(Square s, Piece p) {
-        int occupiedHostile = 0;
-        for (int i = 0; i < 4; i++) {
-            Square test = s.rookMove(i, 1);
-            if (get(s) == KING && THRONE == _kingPosition
-                    && get(test).side() == BLACK) {
-                occupiedHostile += 1;
+    private boolean hostile(int s, Piece p) {
+        Piece occupant = get(s);
+        if (occupant == KING && THRONE == _kingPosition) {
+            int occupiedHostile = 0;
+            for (int d = 0; d < 4; d += 1) {
+                int test = STEP[s][d];
+                if (test != -1 && contains(_lo[BLACK.ordinal()],
+                                           _hi[BLACK.ordinal()], test)) {
+                    occupiedHostile += 1;
+                }
+            }
+            if (occupiedHostile == 3) {
+                return true;
             }
         }
-        if (occupiedHostile == 3) {
-            return true;
-        } else {
-            return (s == THRONE && THRONE != kingPosition())
-                    || get(s).side() == p.opponent();
-        }
+        return (s == THRONE_INDEX && THRONE != _kingPosition)
+                || occupant.side() == p.opponent();
     }
 
     /**
-     * Capture the piece between SQ0 and SQ2, assuming a piece just moved to
-     * SQ0 and the necessary conditions are satisfied.
+     * Capture the piece between the squares with indices SQ0 and SQ2,
+     * assuming a piece just moved to SQ0 and the necessary conditions are
+     * satisfied.
      */
-    private void capture(Square sq0, Square sq2) {
-        Square sq1 = sq0.between(sq2);
-        put(EMPTY, sq1);
-
+    private void capture(int sq0, int sq2) {
+        put(EMPTY, sq((sq0 + sq2) / 2));
     }
 
     /**
-     * Undo one move.  Has no effect on the initial board.
+     * Undo one move.  Has no effect on the initial board.  Only the squares
+     * touched by the move are restored.
      */
     void undo() {
-        gameBoard = new Piece[SIZE][SIZE];
-        String prev = gameBoardStates.pop();
-        gameBoardStates1.remove(gameBoardStates1.size() - 1);
-        _moveCount -= 1;
-        _turn = symbolAcquirer(Character.toString(prev.charAt(0)));
-        for (int i = 0; i < prev.length() - 1; i++) {
-            String symbol = Character.toString(prev.charAt(i + 1));
-            if (symbol.equals("K")) {
-                _kingPosition = sq(i % SIZE, i / SIZE);
-            }
-            put(symbolAcquirer(symbol), sq(i % SIZE, i / SIZE));
-        }
-        _winner = null;
-    }
-    /**
-     * Remove record of current position in the set of positions encountered,
-     * unless it is a repeated position or we are at the first move.
-     * @param symbol symbol
-     * @return n
-     */
-    Piece symbolAcquirer(String symbol) {
-        if (symbol.equals("W")) {
-            return WHITE;
+        if (_undoCount == 0) {
+            return;
         }
-        if (symbol.equals("B")) {
-            return BLACK;
+        _undoCount -= 1;
+        UndoRecord rec = _undoRecords.get(_undoCount);
+        if (rec._recorded) {
+            forgetPosition();
         }
-        if (symbol.equals("K")) {
-            return KING;
+        put(get(rec._to), rec._from);
+        put(EMPTY, rec._to);
+        for (int i = 0; i < rec._numCaptured; i += 1) {
+            put(rec._capturedPieces[i], sq(rec._capturedSquares[i]));
         }
-        return EMPTY;
+        _moveCount -= 1;
+        _turn = rec._turn;
+        _winner = rec._winner;
+        _repeated = rec._repeated;
+        _kingPosition = rec._kingPosition;
     }
 
     /**
-     * Remove record of current position in the set of positions encountered,
-     * unless it is a repeated position or we are at the first move.
+     * Return a cleared undo record for the move FROM-TO holding the
+     * current turn, winner, repetition status, and king position, and push
+     * it on the undo stack.
      */
-    private void undoPosition() {
-        if (!_repeated || _moveCount > 0) {
-            gameBoardStates.pop();
+    private UndoRecord pushUndo(Square from, Square to) {
+        if (_undoCount == _undoRecords.size()) {
+            _undoRecords.add(new UndoRecord());
         }
-        _repeated = false;
+        UndoRecord rec = _undoRecords.get(_undoCount);
+        _undoCount += 1;
+        rec._from = from;
+        rec._to = to;
+        rec._numCaptured = 0;
+        rec._recorded = false;
+        rec._turn = _turn;
+        rec._winner = _winner;
+        rec._repeated = _repeated;
+        rec._kingPosition = _kingPosition;
+        return rec;
     }
 
     /**
@@ -488,8 +770,8 @@ class Board {
      * current position or win status.
      */
     void clearUndo() {
-        gameBoardStates.clear();
-        gameBoardStates1.clear();
+        _undoCount = 0;
+        _positions.clear();
     }
 
     /**
@@ -497,39 +779,100 @@ class Board {
      * SIDE (ignoring whose turn it is at the moment).
      */
     List<Move> legalMoves(Piece side) {
-        List<Move> moves = new ArrayList<Move>();
-        Iterator iter = pieceLocations(side).iterator();
-        while (iter.hasNext()) {
-            Square sq = (Square) iter.next();
-            Piece piece = gameBoard[sq.col()][sq.row()];
-            if (piece.side() == side.side()) {
-                for (int i = 0; i < 4; i++) {
-                    int dist = 1;
-                    while (true) {
-                        Square rookSquare = sq.rookMove(i, dist);
-                        if (rookSquare == null
-                                || get(rookSquare).side() != EMPTY) {
-                            break;
-                        }
-                        if (get(sq) != KING && rookSquare == THRONE
-                                || !isUnblockedMove(sq, rookSquare)) {
-                            break;
-                        }
-                        moves.add(Move.mv(sq, rookSquare));
-                        dist++;
+        IntMoveList buffer = new IntMoveList();
+        legalMoves(side, buffer);
+        List<Move> moves = new ArrayList<Move>(buffer.size());
+        for (int i = 0; i < buffer.size(); i += 1) {
+            moves.add(Move.mv(buffer.get(i)));
+        }
+        return moves;
+    }
+
+    /**
+     * Replace the contents of MOVES with all legal moves on the current
+     * board for SIDE (ignoring whose turn it is at the moment), in the
+     * encoding of Move.encode, including their capture bits, and return
+     * their number.  Each ray from each piece is examined once, up to its
+     * first blocker, and nothing is allocated once MOVES has room for
+     * MAX_MOVES moves.  Only moves that end next to an opposing piece are
+     * tried to find their captures.
+     */
+    int legalMoves(Piece side, IntMoveList moves) {
+        moves.clear();
+        long occLo = occupiedLo(), occHi = occupiedHi();
+        long nearLo = 0, nearHi = 0;
+        for (int w = 0; w < 2; w += 1) {
+            long bits = w == 0 ? sideLo(side.opponent())
+                : sideHi(side.opponent());
+            for (; bits != 0; bits &= bits - 1) {
+                int opp = w * WORD + Long.numberOfTrailingZeros(bits);
+                for (int d = 0; d < 4; d += 1) {
+                    int n = STEP[opp][d];
+                    if (n != -1) {
+                        nearLo |= LO[n];
+                        nearHi |= HI[n];
                     }
                 }
             }
         }
+        for (int w = 0; w < 2; w += 1) {
+            long bits = w == 0 ? sideLo(side) : sideHi(side);
+            for (; bits != 0; bits &= bits - 1) {
+                int from = w * WORD + Long.numberOfTrailingZeros(bits);
+                for (int d = 0; d < 4; d += 1) {
+                    int reach = reach(from, d, occLo, occHi);
+                    for (int k = 0, to = from; k < reach; k += 1) {
+                        to = STEP[to][d];
+                        int captures = contains(nearLo, nearHi, to)
+                            ? captureMask(from, to) : 0;
+                        moves.add(Move.encode(from, to, captures));
+                    }
+                }
+            }
+        }
+        return moves.size();
+    }
 
-        return moves;
+    /**
+     * Return the number of squares that the piece on the square with index
+     * FROM may move in direction DIR, given that OCCLO, OCCHI is the mask
+     * of occupied squares.  Only the king may stop on or pass over the
+     * throne.
+     */
+    private int reach(int from, int dir, long occLo, long occHi) {
+        long lo = occLo, hi = occHi;
+        if (!contains(_lo[KING.ordinal()], _hi[KING.ordinal()], from)) {
+            lo |= THRONE_LO;
+            hi |= THRONE_HI;
+        }
+        int blocker = nearest(lo & RAY_LO[from][dir],
+                              hi & RAY_HI[from][dir], dir);
+        if (blocker == -1) {
+            return ROOK_SQUARES[from][dir].size();
+        }
+        return distance(from, blocker, dir) - 1;
     }
 
     /**
-     * Return true iff SIDE has a legal move.
+     * Return true iff SIDE has a legal move.  Since every legal move passes
+     * through an adjacent square, it suffices to look for one empty
+     * neighbor of one piece.
      */
     boolean hasMove(Piece side) {
-        return legalMoves(side).size() > 0;
+        long occLo = occupiedLo(), occHi = occupiedHi();
+        for (int w = 0; w < 2; w += 1) {
+            long bits = w == 0 ? sideLo(side) : sideHi(side);
+            for (; bits != 0; bits &= bits - 1) {
+                int from = w * WORD + Long.numberOfTrailingZeros(bits);
+                if (reach(from, 0, occLo, occHi) > 0
+                    || reach(from, 1, occLo, occHi) > 0
+                    || reach(from, 2, occLo, occHi) > 0
+                    || reach(from, 3, occLo, occHi) > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     @Override
@@ -565,19 +908,41 @@ class Board {
     }
 
     /**
-     * Return the locations of all pieces on SIDE.
+     * Return the low word of the mask of all pieces on SIDE.
      */
-    private HashSet<Square> pieceLocations(Piece side) {
-        HashSet<Square> locationSides = new HashSet<>();
+    private long sideLo(Piece side) {
         assert side != EMPTY;
-        for (int i = 0; i < SIZE; i++) {
-            for (int k = 0; k < SIZE; k++) {
-                if (gameBoard[i][k].side() == side.side()) {
-                    locationSides.add(sq(i, k));
-                }
-            }
+        if (side.side() == WHITE) {
+            return _lo[WHITE.ordinal()] | _lo[KING.ordinal()];
+        }
+        return _lo[BLACK.ordinal()];
+    }
+
+    /**
+     * Return the high word of the mask of all pieces on SIDE.
+     */
+    private long sideHi(Piece side) {
+        assert side != EMPTY;
+        if (side.side() == WHITE) {
+            return _hi[WHITE.ordinal()] | _hi[KING.ordinal()];
         }
-        return locationSides;
+        return _hi[BLACK.ordinal()];
+    }
+
+    /**
+     * Return the low word of the mask of all occupied squares.
+     */
+    private long occupiedLo() {
+        return _lo[WHITE.ordinal()] | _lo[BLACK.ordinal()]
+            | _lo[KING.ordinal()];
+    }
+
+    /**
+     * Return the high word of the mask of all occupied squares.
+     */
+    private long occupiedHi() {
+        return _hi[WHITE.ordinal()] | _hi[BLACK.ordinal()]
+            | _hi[KING.ordinal()];
     }
 
     /**
@@ -593,4 +958,58 @@ class Board {
         return new String(result);
     }
 
+    /**
+     * The information needed to take back one move: the squares moved
+     * between, the pieces it captured, and the state it overwrote.
+     */
+    private static class UndoRecord {
+        /**
+         * The squares moved from and to.
+         */
+        private Square _from, _to;
+        /**
+         * The indices of the squares captured by the move.
+         */
+        private final int[] _capturedSquares = new int[4];
+        /**
+         * The pieces captured, in the same order as _capturedSquares.
+         */
+        private final Piece[] _capturedPieces = new Piece[4];
+        /**
+         * The number of pieces captured.
+         */
+        private int _numCaptured;
+        /**
+         * True iff the move added its position to the set of positions
+         * encountered.
+         */
+        private boolean _recorded;
+        /**
+         * The side to move before the move.
+         */
+        private Piece _turn;
+        /**
+         * The winner before the move.
+         */
+        private Piece _winner;
+        /**
+         * The repeated-position status before the move.
+         */
+        private boolean _repeated;
+        /**
+         * The location of the king before the move.
+         */
+        private Square _kingPosition;
+
+        /**
+         * Record that a piece moving to square index SQ0 captured
+         * PIECE lying between it and square index SQ2.
+         */
+        void captured(int sq0, int sq2, Piece piece) {
+            _capturedSquares[_numCaptured] = (sq0 + sq2) / 2;
+            _capturedPieces[_numCaptured] = piece;
+            _numCaptured += 1;
+        }
+    }
+
 }
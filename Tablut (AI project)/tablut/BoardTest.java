@@ -0,0 +1,276 @@
+package tablut;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static tablut.Piece.*;
+import static tablut.Square.sq;
+
+/**
+ * The suite of all JUnit tests for the Board class.
+ *
+ * @author IanTien
+ */
+public class BoardTest {
+
+    /**
+     * Check the number of legal moves of each side in the initial
+     * position.
+     */
+    @Test
+    public void testInitialMoves() {
+        Board b = new Board();
+        assertEquals(80, b.legalMoves(BLACK).size());
+        assertEquals(56, b.legalMoves(WHITE).size());
+        assertTrue(b.hasMove(BLACK));
+        assertTrue(b.hasMove(WHITE));
+    }
+
+    /**
+     * Check that generating encoded moves into a buffer yields the same
+     * moves as legalMoves(Piece), in the same order, with the right
+     * capture bits.
+     */
+    @Test
+    public void testMoveBuffer() {
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-3"));
+        b.makeMove(Move.mv("e3-c"));
+        b.makeMove(Move.mv("a4-c"));
+        IntMoveList buffer = new IntMoveList(1);
+        for (Piece side : new Piece[] { BLACK, WHITE }) {
+            List<Move> moves = b.legalMoves(side);
+            assertEquals(moves.size(), b.legalMoves(side, buffer));
+            for (int i = 0; i < moves.size(); i += 1) {
+                int mv = buffer.get(i);
+                assertSame(moves.get(i), Move.mv(mv));
+                assertEquals(moves.get(i).index(), Move.index(mv));
+                if (side == b.turn()) {
+                    int pieces = b.pieceCount(side.opponent());
+                    b.makeMove(mv);
+                    assertEquals(Move.isCapture(mv),
+                                 b.pieceCount(side.opponent()) < pieces);
+                    b.undo();
+                }
+            }
+        }
+        assertEquals(Move.mv("c3-2"),
+                     Move.mv(Move.encode(Square.sq("c3").index(),
+                                         Square.sq("c2").index(), 4)));
+        assertTrue(Move.isCapture(Move.encode(0, 1, 4)));
+        assertEquals(4, Move.captures(Move.encode(0, 1, 4)));
+        assertNull(Move.mv(-1));
+    }
+
+    /**
+     * Check the number of positions reachable in a few moves, as counted
+     * by the original list-based move generator.
+     */
+    @Test
+    public void testPerft() {
+        Perft perft = new Perft(3);
+        assertEquals(4400, perft.count(new Board(), 2));
+        assertEquals(353200, perft.count(new Board(), 3));
+        Board b = Perft.position(Perft.POSITIONS[3]);
+        String start = b.encodedBoard();
+        assertEquals(389778, perft.count(b, 3));
+        assertEquals(start, b.encodedBoard());
+    }
+
+    /**
+     * Check that blocked moves and moves onto the throne are rejected.
+     */
+    @Test
+    public void testBlocked() {
+        Board b = new Board();
+        assertTrue(b.isLegal(Move.mv("d1-3")));
+        assertFalse(b.isLegal(Move.mv("d9-4")));
+        assertFalse(b.isUnblockedMove(sq("e1"), sq("e3")));
+        assertTrue(b.isUnblockedMove(sq("d1"), sq("d4")));
+        for (Move mv : b.legalMoves(BLACK)) {
+            assertNotSame(Board.THRONE, mv.to());
+        }
+    }
+
+    /**
+     * Check a simple custodial capture.
+     */
+    @Test
+    public void testCapture() {
+        Board b = new Board();
+        b.put(WHITE, sq("c8"));
+        b.put(BLACK, sq("b8"));
+        b.makeMove(Move.mv("d9-8"));
+        assertEquals(EMPTY, b.get(sq("c8")));
+        assertEquals(BLACK, b.get(sq("d8")));
+        assertEquals(WHITE, b.turn());
+        assertNull(b.winner());
+    }
+
+    /**
+     * Check that isCapture recognizes capturing moves without changing
+     * the board.
+     */
+    @Test
+    public void testIsCapture() {
+        Board b = new Board();
+        b.put(WHITE, sq("c8"));
+        b.put(BLACK, sq("b8"));
+        String start = b.encodedBoard();
+        assertTrue(b.isCapture(Move.mv("d9-8")));
+        assertFalse(b.isCapture(Move.mv("d1-3")));
+        assertEquals(start, b.encodedBoard());
+        assertEquals(sq("e5"), b.kingPosition());
+    }
+
+    /**
+     * Check that a copy has the same contents as its model.
+     */
+    @Test
+    public void testCopy() {
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-3"));
+        Board c = new Board(b);
+        assertEquals(b.encodedBoard(), c.encodedBoard());
+        assertEquals(b.kingPosition(), c.kingPosition());
+    }
+
+    /**
+     * Check that a long random sequence of moves and undos always returns
+     * to exactly the position that preceded each undone move.
+     */
+    @Test
+    public void testMakeUndo() {
+        Random rand = new Random(61);
+        Board b = new Board();
+        ArrayList<String> before = new ArrayList<>();
+        ArrayList<Square> kings = new ArrayList<>();
+        for (int step = 0; step < 20000; step += 1) {
+            List<Move> moves = b.legalMoves(b.turn());
+            if (!before.isEmpty()
+                && (b.winner() != null || moves.isEmpty()
+                    || rand.nextInt(3) == 0)) {
+                b.undo();
+                int last = before.size() - 1;
+                assertEquals(before.remove(last), b.encodedBoard());
+                assertEquals(kings.remove(last), b.kingPosition());
+                assertEquals(before.size(), b.moveCount());
+            } else if (b.winner() == null && !moves.isEmpty()) {
+                before.add(b.encodedBoard());
+                kings.add(b.kingPosition());
+                b.makeMove(moves.get(rand.nextInt(moves.size())));
+            }
+        }
+        while (!before.isEmpty()) {
+            b.undo();
+            assertEquals(before.remove(before.size() - 1), b.encodedBoard());
+        }
+        assertEquals(new Board().encodedBoard(), b.encodedBoard());
+    }
+
+    /**
+     * Check that undo restores pieces captured by the undone move.
+     */
+    @Test
+    public void testUndoCapture() {
+        Board b = new Board();
+        b.put(WHITE, sq("c8"));
+        b.put(BLACK, sq("b8"));
+        String start = b.encodedBoard();
+        b.makeMove(Move.mv("d9-8"));
+        b.undo();
+        assertEquals(start, b.encodedBoard());
+        assertEquals(WHITE, b.get(sq("c8")));
+        assertEquals(BLACK, b.turn());
+        assertEquals(0, b.moveCount());
+        b.undo();
+        assertEquals(start, b.encodedBoard());
+    }
+
+    /**
+     * Check that the Zobrist key depends only on the position and side to
+     * move, not on the moves that led to it.
+     */
+    @Test
+    public void testHashKey() {
+        Board b1 = new Board(), b2 = new Board();
+        long start = b1.hashKey();
+        b1.makeMove(Move.mv("d1-3"));
+        assertNotEquals(start, b1.hashKey());
+        b1.makeMove(Move.mv("e3-c"));
+        b1.makeMove(Move.mv("f1-3"));
+        b2.makeMove(Move.mv("f1-3"));
+        b2.makeMove(Move.mv("e3-c"));
+        b2.makeMove(Move.mv("d1-3"));
+        assertEquals(b1.encodedBoard(), b2.encodedBoard());
+        assertEquals(b1.hashKey(), b2.hashKey());
+        b1.undo();
+        b1.undo();
+        b1.undo();
+        assertEquals(start, b1.hashKey());
+        assertNotEquals(b2.hashKey(), b2.positionKey());
+    }
+
+    /**
+     * Check that the incrementally maintained evaluation terms agree with
+     * a recount throughout a random game with undos.
+     */
+    @Test
+    public void testEvaluationTerms() {
+        Random rand = new Random(17);
+        Board b = new Board();
+        for (int step = 0; step < 5000; step += 1) {
+            List<Move> moves = b.legalMoves(b.turn());
+            if (b.moveCount() > 0
+                && (b.winner() != null || moves.isEmpty()
+                    || rand.nextInt(3) == 0)) {
+                b.undo();
+            } else {
+                b.makeMove(moves.get(rand.nextInt(moves.size())));
+            }
+            if (b.get(b.kingPosition()) != KING) {
+                continue;
+            }
+            int white = 0, black = 0, attackers = 0;
+            for (Square sq : Square.SQUARE_LIST) {
+                if (b.get(sq) == WHITE) {
+                    white += 1;
+                } else if (b.get(sq) == BLACK) {
+                    black += 1;
+                    if (sq.adjacent(b.kingPosition())) {
+                        attackers += 1;
+                    }
+                }
+            }
+            assertEquals(white, b.pieceCount(WHITE));
+            assertEquals(black, b.pieceCount(BLACK));
+            assertEquals(attackers, b.kingAttackers());
+            assertEquals(1, b.pieceCount(KING));
+        }
+    }
+
+    /**
+     * Check that returning to an earlier position ends the game.
+     */
+    @Test
+    public void testRepeated() {
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-3"));
+        b.makeMove(Move.mv("e3-c"));
+        b.makeMove(Move.mv("d3-1"));
+        assertNull(b.winner());
+        b.makeMove(Move.mv("c3-e"));
+        assertTrue(b.repeatedPosition());
+        assertEquals(BLACK, b.winner());
+        b.undo();
+        assertFalse(b.repeatedPosition());
+        assertNull(b.winner());
+        b.makeMove(Move.mv("c3-e"));
+        assertTrue(b.repeatedPosition());
+    }
+
+}
@@ -0,0 +1,131 @@
+package tablut;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Builds an opening book (see OpeningBook) by searching from the initial
+ * position.  Usage: java tablut.BookBuilder FILE [PLIES [DEPTH [WIDTH]]].
+ * Every legal move of each book position is ranked by a search of DEPTH
+ * (default 4) levels, counting the move itself, and the best
+ * OpeningBook.MOVES are recorded.  The book contains the initial position
+ * and, up to PLIES (default 6) moves deep, the positions reached by the
+ * WIDTH (default 2) best moves of each book position.
+ *
+ * @author IanTien
+ */
+public class BookBuilder {
+
+    /**
+     * Random seed used for the searches.
+     */
+    private static final long SEED = 61;
+
+    /**
+     * Book positions found so far, with their ranked moves.
+     */
+    private final SortedMap<Long, int[]> _entries = new TreeMap<>();
+    /**
+     * The controller whose board the searches start from.
+     */
+    private final Controller _controller =
+        new Controller(new NullView(), null, new NullReporter(),
+                       new AI(), new AI(), false);
+    /**
+     * Parameters of the book, as described in the class comment.
+     */
+    private final int _plies, _depth, _width;
+
+    /**
+     * A builder for a book PLIES moves deep, ranking moves with searches
+     * DEPTH levels deep and following the best WIDTH of them.
+     */
+    BookBuilder(int plies, int depth, int width) {
+        _plies = plies;
+        _depth = depth;
+        _width = width;
+    }
+
+    /**
+     * Add BOARD, reached after PLY moves from the initial position, and
+     * the positions that follow it to the book.
+     */
+    void expand(Board board, int ply) {
+        if (ply >= _plies || board.winner() != null
+            || _entries.containsKey(board.hashKey())) {
+            return;
+        }
+        int[] ranked = rank(board);
+        _entries.put(board.hashKey(),
+                     Arrays.copyOf(ranked,
+                                   Math.min(ranked.length,
+                                            OpeningBook.MOVES)));
+        System.err.printf("ply %d: %d positions%n", ply, _entries.size());
+        for (int i = 0; i < _width && i < ranked.length; i += 1) {
+            board.makeMove(ranked[i]);
+            expand(board, ply + 1);
+            board.undo();
+        }
+    }
+
+    /**
+     * Return the Move.index() values of the legal moves in BOARD, best
+     * first for the side to move.
+     */
+    private int[] rank(Board board) {
+        int sense = board.turn() == Piece.WHITE ? 1 : -1;
+        List<Move> moves = board.legalMoves(board.turn());
+        long[] keys = new long[moves.size()];
+        for (int i = 0; i < keys.length; i += 1) {
+            Move mv = moves.get(i);
+            Board child = _controller.board();
+            child.copy(board);
+            child.makeMove(mv);
+            _controller.setSeed(SEED);
+            AI ai = new AI(child.turn(), _controller);
+            int value;
+            if (child.winner() != null || _depth <= 1) {
+                value = ai.staticScore(child);
+            } else {
+                ai.findMove(_depth - 1);
+                value = ai.lastValue();
+            }
+            keys[i] = (long) -sense * value << 16 | i;
+        }
+        Arrays.sort(keys);
+        int[] result = new int[keys.length];
+        for (int i = 0; i < keys.length; i += 1) {
+            result[i] = moves.get((int) (keys[i] & 0xffff)).index();
+        }
+        return result;
+    }
+
+    /**
+     * Build the book described by ARGS (see the class comment).
+     */
+    public static void main(String... args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java tablut.BookBuilder FILE"
+                               + " [PLIES [DEPTH [WIDTH]]]");
+            System.exit(1);
+        }
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        BookBuilder builder = new BookBuilder(plies, depth, width);
+        builder.expand(new Board(), 0);
+        try {
+            OpeningBook.write(args[0], builder._entries);
+        } catch (IOException excp) {
+            System.err.printf("Could not write book: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+        System.err.printf("Wrote %d positions to %s%n",
+                          builder._entries.size(), args[0]);
+    }
+
+}
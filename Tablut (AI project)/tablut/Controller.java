@@ -1,9 +1,16 @@
 package tablut;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,9 +27,14 @@ import static tablut.Utils.error;
 final class Controller {
 
     /**
-     * A Matcher whose Pattern matches comments.
+     * A Pattern that matches comments.
      */
-    private static final Matcher COMMENT = Pattern.compile("#.*").matcher("");
+    private static final Pattern COMMENT = Pattern.compile("#.*");
+    /**
+     * A Matcher for COMMENT, one per controller so that controllers may
+     * run on separate threads.
+     */
+    private final Matcher _comment = COMMENT.matcher("");
     /**
      * The board.
      */
@@ -51,6 +63,10 @@ final class Controller {
      * Input source.
      */
     private Scanner _input;
+    /**
+     * Destination of prompts and board dumps.
+     */
+    private PrintStream _output;
     /**
      * The current White and Black players, each created from
      * _autoPlayerTemplate or _manualPlayerTemplate.
@@ -69,6 +85,70 @@ final class Controller {
      * Reporter for messages and errors.
      */
     private Reporter _reporter;
+    /**
+     * Search results shared by the automated players, or null until first
+     * needed.
+     */
+    private TranspositionTable _transpositionTable;
+    /**
+     * Executor on which automated players search, or null to search on
+     * the thread that runs the game.
+     */
+    private ExecutorService _searchExecutor;
+    /**
+     * True iff commands that read local files or start threads of their
+     * own are refused, as for sessions of remote clients.
+     */
+    private boolean _restricted;
+    /**
+     * Approximate milliseconds automated players may spend per move, or 0
+     * to search to a fixed depth.
+     */
+    private int _moveTime;
+    /**
+     * Number of threads automated players search with.
+     */
+    private int _threads = 1;
+    /**
+     * Workers for parallel searches, or null if not yet needed.
+     */
+    private ForkJoinPool _searchPool;
+    /**
+     * The static evaluation used by automated players.
+     */
+    private Evaluator _evaluator = Evaluator.defaults();
+    /**
+     * True iff automated players search while their manual opponents
+     * think.
+     */
+    private boolean _pondering;
+    /**
+     * The opening book of automated players, or null if there is none.
+     */
+    private OpeningBook _openingBook = OpeningBook.defaultBook();
+    /**
+     * True iff automated players consult the opening book.
+     */
+    private boolean _useBook = true;
+    /**
+     * The endgame tablebase of automated players, or null if there is
+     * none.
+     */
+    private Tablebase _tablebase = Tablebase.defaultTablebase();
+    /**
+     * True iff automated players consult the endgame tablebase.
+     */
+    private boolean _useTablebase = true;
+    /**
+     * Statistics of the last search by an automated player, or null if
+     * there has been none.
+     */
+    private SearchStats _lastStats;
+    /**
+     * True iff the statistics of each search by an automated player are
+     * reported as it moves.
+     */
+    private boolean _reportStats;
     /**
      * A list of Commands describing the valid textual commands to the
      * Tablut program and the methods to process them.
@@ -82,6 +162,17 @@ final class Controller {
         new Command("manual\\s+(white|black)$", this::doManual),
         new Command("auto\\s+(white|black)$", this::doAuto),
         new Command("limit\\s+(\\d+)$", this::doLimit),
+        new Command("ttsize\\s+(\\d+)$", this::doTableSize),
+        new Command("ttstats$", this::doTableStats),
+        new Command("stats(?:\\s+(on|off))?$", this::doStats),
+        new Command("movetime\\s+(-?\\d+)$", this::doMoveTime),
+        new Command("threads\\s+(\\d+)$", this::doThreads),
+        new Command("weights\\s+(\\S+)$", this::doWeights, true),
+        new Command("ponder\\s+(on|off)$", this::doPonder),
+        new Command("book\\s+(on|off)$", this::doBook),
+        new Command("book\\s+(\\S+)$", this::doBook, true),
+        new Command("tablebase\\s+(on|off)$", this::doTablebase),
+        new Command("tablebase\\s+(\\S+)$", this::doTablebase, true),
         new Command("toggle\\s+" + SQ + "$", this::doToggle),
         new Command(Move.MOVE_PATTERN.pattern(), this::doMove)
     };
@@ -105,10 +196,23 @@ final class Controller {
     Controller(View view, PrintStream logFile, Reporter reporter,
                Player manualPlayerTemplate, Player autoPlayerTemplate,
                boolean strict) {
+        this(view, logFile, reporter, manualPlayerTemplate,
+             autoPlayerTemplate, strict, System.in, System.out);
+    }
+
+    /**
+     * Controller as above, but reading commands from INPUT and writing
+     * prompts and board dumps to OUTPUT rather than the standard input
+     * and output.
+     */
+    Controller(View view, PrintStream logFile, Reporter reporter,
+               Player manualPlayerTemplate, Player autoPlayerTemplate,
+               boolean strict, InputStream input, PrintStream output) {
         _view = view;
         _playing = false;
         _logFile = logFile;
-        _input = new Scanner(System.in);
+        _input = new Scanner(input);
+        _output = output;
         _autoPlayerTemplate = autoPlayerTemplate;
         _manualPlayerTemplate = manualPlayerTemplate;
         _nonPlayer = manualPlayerTemplate.create(EMPTY, this);
@@ -162,6 +266,178 @@ final class Controller {
         return _board;
     }
 
+    /**
+     * Return the transposition table used by automated players.
+     */
+    TranspositionTable transpositionTable() {
+        if (_transpositionTable == null) {
+            _transpositionTable =
+                new TranspositionTable(TranspositionTable.DEFAULT_SIZE);
+        }
+        return _transpositionTable;
+    }
+
+    /**
+     * Replace the transposition table with an empty one with SIZE slots
+     * (rounded down to a power of two).
+     */
+    void setTableSize(int size) {
+        _transpositionTable = new TranspositionTable(size);
+    }
+
+    /**
+     * Make automated players search on EXECUTOR, or on the thread that
+     * runs the game if EXECUTOR is null.
+     */
+    void setSearchExecutor(ExecutorService executor) {
+        _searchExecutor = executor;
+    }
+
+    /**
+     * Refuse commands that read local files (weights, book FILE, and
+     * tablebase FILE) or that search on threads other than the search
+     * executor (ponder on, and threads N for N > 1) iff RESTRICTED.
+     */
+    void setRestricted(boolean restricted) {
+        _restricted = restricted;
+    }
+
+    /**
+     * Throw an error saying that COMMAND is not allowed if I am
+     * restricted.
+     */
+    private void checkAllowed(String command) {
+        if (_restricted) {
+            throw error("%s is not allowed in this session", command);
+        }
+    }
+
+    /**
+     * Return the move found by SEARCH, run on the search executor, if
+     * any, while this thread waits.
+     */
+    Move runSearch(Supplier<Move> search) {
+        if (_searchExecutor == null) {
+            return search.get();
+        }
+        Future<Move> result = _searchExecutor.submit(search::get);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return result.get();
+                } catch (InterruptedException excp) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalStateException(excp.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Return the approximate number of milliseconds automated players may
+     * spend on each move, or 0 if they search to a fixed depth instead.
+     */
+    int moveTime() {
+        return _moveTime;
+    }
+
+    /**
+     * Return the opening book automated players should consult, or null
+     * if there is none or it is disabled.
+     */
+    OpeningBook openingBook() {
+        return _useBook ? _openingBook : null;
+    }
+
+    /**
+     * Return the endgame tablebase automated players should consult, or
+     * null if there is none or it is disabled.
+     */
+    Tablebase tablebase() {
+        return _useTablebase ? _tablebase : null;
+    }
+
+    /**
+     * Make TABLEBASE the endgame tablebase of automated players (none if
+     * it is null), and enable it.
+     */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+        _useTablebase = true;
+    }
+
+    /**
+     * Return true iff automated players should search while their manual
+     * opponents think.
+     */
+    boolean pondering() {
+        return _pondering;
+    }
+
+    /**
+     * Set the approximate number of milliseconds automated players may
+     * spend on each move to MILLIS, or to 0 to search to a fixed depth.
+     * MILLIS may not be negative.
+     */
+    void setMoveTime(int millis) {
+        if (millis < 0) {
+            throw error("move time may not be negative");
+        }
+        _moveTime = millis;
+    }
+
+    /**
+     * Return the pool of workers automated players use for parallel
+     * searches, or null if they are to search on a single thread.
+     */
+    ForkJoinPool searchPool() {
+        if (_threads <= 1) {
+            return null;
+        }
+        if (_searchPool == null) {
+            _searchPool = new ForkJoinPool(_threads);
+        }
+        return _searchPool;
+    }
+
+    /**
+     * Return the static evaluation used by automated players.
+     */
+    Evaluator evaluator() {
+        return _evaluator;
+    }
+
+    /**
+     * Set the static evaluation used by automated players to EVALUATOR.
+     */
+    void setEvaluator(Evaluator evaluator) {
+        _evaluator = evaluator;
+    }
+
+    /**
+     * Set the number of threads automated players search with to
+     * THREADS.  A value of 1 gives a sequential, reproducible search.
+     */
+    void setThreads(int threads) {
+        if (threads < 1) {
+            throw error("need at least one thread");
+        }
+        if (_searchPool != null) {
+            _searchPool.shutdown();
+            _searchPool = null;
+        }
+        _threads = threads;
+    }
+
     /**
      * Return a random integer in the range 0 inclusive to U, exclusive.
      * Available for use by AIs that use random selections in some cases.
@@ -188,8 +464,8 @@ final class Controller {
      */
     String readLine(boolean prompt) {
         if (prompt) {
-            System.out.print("> ");
-            System.out.flush();
+            _output.print("> ");
+            _output.flush();
         }
         if (_input.hasNextLine()) {
             return _input.nextLine().trim();
@@ -226,6 +502,17 @@ final class Controller {
         _reporter.reportNote(format, args);
     }
 
+    /**
+     * Record STATS as the statistics of the last search by an automated
+     * player, and report them if so requested.
+     */
+    void recordStats(SearchStats stats) {
+        _lastStats = stats;
+        if (_reportStats) {
+            _reporter.reportStats(stats);
+        }
+    }
+
     /**
      * Report move by calling reportMove(MOVE) on my reporter.
      */
@@ -254,14 +541,15 @@ final class Controller {
             _logFile.flush();
         }
 
-        COMMENT.reset(cmnd);
-        cmnd = COMMENT.replaceFirst("").trim().toLowerCase();
+        _comment.reset(cmnd);
+        String line = _comment.replaceFirst("").trim();
+        cmnd = line.toLowerCase();
 
         if (cmnd.isEmpty()) {
             return;
         }
         for (Command parser : _commands) {
-            parser._matcher.reset(cmnd);
+            parser._matcher.reset(parser._keepCase ? line : cmnd);
             if (parser._matcher.matches()) {
                 parser._processor.accept(parser._matcher);
                 return;
@@ -274,6 +562,7 @@ final class Controller {
      * Command "new".
      */
     private void doNew(Matcher unused) {
+        notifyPlayers(null);
         _board.init();
         _winner = null;
     }
@@ -282,6 +571,7 @@ final class Controller {
      * Command "manual <color>", where <color> is COLOR.group(1).
      */
     private void doManual(Matcher color) {
+        notifyPlayers(null);
         switch (color.group(1)) {
         case "black":
             _black = _manualPlayerTemplate.create(BLACK, this);
@@ -299,6 +589,7 @@ final class Controller {
      * Command "auto <color>", where <color> is COLOR.group(1).
      */
     private void doAuto(Matcher color) {
+        notifyPlayers(null);
         switch (color.group(1)) {
         case "black":
             _black = _autoPlayerTemplate.create(BLACK, this);
@@ -334,6 +625,7 @@ final class Controller {
             piece = EMPTY;
             break;
         }
+        notifyPlayers(null);
         _board.put(piece, sq);
         _board.clearUndo();
     }
@@ -342,6 +634,7 @@ final class Controller {
      * Command "quit".
      */
     private void doQuit(Matcher unused) {
+        notifyPlayers(null);
         _playing = false;
     }
 
@@ -367,11 +660,164 @@ final class Controller {
         }
     }
 
+    /**
+     * Command "ttsize N" where N, the first captured group of MAT, is the
+     * number of transposition-table slots (rounded down to a power of 2).
+     */
+    private void doTableSize(Matcher mat) {
+        try {
+            setTableSize(Integer.parseInt(mat.group(1)));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /**
+     * Command "ttstats": report transposition-table counters.
+     */
+    private void doTableStats(Matcher unused) {
+        TranspositionTable table = transpositionTable();
+        _reporter.reportNote("Table: %d slots, %d hits, %d misses,"
+                             + " %d cutoffs", table.size(), table.hits(),
+                             table.misses(), table.cutoffs());
+    }
+
+    /**
+     * Command "stats", "stats on", or "stats off", as given by the first
+     * captured group of MAT (null for plain "stats"): report the
+     * statistics of the last search by an automated player, or report
+     * (or stop reporting) them after each search.
+     */
+    private void doStats(Matcher mat) {
+        if (mat.group(1) != null) {
+            _reportStats = mat.group(1).equals("on");
+        } else if (_lastStats == null) {
+            _reporter.reportNote("No search statistics yet.");
+        } else {
+            _reporter.reportStats(_lastStats);
+        }
+    }
+
+    /**
+     * Command "movetime N" where N, the first captured group of MAT, is
+     * the approximate number of milliseconds automated players may spend
+     * per move.  0 restores the default fixed-depth search.
+     */
+    private void doMoveTime(Matcher mat) {
+        try {
+            setMoveTime(Integer.parseInt(mat.group(1)));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /**
+     * Command "threads N" where N, the first captured group of MAT, is
+     * the number of threads automated players search with.
+     */
+    private void doThreads(Matcher mat) {
+        try {
+            int threads = Integer.parseInt(mat.group(1));
+            if (threads > 1) {
+                checkAllowed("threads " + threads);
+            }
+            setThreads(threads);
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /**
+     * Command "weights FILE" where FILE, the first captured group of MAT,
+     * is a properties file of evaluation weights for automated players.
+     */
+    private void doWeights(Matcher mat) {
+        checkAllowed("weights");
+        _evaluator = Evaluator.load(mat.group(1));
+    }
+
+    /**
+     * Command "ponder on" or "ponder off", as given by the first captured
+     * group of MAT: whether automated players search while their manual
+     * opponents think.
+     */
+    private void doPonder(Matcher mat) {
+        if (mat.group(1).equals("on")) {
+            checkAllowed("ponder on");
+        }
+        _pondering = mat.group(1).equals("on");
+        if (!_pondering) {
+            notifyPlayers(null);
+        }
+    }
+
+    /**
+     * Command "book on", "book off", or "book FILE", as given by the first
+     * captured group of MAT: enable or disable the opening book, or
+     * replace it with the one in FILE (and enable it).
+     */
+    private void doBook(Matcher mat) {
+        switch (mat.group(1)) {
+        case "on":
+            _useBook = true;
+            break;
+        case "off":
+            _useBook = false;
+            break;
+        default:
+            checkAllowed("book FILE");
+            try {
+                _openingBook = new OpeningBook(mat.group(1));
+                _useBook = true;
+            } catch (IOException excp) {
+                throw error("could not read book: %s", excp.getMessage());
+            }
+            break;
+        }
+    }
+
+    /**
+     * Command "tablebase on", "tablebase off", or "tablebase FILE", as
+     * given by the first captured group of MAT: enable or disable the
+     * endgame tablebase, or replace it with the one in FILE (and enable
+     * it).
+     */
+    private void doTablebase(Matcher mat) {
+        switch (mat.group(1)) {
+        case "on":
+            _useTablebase = true;
+            break;
+        case "off":
+            _useTablebase = false;
+            break;
+        default:
+            checkAllowed("tablebase FILE");
+            try {
+                setTablebase(new Tablebase(mat.group(1)));
+            } catch (IOException excp) {
+                throw error("could not read tablebase: %s",
+                            excp.getMessage());
+            }
+            break;
+        }
+    }
+
+    /**
+     * Tell both players that MOVE has just been made, or if MOVE is null,
+     * that the game has changed in some other way.
+     */
+    private void notifyPlayers(Move move) {
+        _white.moveMade(move);
+        _black.moveMade(move);
+    }
+
     /**
      * Execute a move command matched in MAT.
      */
     private void doMove(Matcher mat) {
-        _board.makeMove(Move.mv(mat.group(0)));
+        Move move = Move.mv(mat.group(0));
+        _board.makeMove(move);
+        notifyPlayers(move);
         if (_winner == null) {
             _winner = _board.winner();
             if (_winner != null) {
@@ -385,7 +831,7 @@ final class Controller {
      * Dump the contents of the board on standard output.
      */
     private void doDump(Matcher unused) {
-        System.out.printf("===%n%s===%n", _board);
+        _output.printf("===%n%s===%n", _board);
     }
 
     /**
@@ -394,6 +840,7 @@ final class Controller {
      */
     private void doUndo(Matcher unused) {
         if (_board.moveCount() > 1) {
+            notifyPlayers(null);
             _board.undo();
             _board.undo();
             _winner = null;
@@ -416,14 +863,29 @@ final class Controller {
          * The function object that implements my command.
          */
         protected final Consumer<Matcher> _processor;
+        /**
+         * True iff I match commands as typed, rather than lower-cased, so
+         * that operands such as file names keep their case.
+         */
+        protected final boolean _keepCase;
 
         /**
          * A new Command that matches PATN (a regular expression) and uses
          * PROCESSOR to process commands that match the pattern.
          */
         Command(String patn, Consumer<Matcher> processor) {
-            _matcher = Pattern.compile(patn).matcher("");
+            this(patn, processor, false);
+        }
+
+        /**
+         * A new Command as above that, if KEEPCASE, matches commands as
+         * typed, with PATN ignoring case, rather than lower-cased.
+         */
+        Command(String patn, Consumer<Matcher> processor, boolean keepCase) {
+            _matcher = Pattern.compile(patn, keepCase ? Pattern.CASE_INSENSITIVE
+                                       : 0).matcher("");
             _processor = processor;
+            _keepCase = keepCase;
         }
     }
 
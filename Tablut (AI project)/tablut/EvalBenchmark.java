@@ -0,0 +1,166 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+/**
+ * Measures the speed of the AI's static evaluation.  Usage:
+ * java tablut.EvalBenchmark [POSITIONS [ROUNDS]].  Collects POSITIONS
+ * (default 1000) positions from random games, then evaluates each of them
+ * ROUNDS (default 2000) times and reports leaf evaluations per second.
+ * It does so twice: with the AI's Evaluator, which combines terms the
+ * Board maintains incrementally, and with referenceScore, the
+ * from-scratch ray and threat scans that the Evaluator replaced, so that
+ * the two rates can be compared on the same machine.
+ *
+ * @author IanTien
+ */
+public class EvalBenchmark {
+
+    /**
+     * Random seed used to generate the positions.
+     */
+    private static final long SEED = 61;
+    /**
+     * The value of a won position, as in AI.
+     */
+    private static final int WINNING_VALUE = Integer.MAX_VALUE - 20;
+    /**
+     * Offset from WINNING_VALUE of the reference scores of positions in
+     * which the king has a free path to the edge or is threatened.
+     */
+    private static final int MAGICNUM = 60;
+    /**
+     * Weight of the king's distance from the edge in reference scores.
+     */
+    private static final float MAGICNUM1 = 0.75f;
+
+    /**
+     * Run the benchmark as described above, with ARGS giving the number
+     * of positions and of rounds.
+     */
+    public static void main(String... args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        Controller controller =
+            new Controller(new NullView(), null, new TextReporter(),
+                           new TextPlayer(), new AI(), false);
+        AI ai = new AI(Piece.WHITE, controller);
+        Board[] positions = positions(count);
+        double incremental = time("incremental", ai::staticScore,
+                                  positions, rounds);
+        double reference = time("reference", EvalBenchmark::referenceScore,
+                                positions, rounds);
+        System.out.printf("speedup: %.2fx%n", incremental / reference);
+    }
+
+    /**
+     * Evaluate each of POSITIONS ROUNDS times with EVAL, once to warm up
+     * and once timed, print the rate under LABEL, and return it in
+     * evaluations per second.
+     */
+    private static double time(String label, ToIntFunction<Board> eval,
+                               Board[] positions, int rounds) {
+        long sum = 0;
+        double rate = 0;
+        for (int warm = 0; warm < 2; warm += 1) {
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r += 1) {
+                for (Board b : positions) {
+                    sum += eval.applyAsInt(b);
+                }
+            }
+            double secs = (System.nanoTime() - start) * 1e-9;
+            rate = rounds * positions.length / secs;
+        }
+        System.out.printf("%s: %d evaluations in %.3f s: %.0f evals/sec"
+                          + " (checksum %d)%n", label,
+                          (long) rounds * positions.length,
+                          (long) rounds * positions.length / rate, rate,
+                          sum);
+        return rate;
+    }
+
+    /**
+     * Return the value of BOARD, which must have a king and no winner, as
+     * the AI computed it before it used an Evaluator: by scanning the
+     * rays from the king for a free path to the edge, and the squares
+     * around it for capture threats.
+     */
+    static int referenceScore(Board board) {
+        Square kingSq = board.kingPosition();
+        double minInWay = 100f;
+        for (int i = 0; i < 4; i++) {
+            Square s;
+            int steps = 1;
+            double inWay = 0;
+            while (true) {
+                s = kingSq.rookMove(i, steps);
+                if (s == null || board.get(s).side() != Piece.EMPTY) {
+                    inWay = Math.min(inWay, minInWay);
+                    break;
+                }
+                if (s.row() == 8 || s.row() == 0
+                        || s.col() == 8 || s.col() == 0) {
+                    return WINNING_VALUE - MAGICNUM;
+                }
+                if (board.get(s).side() == Piece.BLACK) {
+                    inWay++;
+                }
+                steps++;
+            }
+            inWay = Math.min(inWay, minInWay);
+        }
+        double wallDist = Math.min(Math.min(kingSq.col(),
+                8 - kingSq.col()), Math.min(kingSq.row(), 8 - kingSq.row()));
+        double kscore = (wallDist * MAGICNUM1 + minInWay) / 1000.0;
+        int[][] tups = {{0, 2}, {2, 0}, {1, 3}, {3, 1}};
+        for (int[] tup : tups) {
+            Square near = kingSq.rookMove(tup[0], 1),
+                far = kingSq.rookMove(tup[1], 1);
+            if (near == null || far == null
+                    || board.get(near) != Piece.BLACK) {
+                continue;
+            }
+            for (int d = 0; d < 4; d++) {
+                for (int steps = 1; true; steps++) {
+                    Square s = far.rookMove(d, steps);
+                    if (s == null) {
+                        break;
+                    }
+                    if (board.get(s).side() == Piece.BLACK) {
+                        return -WINNING_VALUE + MAGICNUM;
+                    } else if (board.get(s).side() == Piece.WHITE) {
+                        break;
+                    }
+                }
+            }
+        }
+        return (int) (kscore * WINNING_VALUE);
+    }
+
+    /**
+     * Return COUNT positions without a winner, taken at random points of
+     * random games.
+     */
+    private static Board[] positions(int count) {
+        Random rand = new Random(SEED);
+        List<Board> result = new ArrayList<>();
+        Board board = new Board();
+        while (result.size() < count) {
+            List<Move> moves = board.legalMoves(board.turn());
+            if (board.winner() != null || moves.isEmpty()) {
+                board.init();
+                continue;
+            }
+            board.makeMove(moves.get(rand.nextInt(moves.size())));
+            if (board.winner() == null && rand.nextInt(4) == 0) {
+                result.add(new Board(board));
+            }
+        }
+        return result.toArray(new Board[0]);
+    }
+
+}
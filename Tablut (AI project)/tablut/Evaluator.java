@@ -0,0 +1,123 @@
+package tablut;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static tablut.Piece.*;
+import static tablut.Utils.error;
+
+/**
+ * The static evaluation used by the AI at the leaves of its search.  The
+ * value of a position is a weighted sum of terms that the Board maintains
+ * incrementally or computes from its masks in constant time: material of
+ * each side, the king's distance from the edge, the number of open paths
+ * from the king to the edge, and the number of attackers next to the
+ * king.  Positive values favor white.
+ *
+ * <p>The weights are read from a properties file with one entry per term
+ * (see WEIGHTS); the defaults come from the file evaluation.properties in
+ * this package.
+ *
+ * @author IanTien
+ */
+final class Evaluator {
+
+    /**
+     * The names of the weights, in the order they are held.
+     */
+    static final String[] WEIGHTS = {
+        "whitePiece", "blackPiece", "kingEdgeDistance", "kingOpenRay",
+        "kingAttacker"
+    };
+    /**
+     * Indices of the weights in _weights.
+     */
+    private static final int WHITE_PIECE = 0, BLACK_PIECE = 1,
+        KING_EDGE_DISTANCE = 2, KING_OPEN_RAY = 3, KING_ATTACKER = 4;
+    /**
+     * The name of the resource holding the default weights.
+     */
+    private static final String DEFAULT_RESOURCE = "evaluation.properties";
+
+    /**
+     * The weights, indexed as for WEIGHTS.
+     */
+    private final int[] _weights = new int[WEIGHTS.length];
+
+    /**
+     * An Evaluator whose weights are given by the properties in WEIGHTS,
+     * which must define every name in Evaluator.WEIGHTS as an integer.
+     */
+    Evaluator(Properties weights) {
+        for (int k = 0; k < WEIGHTS.length; k += 1) {
+            String value = weights.getProperty(WEIGHTS[k]);
+            if (value == null) {
+                throw error("missing weight: %s", WEIGHTS[k]);
+            }
+            try {
+                _weights[k] = Integer.parseInt(value.trim());
+            } catch (NumberFormatException excp) {
+                throw error("bad weight: %s=%s", WEIGHTS[k], value);
+            }
+        }
+    }
+
+    /**
+     * Return an Evaluator with the default weights.
+     */
+    static Evaluator defaults() {
+        try (InputStream in = Utils.getResource(DEFAULT_RESOURCE)) {
+            return new Evaluator(read(in));
+        } catch (IOException excp) {
+            throw error("could not read default weights: %s",
+                        excp.getMessage());
+        }
+    }
+
+    /**
+     * Return an Evaluator with the weights in the properties file NAME.
+     */
+    static Evaluator load(String name) {
+        try (InputStream in = new FileInputStream(name)) {
+            return new Evaluator(read(in));
+        } catch (IOException excp) {
+            throw error("could not read weights: %s", excp.getMessage());
+        }
+    }
+
+    /**
+     * Return the properties in IN.
+     */
+    private static Properties read(InputStream in) throws IOException {
+        Properties result = new Properties();
+        result.load(in);
+        return result;
+    }
+
+    /**
+     * Return the weight named NAME.
+     */
+    int weight(String name) {
+        for (int k = 0; k < WEIGHTS.length; k += 1) {
+            if (WEIGHTS[k].equals(name)) {
+                return _weights[k];
+            }
+        }
+        throw error("unknown weight: %s", name);
+    }
+
+    /**
+     * Return the value of BOARD, which must have a king and no winner, in
+     * constant time.
+     */
+    int score(Board board) {
+        return _weights[WHITE_PIECE] * board.pieceCount(WHITE)
+            - _weights[BLACK_PIECE] * board.pieceCount(BLACK)
+            - _weights[KING_EDGE_DISTANCE] * board.kingEdgeDistance()
+            + _weights[KING_OPEN_RAY] * board.kingOpenRays()
+            - _weights[KING_ATTACKER] * board.kingAttackers();
+    }
+
+}
@@ -0,0 +1,127 @@
+package tablut;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+import static tablut.Piece.*;
+import static tablut.Square.sq;
+
+/**
+ * The suite of all JUnit tests for the Evaluator class.
+ *
+ * @author IanTien
+ */
+public class EvaluatorTest {
+
+    /**
+     * Return weights with every term 1 except NAME, which is VALUE.
+     */
+    private static Properties weights(String name, int value) {
+        Properties result = new Properties();
+        for (String w : Evaluator.WEIGHTS) {
+            result.setProperty(w, w.equals(name) ? "" + value : "1");
+        }
+        return result;
+    }
+
+    /**
+     * Check that the default weights are all present.
+     */
+    @Test
+    public void testDefaults() {
+        Evaluator eval = Evaluator.defaults();
+        for (String w : Evaluator.WEIGHTS) {
+            assertTrue(eval.weight(w) > 0);
+        }
+    }
+
+    /**
+     * Check that each term responds to its weight.
+     */
+    @Test
+    public void testTerms() {
+        Board b = new Board();
+        assertEquals(8 - 16 - 4 + 0 - 0,
+                     new Evaluator(weights("", 0)).score(b));
+        assertEquals(80 - 16 - 4,
+                     new Evaluator(weights("whitePiece", 10)).score(b));
+        b.put(EMPTY, sq("e6"));
+        b.put(EMPTY, sq("e7"));
+        b.put(EMPTY, sq("e8"));
+        b.put(EMPTY, sq("e9"));
+        b.put(BLACK, sq("d5"));
+        assertEquals(1, b.kingAttackers());
+        assertEquals(1, b.kingOpenRays());
+        assertEquals(5 - 15 - 4 + 100 - 1,
+                     new Evaluator(weights("kingOpenRay", 100)).score(b));
+        assertEquals(5 - 15 - 4 + 1 - 100,
+                     new Evaluator(weights("kingAttacker", 100)).score(b));
+    }
+
+    /**
+     * Return a Controller that has run COMMANDS, given by its white
+     * player, asserting that none of them reported an error.
+     */
+    static Controller runCommands(String... commands) {
+        String input = String.join("\n", commands) + "\nquit\n";
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        Controller controller =
+            new Controller(new NullView(), null,
+                           new TextReporter(out, new PrintStream(errors)),
+                           new TextPlayer(), new TextPlayer(), false,
+                           new ByteArrayInputStream(
+                               input.getBytes(StandardCharsets.UTF_8)),
+                           out);
+        controller.play();
+        assertEquals("", errors.toString());
+        return controller;
+    }
+
+    /**
+     * Check that the weights command loads a file whose path is not in
+     * lower case.
+     */
+    @Test
+    public void testWeightsCommand() throws IOException {
+        File dir = Files.createTempDirectory("Tablut").toFile();
+        File file = new File(dir, "Weights.properties");
+        Properties props = weights("kingAttacker", 100);
+        try (OutputStream out = new FileOutputStream(file)) {
+            props.store(out, null);
+        }
+        try {
+            Board b = new Board();
+            b.makeMove(Move.mv("e2-c"));
+            Controller controller =
+                runCommands("WEIGHTS " + file.getPath());
+            assertEquals(new Evaluator(props).score(b),
+                         controller.evaluator().score(b));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    /**
+     * Check that missing weights are rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingWeight() {
+        Properties props = weights("", 0);
+        props.remove("kingOpenRay");
+        new Evaluator(props);
+    }
+
+}
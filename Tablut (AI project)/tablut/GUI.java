@@ -80,6 +80,10 @@ class GUI extends TopLevel implements View, Reporter {
                 new LayoutSpec("x", 0, "y", 0,
                         "height", 1,
                         "width", 3));
+        addLabel(" ", "Stats",
+                new LayoutSpec("x", 0, "y", 2,
+                        "height", 1,
+                        "width", 3));
 
     }
 
@@ -233,6 +237,20 @@ class GUI extends TopLevel implements View, Reporter {
     @Override
     public void reportMove(Move unused) {
     }
+
+    /**
+     * Show STATS in the status line below the board, replacing the last
+     * statistics shown, so that reporting after every move does not
+     * interrupt play.
+     */
+    @Override
+    public void reportStats(SearchStats stats) {
+        setLabel("Stats", "<html>"
+                + stats.toString().replace("&", "&amp;").replace("<", "&lt;")
+                        .replaceAll("\\R", "<br>")
+                + "</html>");
+    }
+
     /** Pattern describing the 'seed' command's arguments. */
     private static final Pattern SEED_PATN =
             Pattern.compile("\\s*(-?\\d{1,18})\\s*$");
@@ -66,4 +66,9 @@ class GUIPlayer extends Player implements Reporter {
     @Override
     public void reportMove(Move unused) {
     }
+
+    @Override
+    public void reportStats(SearchStats stats) {
+        _gui.reportStats(stats);
+    }
 }
@@ -0,0 +1,103 @@
+package tablut;
+
+import java.util.Arrays;
+
+/**
+ * A list of moves in the compact int encoding of Move.encode, stored in
+ * a primitive array.  The move generator and the search use these in
+ * place of lists of Moves, so that nothing is allocated or boxed once a
+ * list has reached its working size; Move.mv(int) converts an element to
+ * a Move where one is needed.
+ *
+ * @author IanTien
+ */
+final class IntMoveList {
+
+    /**
+     * The elements, in positions 0 .. _size - 1.
+     */
+    private int[] _moves;
+    /**
+     * The number of elements.
+     */
+    private int _size;
+
+    /**
+     * An empty list with room for Board.MAX_MOVES moves.
+     */
+    IntMoveList() {
+        this(Board.MAX_MOVES);
+    }
+
+    /**
+     * An empty list with initial room for CAPACITY moves.
+     */
+    IntMoveList(int capacity) {
+        _moves = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Return the number of moves in this list.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Return true iff this list is empty.
+     */
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Return the encoded move at position K.
+     */
+    int get(int k) {
+        if (k >= _size) {
+            throw new IndexOutOfBoundsException("no move " + k);
+        }
+        return _moves[k];
+    }
+
+    /**
+     * Replace the encoded move at position K with MOVE.
+     */
+    void set(int k, int move) {
+        if (k >= _size) {
+            throw new IndexOutOfBoundsException("no move " + k);
+        }
+        _moves[k] = move;
+    }
+
+    /**
+     * Append the encoded move MOVE, growing the list if needed.
+     */
+    void add(int move) {
+        if (_size == _moves.length) {
+            _moves = Arrays.copyOf(_moves, 2 * _size);
+        }
+        _moves[_size] = move;
+        _size += 1;
+    }
+
+    /**
+     * Remove all moves.
+     */
+    void clear() {
+        _size = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("[");
+        for (int k = 0; k < _size; k += 1) {
+            if (k > 0) {
+                out.append(", ");
+            }
+            out.append(Move.mv(_moves[k]));
+        }
+        return out.append("]").toString();
+    }
+
+}
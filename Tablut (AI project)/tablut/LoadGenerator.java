@@ -0,0 +1,282 @@
+package tablut;
+
+import ucb.util.CommandArgs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static tablut.Piece.*;
+
+/**
+ * Plays many simultaneous games against a SessionServer and reports the
+ * round-trip latency of moves.  Usage:
+ *
+ * <pre>
+ *   java tablut.LoadGenerator [--port=P] [--sessions=N] [--moves=M]
+ *       [--movetime=MS] [--seed=S] [--search-threads=T]
+ * </pre>
+ *
+ * Opens N sessions at once (default 100) to the server on the loopback
+ * interface at port P or, if P is not given, to a server started in this
+ * process whose searches run on T threads (default: the number of
+ * processors).  Each session plays black, making random legal moves
+ * (starting new games as needed) until it has received M replies
+ * (default 20), with session I seeded with S + I (S defaults to 0).
+ * The server's automated player is asked to spend about MS milliseconds
+ * (default 20) per move.  A round trip is the time from sending a move
+ * to receiving the reply.
+ *
+ * <p>Prints a CSV summary to the standard output: the numbers of sessions
+ * and round trips, the wall-clock time and throughput, and the mean,
+ * 50th, 90th, 99th, and 99.9th percentile, and maximum round-trip times
+ * in milliseconds.
+ *
+ * @author IanTien
+ */
+public class LoadGenerator {
+
+    /**
+     * Percentiles of round-trip time reported.
+     */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    /**
+     * Milliseconds a session waits for the server before giving up.
+     */
+    private static final int TIMEOUT = 300000;
+
+    /**
+     * The port of the server.
+     */
+    private final int _port;
+    /**
+     * The number of sessions.
+     */
+    private final int _sessions;
+    /**
+     * The number of replies received by each session.
+     */
+    private final int _moves;
+    /**
+     * Milliseconds per move requested of the server's automated players.
+     */
+    private final int _moveTime;
+    /**
+     * Seed of session 0.
+     */
+    private final long _seed;
+
+    /**
+     * A generator of N sessions to the server at PORT, each seeded from
+     * SEED and receiving MOVES replies, and asking for MOVETIME
+     * milliseconds per reply.
+     */
+    LoadGenerator(int port, int n, int moves, int moveTime, long seed) {
+        _port = port;
+        _sessions = n;
+        _moves = moves;
+        _moveTime = moveTime;
+        _seed = seed;
+    }
+
+    /**
+     * Run all sessions at once and return their round-trip times in
+     * nanoseconds, in increasing order.
+     */
+    long[] run() {
+        ExecutorService clients = SessionServer.newSessionExecutor();
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int i = 0; i < _sessions; i += 1) {
+            final long seed = _seed + i;
+            futures.add(clients.submit(() -> session(seed)));
+        }
+        long[] times = new long[_sessions * _moves];
+        int n = 0;
+        try {
+            for (Future<long[]> future : futures) {
+                long[] session = future.get();
+                System.arraycopy(session, 0, times, n, session.length);
+                n += session.length;
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            clients.shutdownNow();
+        }
+        times = Arrays.copyOf(times, n);
+        Arrays.sort(times);
+        return times;
+    }
+
+    /**
+     * Play one session seeded with SEED, and return the times of its
+     * round trips in nanoseconds.
+     */
+    long[] session(long seed) throws IOException {
+        Random rand = new Random(seed);
+        Board board = new Board();
+        long[] times = new long[_moves];
+        int n = 0;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                                        _port)) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(TIMEOUT);
+            BufferedReader in =
+                new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintStream out =
+                new PrintStream(socket.getOutputStream(), true,
+                                StandardCharsets.UTF_8);
+            if (!SessionServer.BANNER.equals(in.readLine())) {
+                throw new IOException("not a Tablut server");
+            }
+            out.printf("seed %d%n", seed);
+            out.printf("movetime %d%n", _moveTime);
+            while (n < _moves) {
+                if (board.winner() != null) {
+                    out.println("new");
+                    board.init();
+                }
+                List<Move> moves = board.legalMoves(BLACK);
+                Move mv = moves.get(rand.nextInt(moves.size()));
+                long start = System.nanoTime();
+                out.println(mv);
+                board.makeMove(mv);
+                if (board.winner() == null) {
+                    Move reply = readReply(in);
+                    times[n] = System.nanoTime() - start;
+                    n += 1;
+                    if (!board.isLegal(reply)) {
+                        throw new IOException("illegal reply " + reply);
+                    }
+                    board.makeMove(reply);
+                }
+            }
+            out.println("quit");
+        }
+        return times;
+    }
+
+    /**
+     * Return the next move reported on IN, skipping prompts and notes.
+     */
+    private static Move readReply(BufferedReader in) throws IOException {
+        while (true) {
+            String line = in.readLine();
+            if (line == null) {
+                throw new IOException("connection closed");
+            }
+            while (line.startsWith("> ")) {
+                line = line.substring(2);
+            }
+            if (line.startsWith("* ")) {
+                Move mv = Move.mv(line.substring(2).trim());
+                if (mv != null) {
+                    return mv;
+                }
+            } else if (!line.isEmpty()) {
+                throw new IOException("server error: " + line);
+            }
+        }
+    }
+
+    /**
+     * Print to OUT a CSV summary of TIMES, the sorted round-trip times in
+     * nanoseconds of a run that took WALL nanoseconds.
+     */
+    void summarize(PrintStream out, long[] times, long wall) {
+        out.println("statistic,value");
+        out.printf("sessions,%d%n", _sessions);
+        out.printf("round_trips,%d%n", times.length);
+        out.printf("wall_seconds,%.3f%n", wall * 1e-9);
+        out.printf("moves_per_sec,%.1f%n", times.length / (wall * 1e-9));
+        if (times.length > 0) {
+            double sum = 0;
+            for (long t : times) {
+                sum += t;
+            }
+            out.printf("latency_ms_mean,%.3f%n", sum * 1e-6 / times.length);
+            for (double p : PERCENTILES) {
+                out.printf("latency_ms_p%s,%.3f%n",
+                           String.valueOf(p).replaceAll("\\.0$", ""),
+                           percentile(times, p) * 1e-6);
+            }
+            out.printf("latency_ms_max,%.3f%n",
+                       times[times.length - 1] * 1e-6);
+        }
+        out.flush();
+    }
+
+    /**
+     * Return the P-th percentile of the sorted, non-empty array TIMES,
+     * by the nearest-rank method.
+     */
+    static long percentile(long[] times, double p) {
+        int rank = (int) Math.ceil(p / 100 * times.length);
+        return times[Math.min(times.length, Math.max(1, rank)) - 1];
+    }
+
+    /**
+     * Run a load test as described by ARGS (see the class comment).
+     */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--port={0,1} --sessions={0,1} --moves={0,1}"
+                            + " --movetime={0,1} --seed={0,1}"
+                            + " --search-threads={0,1}", args);
+        if (!options.ok()) {
+            System.err.println("Usage: java tablut.LoadGenerator [--port=P]"
+                    + " [--sessions=N] [--moves=M] [--movetime=MS]"
+                    + " [--seed=S] [--search-threads=T]");
+            System.exit(1);
+        }
+        SessionServer server = null;
+        try {
+            int port;
+            if (options.contains("--port")) {
+                port = SessionServer.intOption(options, "--port", 0);
+            } else {
+                int threads =
+                    SessionServer.intOption(options, "--search-threads",
+                                            Runtime.getRuntime()
+                                            .availableProcessors());
+                server = new SessionServer(0, threads,
+                                           SessionServer.TABLE_SIZE, 0);
+                server.start();
+                port = server.port();
+            }
+            LoadGenerator load =
+                new LoadGenerator(port,
+                                  SessionServer.intOption(options,
+                                                          "--sessions", 100),
+                                  SessionServer.intOption(options,
+                                                          "--moves", 20),
+                                  SessionServer.intOption(options,
+                                                          "--movetime", 20),
+                                  SessionServer.intOption(options,
+                                                          "--seed", 0));
+            long start = System.nanoTime();
+            long[] times = load.run();
+            load.summarize(System.out, times, System.nanoTime() - start);
+            if (server != null) {
+                server.close();
+            }
+        } catch (IOException | IllegalArgumentException
+                 | IllegalStateException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
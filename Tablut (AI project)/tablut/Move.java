@@ -33,13 +33,14 @@ final class Move {
      */
     static final MoveList[][] ROOK_MOVES = new MoveList[NUM_SQUARES][4];
     /**
-     * The cache of all Moves created.
+     * The number of low-order bits of an encoded move (see encode) that
+     * hold its index(), and their mask.
      */
-    private static final Move[][] MOVES = new Move[NUM_SQUARES][NUM_SQUARES];
+    static final int INDEX_BITS = 14, INDEX_MASK = (1 << INDEX_BITS) - 1;
     /**
-     * A utility Matcher for moves, using MOVE_PATTERN.
+     * The cache of all Moves created.
      */
-    private static Matcher _moveMatcher = MOVE_PATTERN.matcher("");
+    private static final Move[][] MOVES = new Move[NUM_SQUARES][NUM_SQUARES];
 
     static {
         for (Square sq0 : SQUARE_LIST) {
@@ -96,26 +97,88 @@ final class Move {
      * valid syntax, and null otherwise.
      */
     static Move mv(String str) {
-        _moveMatcher.reset(str);
-        if (_moveMatcher.matches()) {
-            Square from = sq(_moveMatcher.group(1));
+        Matcher mat = MOVE_PATTERN.matcher(str);
+        if (mat.matches()) {
+            Square from = sq(mat.group(1));
             Square to;
-            if (_moveMatcher.group(5) == null) {
-                to = sq(_moveMatcher.group(4), _moveMatcher.group(3));
+            if (mat.group(5) == null) {
+                to = sq(mat.group(4), mat.group(3));
             } else {
-                to = sq(_moveMatcher.group(2), _moveMatcher.group(5));
+                to = sq(mat.group(2), mat.group(5));
             }
             return mv(from, to);
         }
         return null;
     }
 
+    /**
+     * Return the unique Move encoded by MOVE (see encode), or null if
+     * MOVE does not encode a valid move.  Capture bits are ignored.
+     */
+    static Move mv(int move) {
+        int from = fromIndex(move), to = toIndex(move);
+        if (move < 0 || from >= NUM_SQUARES || to >= NUM_SQUARES) {
+            return null;
+        }
+        return mv(sq(from), sq(to));
+    }
+
+    /**
+     * Return the compact encoding of the move from the square with index
+     * FROM to the one with index TO that captures in the directions set in
+     * the mask CAPTURES (bit d for direction d, as for Square).  Bits 0-6
+     * of the result hold TO, bits 7-13 hold FROM (so that the low INDEX_BITS
+     * bits are the move's index()), and bits 14-17 hold CAPTURES.  Used by
+     * the move generator and search, which never create Move objects.
+     */
+    static int encode(int from, int to, int captures) {
+        return captures << INDEX_BITS | from << 7 | to;
+    }
+
+    /**
+     * Return the index() of the move encoded by MOVE.
+     */
+    static int index(int move) {
+        return move & INDEX_MASK;
+    }
+
+    /**
+     * Return the index of the square moved from by the move encoded by
+     * MOVE.
+     */
+    static int fromIndex(int move) {
+        return (move >> 7) & 127;
+    }
+
+    /**
+     * Return the index of the square moved to by the move encoded by
+     * MOVE.
+     */
+    static int toIndex(int move) {
+        return move & 127;
+    }
+
+    /**
+     * Return the mask of directions in which the move encoded by MOVE
+     * captures.
+     */
+    static int captures(int move) {
+        return move >>> INDEX_BITS;
+    }
+
+    /**
+     * Return true iff the move encoded by MOVE captures at least one
+     * piece.
+     */
+    static boolean isCapture(int move) {
+        return move >>> INDEX_BITS != 0;
+    }
+
     /**
      * Return true iff STR has the right format for a Move.
      */
     static boolean isGrammaticalMove(String str) {
-        _moveMatcher.reset(str);
-        return _moveMatcher.matches();
+        return MOVE_PATTERN.matcher(str).matches();
     }
 
     /**
@@ -132,6 +195,14 @@ final class Move {
         return _to;
     }
 
+    /**
+     * Return a small non-negative integer that identifies this move: the
+     * index of from() times 128 plus the index of to().
+     */
+    int index() {
+        return (_from.index() << 7) | _to.index();
+    }
+
     @Override
     public String toString() {
         return _str;
@@ -0,0 +1,25 @@
+package tablut;
+
+/**
+ * A Reporter that discards all messages, for headless play.
+ *
+ * @author IanTien
+ */
+class NullReporter implements Reporter {
+
+    @Override
+    public void reportError(String fmt, Object... args) {
+    }
+
+    @Override
+    public void reportNote(String fmt, Object... args) {
+    }
+
+    @Override
+    public void reportMove(Move move) {
+    }
+
+    @Override
+    public void reportStats(SearchStats stats) {
+    }
+}
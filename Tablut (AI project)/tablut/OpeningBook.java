@@ -0,0 +1,190 @@
+package tablut;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * A read-only opening book: for each of a set of positions, identified
+ * by Board.hashKey(), up to MOVES moves ranked best first.  The book is
+ * a binary file (written by write, and built by BookBuilder) that is
+ * memory-mapped rather than read, so opening it costs little however
+ * large it is.  Lookups binary-search the mapped records directly.
+ *
+ * <p>The file holds a header of two ints, MAGIC and the number of
+ * records, followed by the records in increasing order of key.  Each
+ * record is a long key followed by MOVES shorts, the Move.index() of
+ * each ranked move, padded with -1.  All values are big-endian.
+ *
+ * @author IanTien
+ */
+final class OpeningBook {
+
+    /**
+     * The first int of every book file.
+     */
+    static final int MAGIC = 0x54424b31;
+    /**
+     * The number of moves recorded for each position.
+     */
+    static final int MOVES = 4;
+    /**
+     * The name of the resource holding the default book.
+     */
+    static final String DEFAULT_RESOURCE = "opening.book";
+    /**
+     * Sizes in bytes of the header and of each record.
+     */
+    private static final int HEADER = 8, RECORD = 8 + 2 * MOVES;
+    /**
+     * True iff the default book has been looked for.
+     */
+    private static boolean _defaultLoaded;
+    /**
+     * The default book, or null if there is none.
+     */
+    private static OpeningBook _defaultBook;
+
+    /**
+     * The mapped contents of the book file.
+     */
+    private final MappedByteBuffer _data;
+    /**
+     * The number of records.
+     */
+    private final int _size;
+
+    /**
+     * The book in the file named NAME.
+     */
+    OpeningBook(String name) throws IOException {
+        this(Paths.get(name));
+    }
+
+    /**
+     * The book in the file at PATH.
+     */
+    OpeningBook(Path path) throws IOException {
+        try (FileChannel channel =
+             FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER) {
+                throw new IOException("not an opening book: " + path);
+            }
+            _data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                channel.size());
+        }
+        _size = _data.getInt(4);
+        if (_data.getInt(0) != MAGIC || _size < 0
+            || (long) HEADER + (long) _size * RECORD != _data.capacity()) {
+            throw new IOException("not an opening book: " + path);
+        }
+    }
+
+    /**
+     * Return the default book, from the file DEFAULT_RESOURCE alongside
+     * this class, or null if there is no such file.  The file is mapped
+     * once, and the book shared by all callers (lookups do not change
+     * it, so it may be used from several threads).
+     */
+    static synchronized OpeningBook defaultBook() {
+        if (!_defaultLoaded) {
+            _defaultLoaded = true;
+            URL url = OpeningBook.class.getResource(DEFAULT_RESOURCE);
+            if (url != null && url.getProtocol().equals("file")) {
+                try {
+                    _defaultBook = new OpeningBook(Paths.get(url.toURI()));
+                } catch (IOException | URISyntaxException excp) {
+                    /* Ignore: there is no usable default book. */
+                }
+            }
+        }
+        return _defaultBook;
+    }
+
+    /**
+     * Return the number of positions in the book.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Return the Move.index() values of the moves recorded for the
+     * position with KEY, best first, or an empty array if there are
+     * none.  Takes time logarithmic in size().
+     */
+    int[] lookup(long key) {
+        int lo = 0, hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int offset = HEADER + mid * RECORD;
+            long k = _data.getLong(offset);
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                int n = 0;
+                while (n < MOVES && _data.getShort(offset + 8 + 2 * n) >= 0) {
+                    n += 1;
+                }
+                int[] result = new int[n];
+                for (int i = 0; i < n; i += 1) {
+                    result[i] = _data.getShort(offset + 8 + 2 * i);
+                }
+                return result;
+            }
+        }
+        return new int[0];
+    }
+
+    /**
+     * Return the best-ranked move recorded for BOARD that is legal there,
+     * or null if there is none.
+     */
+    Move bestMove(Board board) {
+        if (board.winner() != null) {
+            return null;
+        }
+        for (int index : lookup(board.hashKey())) {
+            Move mv = Move.mv(index);
+            if (mv != null && board.isLegal(mv)) {
+                return mv;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write a book containing ENTRIES to the file named NAME.  Each
+     * entry maps a Board.hashKey() to the Move.index() values of its
+     * ranked moves, best first; only the first MOVES are written.
+     */
+    static void write(String name, SortedMap<Long, int[]> entries)
+        throws IOException {
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Map.Entry<Long, int[]> entry : entries.entrySet()) {
+                out.writeLong(entry.getKey());
+                int[] moves = entry.getValue();
+                for (int i = 0; i < MOVES; i += 1) {
+                    out.writeShort(i < moves.length ? moves[i] : -1);
+                }
+            }
+        }
+    }
+
+}
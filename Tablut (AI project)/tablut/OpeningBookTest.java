@@ -0,0 +1,87 @@
+package tablut;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * The suite of all JUnit tests for the OpeningBook class.
+ *
+ * @author IanTien
+ */
+public class OpeningBookTest {
+
+    /**
+     * Check writing a book and looking up present and absent positions.
+     */
+    @Test
+    public void testWriteLookup() throws IOException {
+        Board board = new Board();
+        Board next = new Board();
+        next.makeMove(Move.mv("d1-3"));
+        SortedMap<Long, int[]> entries = new TreeMap<>();
+        for (long key = -50; key < 50; key += 7) {
+            entries.put(key, new int[] { (int) key & 0x3fff });
+        }
+        entries.put(board.hashKey(),
+                    new int[] { Move.mv("e9-f").index(),
+                                Move.mv("d1-3").index(),
+                                Move.mv("a4-c").index(),
+                                Move.mv("a5-b").index(),
+                                Move.mv("a6-c").index() });
+        File file = File.createTempFile("tablut", ".book");
+        file.deleteOnExit();
+        OpeningBook.write(file.getPath(), entries);
+        OpeningBook book = new OpeningBook(file.getPath());
+        assertEquals(entries.size(), book.size());
+        int[] moves = book.lookup(board.hashKey());
+        assertEquals(OpeningBook.MOVES, moves.length);
+        assertEquals(Move.mv("d1-3").index(), moves[1]);
+        assertEquals(1, book.lookup(-43).length);
+        assertEquals(0, book.lookup(-42).length);
+        assertEquals(0, book.lookup(next.hashKey()).length);
+        assertSame(Move.mv("d1-3"), book.bestMove(board));
+        assertNull(book.bestMove(next));
+    }
+
+    /**
+     * Check that the book command reads a file whose path is not in lower
+     * case, and that its on and off forms still ignore case.
+     */
+    @Test
+    public void testBookCommand() throws IOException {
+        File dir = Files.createTempDirectory("Tablut").toFile();
+        File file = new File(dir, "Opening.book");
+        SortedMap<Long, int[]> entries = new TreeMap<>();
+        entries.put(new Board().hashKey(),
+                    new int[] { Move.mv("d1-3").index() });
+        try {
+            OpeningBook.write(file.getPath(), entries);
+            Controller controller =
+                EvaluatorTest.runCommands("Book " + file.getPath());
+            assertEquals(1, controller.openingBook().size());
+            assertNull(EvaluatorTest.runCommands("book " + file.getPath(),
+                                                 "BOOK OFF").openingBook());
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    /**
+     * Check that a file that is not a book is rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testBadFile() throws IOException {
+        File file = File.createTempFile("tablut", ".book");
+        file.deleteOnExit();
+        new OpeningBook(file.getPath());
+    }
+
+}
@@ -0,0 +1,94 @@
+package tablut;
+
+/**
+ * Counts the positions reachable by legal moves, as a check on the move
+ * generator's correctness and speed.  Usage: java tablut.Perft [DEPTH].
+ * For the initial position and each of POSITIONS, reports the number of
+ * leaf positions DEPTH (default 3) moves away, and the time taken.  A
+ * position in which the game is over counts as a leaf only at DEPTH; it
+ * has no successors.
+ *
+ * @author IanTien
+ */
+public class Perft {
+
+    /**
+     * Positions counted, as sequences of moves from the initial position.
+     */
+    static final String[][] POSITIONS = {
+        {},
+        { "h5-6", "g5-2", "e8-c", "e4-h" },
+        { "h5-6", "d5-2", "i4-f", "c5-1", "h6-f", "e4-b" },
+        { "d1-3", "e3-c", "f1-3", "e4-1", "e2-f", "g5-3" },
+    };
+
+    /**
+     * Per-depth move buffers.
+     */
+    private final IntMoveList[] _moves;
+
+    /**
+     * A counter for searches up to DEPTH moves deep.
+     */
+    Perft(int depth) {
+        _moves = new IntMoveList[depth + 1];
+        for (int d = 0; d <= depth; d += 1) {
+            _moves[d] = new IntMoveList();
+        }
+    }
+
+    /**
+     * Return the board reached from the initial position by MOVES.
+     */
+    static Board position(String... moves) {
+        Board board = new Board();
+        for (String mv : moves) {
+            board.makeMove(Move.mv(mv));
+        }
+        return board;
+    }
+
+    /**
+     * Return the number of positions reached from BOARD by DEPTH legal
+     * moves.  BOARD is restored before returning.
+     */
+    long count(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (board.winner() != null) {
+            return 0;
+        }
+        IntMoveList moves = _moves[depth];
+        int n = board.legalMoves(board.turn(), moves);
+        if (depth == 1) {
+            return n;
+        }
+        long total = 0;
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(moves.get(i));
+            total += count(board, depth - 1);
+            board.undo();
+        }
+        return total;
+    }
+
+    /**
+     * Report the counts for POSITIONS to the depth given by ARGS[0].
+     */
+    public static void main(String... args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        Perft perft = new Perft(depth);
+        System.out.printf("%8s %5s %14s %9s %12s%n", "position", "depth",
+                          "leaves", "seconds", "leaves/sec");
+        for (int p = 0; p < POSITIONS.length; p += 1) {
+            Board board = position(POSITIONS[p]);
+            long start = System.nanoTime();
+            long leaves = perft.count(board, depth);
+            double secs = (System.nanoTime() - start) * 1e-9;
+            System.out.printf("%8d %5d %14d %9.3f %12.0f%n", p, depth,
+                              leaves, secs, leaves / secs);
+        }
+    }
+
+}
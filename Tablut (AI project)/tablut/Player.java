@@ -59,4 +59,12 @@ abstract class Player {
      * is not null.
      */
     abstract String myMove();
+
+    /**
+     * Notify me that MOVE has just been made on the board, by either side,
+     * or, if MOVE is null, that the game has changed in some other way
+     * (or ended).  By default, does nothing.
+     */
+    void moveMade(Move move) {
+    }
 }
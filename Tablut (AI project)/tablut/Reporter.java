@@ -24,5 +24,10 @@ interface Reporter {
      */
     void reportMove(Move move);
 
+    /**
+     * Display STATS, the statistics of a search by an automated player.
+     */
+    void reportStats(SearchStats stats);
+
 }
 
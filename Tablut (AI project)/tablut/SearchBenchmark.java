@@ -0,0 +1,155 @@
+package tablut;
+
+/**
+ * Measures how the speed of the AI's search scales with the number of
+ * threads.  Usage: java tablut.SearchBenchmark [MAXTHREADS [DEPTH]].
+ * For each thread count from 1 to MAXTHREADS (default: the number of
+ * processors), searches a fixed set of positions to DEPTH (default 5)
+ * and reports positions searched per second.
+ *
+ * <p>With the arguments "ordering [DEPTH]", instead searches the same
+ * positions to DEPTH on one thread with and without move ordering and
+ * reports the number of positions visited by each.  With the arguments
+ * "quiescence [DEPTH]", compares searches to DEPTH without quiescence
+ * search and to DEPTH - 1 with it.
+ *
+ * @author IanTien
+ */
+public class SearchBenchmark {
+
+    /**
+     * Positions searched, as sequences of moves from the initial
+     * position.
+     */
+    private static final String[][] POSITIONS = {
+        {},
+        { "h5-6", "g5-2", "e8-c", "e4-h" },
+        { "h5-6", "d5-2", "i4-f", "c5-1", "h6-f", "e4-b" },
+    };
+    /**
+     * Random seed used for every search.
+     */
+    private static final long SEED = 61;
+
+    /**
+     * Run the benchmark as described above, with ARGS giving the maximum
+     * number of threads and the search depth.
+     */
+    public static void main(String... args) {
+        if (args.length > 0 && args[0].equals("ordering")) {
+            compareOrdering(args.length > 1 ? Integer.parseInt(args[1]) : 5);
+            return;
+        } else if (args.length > 0 && args[0].equals("quiescence")) {
+            compareQuiescence(args.length > 1
+                              ? Integer.parseInt(args[1]) : 4);
+            return;
+        }
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+            : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        double base = 0;
+        System.out.printf("%7s %12s %9s %12s %7s%n", "threads", "nodes",
+                          "seconds", "nodes/sec", "speedup");
+        for (int threads = 1; threads <= maxThreads; threads += 1) {
+            Controller controller =
+                new Controller(new NullView(), null, new TextReporter(),
+                               new TextPlayer(), new AI(), false);
+            controller.setThreads(threads);
+            long start = System.nanoTime();
+            long nodes = search(controller, depth, true);
+            double secs = (System.nanoTime() - start) * 1e-9;
+            double rate = nodes / secs;
+            if (threads == 1) {
+                base = rate;
+            }
+            System.out.printf("%7d %12d %9.3f %12.0f %7.2f%n", threads,
+                              nodes, secs, rate, rate / base);
+            controller.setThreads(1);
+        }
+    }
+
+    /**
+     * Search POSITIONS to DEPTH on one thread with move ordering off and
+     * on, and report the positions visited by each.
+     */
+    private static void compareOrdering(int depth) {
+        System.out.printf("%8s %12s %9s%n", "ordering", "nodes", "seconds");
+        long unordered = 0;
+        for (boolean ordering : new boolean[] { false, true }) {
+            Controller controller =
+                new Controller(new NullView(), null, new TextReporter(),
+                               new TextPlayer(), new AI(), false);
+            long start = System.nanoTime();
+            long nodes = search(controller, depth, ordering);
+            double secs = (System.nanoTime() - start) * 1e-9;
+            System.out.printf("%8s %12d %9.3f%n", ordering ? "on" : "off",
+                              nodes, secs);
+            if (!ordering) {
+                unordered = nodes;
+            } else {
+                System.out.printf("Nodes reduced by %.1f%%%n",
+                                  100.0 * (unordered - nodes) / unordered);
+            }
+        }
+    }
+
+    /**
+     * Search POSITIONS on one thread to DEPTH without quiescence search
+     * and to DEPTH - 1 with it, and report the positions visited by
+     * each.
+     */
+    private static void compareQuiescence(int depth) {
+        System.out.printf("%5s %10s %12s %12s %9s%n", "depth", "quiescence",
+                          "nodes", "quiet nodes", "seconds");
+        for (int d = depth; d >= depth - 1; d -= 1) {
+            Controller controller =
+                new Controller(new NullView(), null, new TextReporter(),
+                               new TextPlayer(), new AI(), false);
+            long[] quiet = new long[1];
+            long start = System.nanoTime();
+            long nodes = search(controller, d, true, d < depth, quiet);
+            double secs = (System.nanoTime() - start) * 1e-9;
+            System.out.printf("%5d %10s %12d %12d %9.3f%n", d,
+                              d < depth ? "on" : "off", nodes, quiet[0],
+                              secs);
+        }
+    }
+
+    /**
+     * Search each of POSITIONS to DEPTH using CONTROLLER, with move
+     * ordering iff ORDERING, and return the total number of positions
+     * visited.
+     */
+    private static long search(Controller controller, int depth,
+                               boolean ordering) {
+        return search(controller, depth, ordering, true, new long[1]);
+    }
+
+    /**
+     * Search each of POSITIONS to DEPTH using CONTROLLER, with move
+     * ordering iff ORDERING and quiescence search iff QUIESCENCE.  Return
+     * the total number of positions visited, and add the number visited
+     * by quiescence searches to QUIET[0].
+     */
+    private static long search(Controller controller, int depth,
+                               boolean ordering, boolean quiescence,
+                               long[] quiet) {
+        long nodes = 0;
+        for (String[] moves : POSITIONS) {
+            controller.setSeed(SEED);
+            Board board = controller.board();
+            board.init();
+            for (String mv : moves) {
+                board.makeMove(Move.mv(mv));
+            }
+            AI ai = new AI(board.turn(), controller);
+            ai.setMoveOrdering(ordering);
+            ai.setQuiescence(quiescence);
+            ai.findMove(depth);
+            nodes += ai.nodes();
+            quiet[0] += ai.quiescenceNodes();
+        }
+        return nodes;
+    }
+
+}
@@ -0,0 +1,289 @@
+package tablut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Statistics of one search by an AI: positions visited, beta cutoffs,
+ * transposition-table probes, depths reached, time per iteration, and
+ * the principal variation found.  The counters are plain fields updated
+ * by the single thread that owns the search (parallel workers keep their
+ * own, which are added in when they finish), so collecting them costs
+ * little enough to leave on during play.
+ *
+ * @author IanTien
+ */
+final class SearchStats {
+
+    /**
+     * Numbers of positions visited, in all and by quiescence searches.
+     */
+    private long _nodes, _quiescenceNodes;
+    /**
+     * Numbers of beta cutoffs, and of those caused by the first move
+     * searched.
+     */
+    private long _cutoffs, _firstCutoffs;
+    /**
+     * Numbers of transposition-table probes, and of those that found
+     * their position.
+     */
+    private long _probes, _hits;
+    /**
+     * The depth of the last completed iteration, and the greatest
+     * distance from the root of any position visited.
+     */
+    private int _depth, _selectiveDepth;
+    /**
+     * The value for white found by the last completed iteration.
+     */
+    private int _value;
+    /**
+     * The value of System.nanoTime() when the search started.
+     */
+    private long _start;
+    /**
+     * Nanoseconds from the start of the search to its end.
+     */
+    private long _elapsed;
+    /**
+     * _iterationTimes[d - 1] is the number of nanoseconds from the start
+     * of the search to the completion of the iteration to depth d.
+     */
+    private long[] _iterationTimes = new long[0];
+    /**
+     * The principal variation found.
+     */
+    private List<Move> _principalVariation = new ArrayList<>();
+
+    /**
+     * Clear all statistics and start timing a new search.
+     */
+    void start() {
+        _nodes = _quiescenceNodes = 0;
+        _cutoffs = _firstCutoffs = 0;
+        _probes = _hits = 0;
+        _depth = _selectiveDepth = _value = 0;
+        _elapsed = 0;
+        _iterationTimes = new long[0];
+        _principalVariation = new ArrayList<>();
+        _start = System.nanoTime();
+    }
+
+    /**
+     * Count a visited position at distance PLY from the root, and return
+     * the number of positions visited so far.
+     */
+    long countNode(int ply) {
+        if (ply > _selectiveDepth) {
+            _selectiveDepth = ply;
+        }
+        _nodes += 1;
+        return _nodes;
+    }
+
+    /**
+     * Count a position visited by a quiescence search (in addition to
+     * countNode).
+     */
+    void countQuiescenceNode() {
+        _quiescenceNodes += 1;
+    }
+
+    /**
+     * Count a beta cutoff, caused by the first move searched iff FIRST.
+     */
+    void countCutoff(boolean first) {
+        _cutoffs += 1;
+        if (first) {
+            _firstCutoffs += 1;
+        }
+    }
+
+    /**
+     * Count a transposition-table probe, which found its position iff
+     * HIT.
+     */
+    void countProbe(boolean hit) {
+        _probes += 1;
+        if (hit) {
+            _hits += 1;
+        }
+    }
+
+    /**
+     * Record the completion of the iteration to DEPTH, with VALUE for
+     * white.
+     */
+    void completed(int depth, int value) {
+        _depth = depth;
+        _value = value;
+        if (_iterationTimes.length < depth) {
+            _iterationTimes = Arrays.copyOf(_iterationTimes, depth);
+        }
+        _iterationTimes[depth - 1] = System.nanoTime() - _start;
+    }
+
+    /**
+     * Record the end of the search, which found the principal variation
+     * PV.
+     */
+    void finish(List<Move> pv) {
+        _elapsed = System.nanoTime() - _start;
+        _principalVariation = new ArrayList<>(pv);
+    }
+
+    /**
+     * Add the counters of OTHER, a search of part of the same tree, to
+     * mine.
+     */
+    void add(SearchStats other) {
+        _nodes += other._nodes;
+        _quiescenceNodes += other._quiescenceNodes;
+        _cutoffs += other._cutoffs;
+        _firstCutoffs += other._firstCutoffs;
+        _probes += other._probes;
+        _hits += other._hits;
+        _selectiveDepth = Math.max(_selectiveDepth, other._selectiveDepth);
+    }
+
+    /**
+     * Return the number of positions visited.
+     */
+    long nodes() {
+        return _nodes;
+    }
+
+    /**
+     * Return the number of positions visited by quiescence searches
+     * (included in nodes()).
+     */
+    long quiescenceNodes() {
+        return _quiescenceNodes;
+    }
+
+    /**
+     * Return the number of beta cutoffs.
+     */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /**
+     * Return the number of beta cutoffs caused by the first move searched.
+     */
+    long firstMoveCutoffs() {
+        return _firstCutoffs;
+    }
+
+    /**
+     * Return the fraction of beta cutoffs caused by the first move
+     * searched (0 if there were none), a measure of move ordering.
+     */
+    double firstMoveCutoffRate() {
+        return _cutoffs == 0 ? 0 : (double) _firstCutoffs / _cutoffs;
+    }
+
+    /**
+     * Return the number of transposition-table probes.
+     */
+    long probes() {
+        return _probes;
+    }
+
+    /**
+     * Return the number of transposition-table probes that found their
+     * position.
+     */
+    long hits() {
+        return _hits;
+    }
+
+    /**
+     * Return the fraction of transposition-table probes that found their
+     * position (0 if there were none).
+     */
+    double hitRate() {
+        return _probes == 0 ? 0 : (double) _hits / _probes;
+    }
+
+    /**
+     * Return the depth of the last completed iteration (0 if none).
+     */
+    int depth() {
+        return _depth;
+    }
+
+    /**
+     * Return the greatest distance from the root of any position
+     * visited, including those visited by quiescence searches.
+     */
+    int selectiveDepth() {
+        return _selectiveDepth;
+    }
+
+    /**
+     * Return the value for white found by the last completed iteration.
+     */
+    int value() {
+        return _value;
+    }
+
+    /**
+     * Return the length of the search in nanoseconds (0 until it has
+     * finished).
+     */
+    long elapsed() {
+        return _elapsed;
+    }
+
+    /**
+     * Return the number of nanoseconds from the start of the search to
+     * the completion of the iteration to DEPTH, or -1 if it did not
+     * complete.
+     */
+    long iterationTime(int depth) {
+        return depth >= 1 && depth <= _iterationTimes.length
+            ? _iterationTimes[depth - 1] : -1;
+    }
+
+    /**
+     * Return the number of positions visited per second.
+     */
+    double nodesPerSecond() {
+        return _elapsed == 0 ? 0 : _nodes * 1e9 / _elapsed;
+    }
+
+    /**
+     * Return the principal variation found: the best move, the best reply
+     * to it, and so on.
+     */
+    List<Move> principalVariation() {
+        return _principalVariation;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("depth %d/%d, %d nodes (%d quiescence) in"
+                                 + " %.3f s, %.0f nodes/s%n", _depth,
+                                 _selectiveDepth, _nodes, _quiescenceNodes,
+                                 _elapsed * 1e-9, nodesPerSecond()));
+        out.append(String.format("%d cutoffs, %.1f%% on first move;"
+                                 + " %d table probes, %.1f%% hits%n",
+                                 _cutoffs, 100 * firstMoveCutoffRate(),
+                                 _probes, 100 * hitRate()));
+        out.append("iterations (ms):");
+        for (int d = 1; d <= _iterationTimes.length; d += 1) {
+            out.append(String.format(" %d:%.1f", d,
+                                     iterationTime(d) * 1e-6));
+        }
+        out.append(String.format("%nvalue %d, pv", _value));
+        for (Move mv : _principalVariation) {
+            out.append(' ').append(mv);
+        }
+        return out.toString();
+    }
+
+}
@@ -0,0 +1,79 @@
+package tablut;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The suite of all JUnit tests for the SearchStats class.
+ *
+ * @author IanTien
+ */
+public class SearchStatsTest {
+
+    /**
+     * Check the counters, the rates derived from them, and the addition
+     * of a worker's counters.
+     */
+    @Test
+    public void testCounters() {
+        SearchStats stats = new SearchStats();
+        stats.start();
+        assertEquals(1, stats.countNode(0));
+        assertEquals(2, stats.countNode(3));
+        stats.countNode(2);
+        stats.countQuiescenceNode();
+        stats.countCutoff(true);
+        stats.countCutoff(true);
+        stats.countCutoff(true);
+        stats.countCutoff(false);
+        stats.countProbe(true);
+        stats.countProbe(false);
+        assertEquals(0.75, stats.firstMoveCutoffRate(), 1e-9);
+        assertEquals(0.5, stats.hitRate(), 1e-9);
+        assertEquals(3, stats.selectiveDepth());
+        SearchStats worker = new SearchStats();
+        worker.countNode(5);
+        worker.countCutoff(false);
+        worker.countProbe(false);
+        stats.add(worker);
+        assertEquals(4, stats.nodes());
+        assertEquals(1, stats.quiescenceNodes());
+        assertEquals(5, stats.cutoffs());
+        assertEquals(3, stats.firstMoveCutoffs());
+        assertEquals(3, stats.probes());
+        assertEquals(1, stats.hits());
+        assertEquals(5, stats.selectiveDepth());
+        assertEquals(-1, stats.iterationTime(1));
+        stats.start();
+        assertEquals(0, stats.nodes());
+        assertEquals(0, stats.firstMoveCutoffRate(), 0);
+        assertEquals(0, stats.hitRate(), 0);
+    }
+
+    /**
+     * Check the statistics recorded by a fixed-depth search.
+     */
+    @Test
+    public void testSearch() {
+        Controller controller =
+            new Controller(new NullView(), null, new NullReporter(),
+                           new AI(), new AI(), false);
+        controller.setSeed(61);
+        AI ai = new AI(Piece.BLACK, controller);
+        Move mv = ai.findMove(3);
+        SearchStats stats = ai.stats();
+        assertEquals(3, stats.depth());
+        assertEquals(ai.lastValue(), stats.value());
+        assertEquals(ai.nodes(), stats.nodes());
+        assertTrue(stats.selectiveDepth() >= 3);
+        assertTrue(stats.cutoffs() > 0 && stats.probes() > 0);
+        assertTrue(stats.iterationTime(1) >= 0);
+        assertTrue(stats.iterationTime(3) >= stats.iterationTime(1));
+        assertTrue(stats.elapsed() >= stats.iterationTime(3));
+        assertEquals(-1, stats.iterationTime(4));
+        assertFalse(stats.principalVariation().isEmpty());
+        assertSame(mv, stats.principalVariation().get(0));
+    }
+
+}
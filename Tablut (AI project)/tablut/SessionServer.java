@@ -0,0 +1,268 @@
+package tablut;
+
+import ucb.util.CommandArgs;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Hosts many games of Tablut at once, each played over its own socket
+ * connection using the text commands of tablut.Main.  Usage:
+ *
+ * <pre>
+ *   java tablut.SessionServer [--port=P] [--search-threads=T]
+ *       [--ttsize=N] [--movetime=MS]
+ * </pre>
+ *
+ * Listens on the loopback interface at port P (default DEFAULT_PORT).
+ * Each connection is a session: a Controller of its own, with its own
+ * board, random-number generator, and transposition table of N slots
+ * (default TABLE_SIZE), reading commands from the connection and writing
+ * prompts, moves, and messages back to it.  As in tablut.Main, white is
+ * initially automated and black manual.  Automated players stop
+ * searching after about MS milliseconds (default: they search to a fixed
+ * depth).
+ *
+ * <p>Each session runs on its own virtual thread when the Java runtime
+ * provides them (Java 21 and later), and otherwise on a thread from a
+ * cached pool.  The searches of all sessions' automated players run on
+ * one fixed pool of T threads (default: the number of processors), so at
+ * most T searches compete for the processors however many sessions are
+ * open; a session waiting for the pool blocks only its own thread.
+ * Sessions may not use the commands that would escape that bound or
+ * read the server's files: "ponder on", "threads N" for N > 1,
+ * "weights", "book FILE", and "tablebase FILE".
+ *
+ * @author IanTien
+ */
+public class SessionServer implements Closeable {
+
+    /**
+     * The default port.
+     */
+    static final int DEFAULT_PORT = 6161;
+    /**
+     * The default number of transposition-table slots per session.
+     */
+    static final int TABLE_SIZE = 1 << 14;
+    /**
+     * The most connections that may wait to be accepted.  Clients that
+     * connect when the queue is full may hang, so this is large enough
+     * for many clients to connect at once.
+     */
+    private static final int BACKLOG = 4096;
+    /**
+     * The first line sent on each connection.
+     */
+    static final String BANNER = "Tablut 61B, staff version 1.0";
+
+    /**
+     * The listening socket.
+     */
+    private final ServerSocket _server;
+    /**
+     * Runs the sessions, one thread each.
+     */
+    private final ExecutorService _sessions = newSessionExecutor();
+    /**
+     * Runs the searches of all sessions.
+     */
+    private final ExecutorService _searches;
+    /**
+     * The connections of the open sessions.
+     */
+    private final Set<Socket> _open = ConcurrentHashMap.newKeySet();
+    /**
+     * Transposition-table slots per session.
+     */
+    private final int _tableSize;
+    /**
+     * Milliseconds per automated move, or 0 for fixed-depth searches.
+     */
+    private final int _moveTime;
+
+    /**
+     * A server listening on the loopback interface at PORT (0 for any
+     * free port) whose sessions search on SEARCHTHREADS threads with
+     * TABLESIZE transposition-table slots each and MOVETIME milliseconds
+     * per automated move (0 for fixed-depth searches).  It accepts no
+     * connections until started.
+     */
+    SessionServer(int port, int searchThreads, int tableSize, int moveTime)
+        throws IOException {
+        _server = new ServerSocket(port, BACKLOG,
+                                   InetAddress.getLoopbackAddress());
+        _searches = Executors.newFixedThreadPool(searchThreads);
+        _tableSize = tableSize;
+        _moveTime = moveTime;
+    }
+
+    /**
+     * Return an executor that runs each task on a new virtual thread, or
+     * if the runtime has none, on a thread from a cached pool.  Looked up
+     * reflectively so that this code compiles for runtimes without them.
+     */
+    static ExecutorService newSessionExecutor() {
+        try {
+            Method factory =
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException excp) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Return the port on which I listen.
+     */
+    int port() {
+        return _server.getLocalPort();
+    }
+
+    /**
+     * Accept connections on a background thread until closed.
+     */
+    void start() {
+        Thread acceptor = new Thread(this::serve, "tablut-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Accept connections, starting a session for each, until closed.
+     */
+    void serve() {
+        while (!_server.isClosed()) {
+            Socket socket;
+            try {
+                socket = _server.accept();
+            } catch (IOException excp) {
+                if (!_server.isClosed()) {
+                    System.err.printf("Accept failed: %s%n",
+                                      excp.getMessage());
+                }
+                continue;
+            }
+            _open.add(socket);
+            try {
+                _sessions.execute(() -> runSession(socket));
+            } catch (RejectedExecutionException excp) {
+                _open.remove(socket);
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * Play games over SOCKET until the client quits or disconnects.
+     */
+    private void runSession(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            PrintStream out =
+                new PrintStream(new BufferedOutputStream(s.getOutputStream()),
+                                true, StandardCharsets.UTF_8);
+            Controller controller =
+                new Controller(new NullView(), null,
+                               new TextReporter(out, out), new TextPlayer(),
+                               new AI(), false, s.getInputStream(), out);
+            controller.setTableSize(_tableSize);
+            controller.setMoveTime(_moveTime);
+            controller.setSearchExecutor(_searches);
+            controller.setRestricted(true);
+            out.println(BANNER);
+            controller.play();
+        } catch (IOException excp) {
+            /* The connection failed: the session is over. */
+        } catch (RuntimeException excp) {
+            System.err.printf("Session failed: %s%n", excp);
+        } finally {
+            _open.remove(socket);
+        }
+    }
+
+    /**
+     * Close SOCKET, ignoring errors.
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException excp) {
+            /* Ignore IOException. */
+        }
+    }
+
+    /**
+     * Stop accepting connections and abandon all sessions, closing their
+     * connections.
+     */
+    @Override
+    public void close() throws IOException {
+        _server.close();
+        for (Socket socket : _open) {
+            closeQuietly(socket);
+        }
+        _sessions.shutdownNow();
+        _searches.shutdownNow();
+    }
+
+    /**
+     * Run a server as described by ARGS (see the class comment).
+     */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--port={0,1} --search-threads={0,1}"
+                            + " --ttsize={0,1} --movetime={0,1}", args);
+        if (!options.ok()) {
+            System.err.println("Usage: java tablut.SessionServer [--port=P]"
+                    + " [--search-threads=T] [--ttsize=N] [--movetime=MS]");
+            System.exit(1);
+        }
+        try {
+            SessionServer server =
+                new SessionServer(intOption(options, "--port", DEFAULT_PORT),
+                                  intOption(options, "--search-threads",
+                                            Runtime.getRuntime()
+                                            .availableProcessors()),
+                                  intOption(options, "--ttsize", TABLE_SIZE),
+                                  intOption(options, "--movetime", 0));
+            System.out.printf("Listening on port %d%n", server.port());
+            server.serve();
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Return the value of non-negative integer option KEY in OPTIONS, or
+     * DEFLT if it is absent.
+     */
+    static int intOption(CommandArgs options, String key, int deflt) {
+        if (!options.contains(key)) {
+            return deflt;
+        }
+        try {
+            int value = Integer.parseInt(options.getFirst(key));
+            if (value < 0) {
+                throw Utils.error("bad value for %s", key);
+            }
+            return value;
+        } catch (NumberFormatException excp) {
+            throw Utils.error("bad value for %s", key);
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+package tablut;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * The suite of all JUnit tests for the SessionServer and LoadGenerator
+ * classes.
+ *
+ * @author IanTien
+ */
+public class SessionServerTest {
+
+    /**
+     * Check that concurrent sessions play separate games: each session
+     * checks every reply against its own copy of its board.
+     */
+    @Test
+    public void testSessions() throws IOException {
+        try (SessionServer server = new SessionServer(0, 1, 1 << 10, 0)) {
+            server.start();
+            LoadGenerator load = new LoadGenerator(server.port(), 4, 3, 5, 0);
+            long[] times = load.run();
+            assertEquals(12, times.length);
+            for (int i = 0; i < times.length; i += 1) {
+                assertTrue(times[i] > 0);
+                assertTrue(i == 0 || times[i - 1] <= times[i]);
+            }
+        }
+    }
+
+    /**
+     * Check that sessions refuse the commands that read the server's
+     * files or search outside the shared pool, and accept their harmless
+     * forms.
+     */
+    @Test
+    public void testRestricted() throws IOException {
+        try (SessionServer server = new SessionServer(0, 1, 1 << 10, 0);
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                                        server.port())) {
+            server.start();
+            socket.setSoTimeout(10000);
+            BufferedReader in =
+                new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintStream out =
+                new PrintStream(socket.getOutputStream(), true,
+                                StandardCharsets.UTF_8);
+            assertEquals(SessionServer.BANNER, in.readLine());
+            String[] refused = {
+                "weights w.properties", "book b.txt", "tablebase t.bin",
+                "ponder on", "threads 2"
+            };
+            for (String cmnd : refused) {
+                out.println(cmnd);
+                assertTrue(cmnd, nextLine(in).endsWith("not allowed in"
+                                                       + " this session"));
+            }
+            out.println("threads 1");
+            out.println("ponder off");
+            out.println("book off");
+            out.println("tablebase off");
+            out.println("ttstats");
+            assertTrue(nextLine(in).contains("Table: "));
+            out.println("quit");
+        }
+    }
+
+    /**
+     * Return the next non-empty line from IN.
+     */
+    private static String nextLine(BufferedReader in) throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+            assertNotNull("connection closed", line);
+        } while (line.isEmpty());
+        return line;
+    }
+
+    /**
+     * Check nearest-rank percentiles.
+     */
+    @Test
+    public void testPercentile() {
+        long[] times = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        assertEquals(5, LoadGenerator.percentile(times, 50));
+        assertEquals(9, LoadGenerator.percentile(times, 90));
+        assertEquals(10, LoadGenerator.percentile(times, 99));
+        assertEquals(1, LoadGenerator.percentile(times, 0));
+        assertEquals(7, LoadGenerator.percentile(new long[] { 7 }, 99.9));
+    }
+
+}
@@ -0,0 +1,280 @@
+package tablut;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static tablut.Piece.*;
+import static tablut.Square.NUM_SQUARES;
+
+/**
+ * A read-only endgame tablebase: the outcome with best play of every
+ * position with at most pieces() pieces, counting the king.  The
+ * tablebase is a binary file (built by TablebaseBuilder) that, like an
+ * OpeningBook, is memory-mapped rather than read, so a probe is a single
+ * array access.
+ *
+ * <p>The value of a position is the number of moves (plies) left in the
+ * game when both sides play their best, the winner as quickly and the
+ * loser as slowly as possible.  Since the winner makes the last move, an
+ * odd value means the side to move wins and an even one that it loses.
+ * DRAW means that neither side can force a win.  Values ignore the move
+ * limit and the rule against repeated positions.
+ *
+ * <p>Positions are grouped by material into tables, one for each number
+ * W of white pieces other than the king and B of black pieces.  Table
+ * (W, B) holds one unsigned byte per index (see index), DRAW for the
+ * indices of positions that cannot arise.  The file holds a header of
+ * two ints, MAGIC and pieces(), followed by the tables in increasing
+ * order of W + B, and of W for equal sums.  All values are big-endian.
+ *
+ * @author IanTien
+ */
+final class Tablebase {
+
+    /**
+     * The first int of every tablebase file.
+     */
+    static final int MAGIC = 0x54544231;
+    /**
+     * The most pieces, counting the king, a tablebase may cover.
+     */
+    static final int MAX_PIECES = 4;
+    /**
+     * The value of drawn positions.
+     */
+    static final int DRAW = 255;
+    /**
+     * The result of probe for positions not covered.
+     */
+    static final int ABSENT = -1;
+    /**
+     * The name of the resource holding the default tablebase.
+     */
+    static final String DEFAULT_RESOURCE = "endgame.tb";
+    /**
+     * The size in bytes of the header.
+     */
+    private static final int HEADER = 8;
+    /**
+     * BINOMIAL[n][k] is the number of ways to choose k of n things.
+     */
+    private static final long[][] BINOMIAL =
+        new long[NUM_SQUARES + 1][MAX_PIECES];
+    /**
+     * Each thread's buffers for the white and black squares of the
+     * positions it probes, so that probes allocate nothing.
+     */
+    private static final ThreadLocal<int[][]> SQUARES =
+        ThreadLocal.withInitial(() -> new int[2][MAX_PIECES]);
+
+    static {
+        for (int n = 0; n <= NUM_SQUARES; n += 1) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k < MAX_PIECES && k <= n; k += 1) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    /**
+     * True iff the default tablebase has been looked for.
+     */
+    private static boolean _defaultLoaded;
+    /**
+     * The default tablebase, or null if there is none.
+     */
+    private static Tablebase _defaultTablebase;
+
+    /**
+     * The mapped contents of the tablebase file.
+     */
+    private final MappedByteBuffer _data;
+    /**
+     * The most pieces covered, counting the king.
+     */
+    private final int _pieces;
+    /**
+     * _offsets[w][b] is the position in the file of table (w, b).
+     */
+    private final int[][] _offsets;
+
+    /**
+     * The tablebase in the file named NAME.
+     */
+    Tablebase(String name) throws IOException {
+        this(Paths.get(name));
+    }
+
+    /**
+     * The tablebase in the file at PATH.
+     */
+    Tablebase(Path path) throws IOException {
+        try (FileChannel channel =
+             FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER
+                || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("not a tablebase: " + path);
+            }
+            _data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                channel.size());
+        }
+        _pieces = _data.getInt(4);
+        if (_data.getInt(0) != MAGIC || _pieces < 1
+            || _pieces > MAX_PIECES
+            || HEADER + fileSize(_pieces) != _data.capacity()) {
+            throw new IOException("not a tablebase: " + path);
+        }
+        _offsets = new int[_pieces][_pieces];
+        long offset = HEADER;
+        for (int n = 0; n < _pieces; n += 1) {
+            for (int w = 0; w <= n; w += 1) {
+                _offsets[w][n - w] = (int) offset;
+                offset += size(w, n - w);
+            }
+        }
+    }
+
+    /**
+     * Return the default tablebase, from the file DEFAULT_RESOURCE
+     * alongside this class, or null if there is no such file.  As for
+     * OpeningBook.defaultBook, the file is mapped once and shared.
+     */
+    static synchronized Tablebase defaultTablebase() {
+        if (!_defaultLoaded) {
+            _defaultLoaded = true;
+            URL url = Tablebase.class.getResource(DEFAULT_RESOURCE);
+            if (url != null && url.getProtocol().equals("file")) {
+                try {
+                    _defaultTablebase = new Tablebase(Paths.get(url.toURI()));
+                } catch (IOException | URISyntaxException excp) {
+                    /* Ignore: there is no usable default tablebase. */
+                }
+            }
+        }
+        return _defaultTablebase;
+    }
+
+    /**
+     * Return the most pieces, counting the king, of the positions I
+     * cover.
+     */
+    int pieces() {
+        return _pieces;
+    }
+
+    /**
+     * Return true iff I hold the value of BOARD, which must have a king.
+     * Takes constant time.
+     */
+    boolean covers(Board board) {
+        return board.pieceCount(WHITE) + board.pieceCount(BLACK) < _pieces;
+    }
+
+    /**
+     * Return the value of BOARD (see the class comment), or ABSENT if I
+     * do not cover it.
+     */
+    int probe(Board board) {
+        if (!covers(board)) {
+            return ABSENT;
+        }
+        int[][] squares = SQUARES.get();
+        int[] whites = squares[0], blacks = squares[1];
+        int w = board.squares(WHITE, whites), b = board.squares(BLACK, blacks);
+        long index = index(board.turn(), board.kingPosition().index(),
+                           whites, w, blacks, b);
+        return _data.get(_offsets[w][b] + (int) index) & 0xff;
+    }
+
+    /**
+     * Return true iff VALUE, from probe, means that the side to move
+     * wins.
+     */
+    static boolean isWin(int value) {
+        return value != DRAW && value % 2 == 1;
+    }
+
+    /**
+     * Return true iff VALUE, from probe, means that the side to move
+     * loses.
+     */
+    static boolean isLoss(int value) {
+        return value != DRAW && value % 2 == 0;
+    }
+
+    /**
+     * Return the number of indices of table (W, B).
+     */
+    static long size(int w, int b) {
+        return 2L * NUM_SQUARES * BINOMIAL[NUM_SQUARES][w]
+            * BINOMIAL[NUM_SQUARES][b];
+    }
+
+    /**
+     * Return the total size in bytes of the tables of a tablebase
+     * covering up to PIECES pieces.
+     */
+    static long fileSize(int pieces) {
+        long total = 0;
+        for (int n = 0; n < pieces; n += 1) {
+            for (int w = 0; w <= n; w += 1) {
+                total += size(w, n - w);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Return the index in table (W, B) of the position with TURN to move,
+     * the king on the square with index KING, white pieces on the W
+     * squares with indices WHITES[0 .. W-1], and black pieces on the B
+     * squares with indices BLACKS[0 .. B-1], each in increasing order.
+     */
+    static long index(Piece turn, int king, int[] whites, int w,
+                      int[] blacks, int b) {
+        long index = (turn == WHITE ? 0 : NUM_SQUARES) + king;
+        index = index * BINOMIAL[NUM_SQUARES][w] + rank(whites, w);
+        return index * BINOMIAL[NUM_SQUARES][b] + rank(blacks, b);
+    }
+
+    /**
+     * Return the rank among all sets of N squares of the set with indices
+     * SQUARES[0 .. N-1], in increasing order.
+     */
+    static long rank(int[] squares, int n) {
+        long rank = 0;
+        for (int i = 0; i < n; i += 1) {
+            rank += BINOMIAL[squares[i]][i + 1];
+        }
+        return rank;
+    }
+
+    /**
+     * Store in SQUARES[0 .. N-1], in increasing order, the indices of the
+     * set of N squares whose rank is RANK.  The inverse of rank.
+     */
+    static void unrank(long rank, int n, int[] squares) {
+        int s = NUM_SQUARES;
+        for (int i = n - 1; i >= 0; i -= 1) {
+            do {
+                s -= 1;
+            } while (BINOMIAL[s][i + 1] > rank);
+            squares[i] = s;
+            rank -= BINOMIAL[s][i + 1];
+        }
+    }
+
+    /**
+     * Return the number of sets of K squares.
+     */
+    static long combinations(int k) {
+        return BINOMIAL[NUM_SQUARES][k];
+    }
+
+}
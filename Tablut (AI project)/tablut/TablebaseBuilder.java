@@ -0,0 +1,459 @@
+package tablut;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static tablut.Piece.*;
+import static tablut.Square.*;
+import static tablut.BitBoard.STEP;
+
+/**
+ * Builds an endgame tablebase (see Tablebase) by retrograde analysis.
+ * Usage: java tablut.TablebaseBuilder FILE [PIECES].  The tablebase
+ * covers all positions of up to PIECES pieces (default 3, at most
+ * Tablebase.MAX_PIECES), counting the king.  Three pieces take seconds
+ * and two megabytes; four take minutes and about 110 megabytes.
+ *
+ * <p>Tables are solved in order of increasing material, so that the
+ * values of the positions reached by captures are known.  Within a
+ * table, the positions in which the game is over and the values of
+ * capturing moves are found first, by making moves on a Board.  Then,
+ * for n = 0, 1, ..., the positions whose value is n are visited, and
+ * their predecessors found by un-making non-capturing moves: a
+ * predecessor of a lost position is won in n + 1, and one all of whose
+ * moves lead to won positions is lost in one more than the longest of
+ * them.  Positions never decided are drawn.  All rules, capture rules in
+ * particular, are those of Board.
+ *
+ * @author IanTien
+ */
+public class TablebaseBuilder {
+
+    /**
+     * The greatest value that can be recorded.
+     */
+    private static final int MAX_VALUE = 253;
+    /**
+     * Working value of indices that denote no reachable position.
+     */
+    private static final int INVALID = 254;
+    /**
+     * Index of the throne square.
+     */
+    private static final int THRONE_INDEX = Board.THRONE.index();
+
+    /**
+     * The most pieces covered, counting the king.
+     */
+    private final int _pieces;
+    /**
+     * _tables[w][b] holds the values of table (w, b), once solved.
+     */
+    private final byte[][][] _tables;
+    /**
+     * Board holding the position being examined.
+     */
+    private final Board _board = new Board();
+    /**
+     * Buffer for the legal moves of _board.
+     */
+    private final IntMoveList _moves = new IntMoveList();
+    /**
+     * The material of the table being solved.
+     */
+    private int _white, _black;
+    /**
+     * The values of the table being solved: as in Tablebase when
+     * decided, otherwise a tentative win found through a capture, DRAW,
+     * or INVALID.  Unsigned.
+     */
+    private byte[] _values;
+    /**
+     * _counts[i] is the number of non-capturing moves from the position
+     * with index i whose values are not yet known to be wins for the
+     * opponent, plus the number of captures that lead to draws.
+     */
+    private byte[] _counts;
+    /**
+     * _longest[i] is the greatest value of the opponent's wins known to
+     * follow the moves from the position with index i.
+     */
+    private byte[] _longest;
+    /**
+     * The position last decoded by setUp: the side to move, the index of
+     * the king's square, and those of the white and black pieces' squares
+     * in increasing order.
+     */
+    private Piece _turn;
+    /**
+     * The index of the king's square in the position last decoded.
+     */
+    private int _king;
+    /**
+     * The indices of the pieces' squares in the position last decoded.
+     */
+    private final int[] _whites = new int[Tablebase.MAX_PIECES],
+        _blacks = new int[Tablebase.MAX_PIECES];
+    /**
+     * Scratch space for the squares of a side after one of them moves.
+     */
+    private final int[] _moved = new int[Tablebase.MAX_PIECES];
+    /**
+     * True iff the counts of each table are printed as it is solved.
+     */
+    private boolean _verbose;
+
+    /**
+     * A builder for a tablebase of up to PIECES pieces, counting the
+     * king.
+     */
+    TablebaseBuilder(int pieces) {
+        if (pieces < 1 || pieces > Tablebase.MAX_PIECES) {
+            throw Utils.error("tablebases cover 1 to %d pieces",
+                              Tablebase.MAX_PIECES);
+        }
+        _pieces = pieces;
+        _tables = new byte[pieces][pieces][];
+    }
+
+    /**
+     * Print the counts of wins, losses, and draws of each table on the
+     * standard error as it is solved iff VERBOSE.  Initially false.
+     */
+    void setVerbose(boolean verbose) {
+        _verbose = verbose;
+    }
+
+    /**
+     * Solve all tables.
+     */
+    void build() {
+        for (int n = 0; n < _pieces; n += 1) {
+            for (int w = 0; w <= n; w += 1) {
+                solve(w, n - w);
+            }
+        }
+    }
+
+    /**
+     * Return the values of table (W, B), which must have been solved.
+     */
+    byte[] table(int w, int b) {
+        return _tables[w][b];
+    }
+
+    /**
+     * Solve table (W, B), assuming that all tables of less material have
+     * been.
+     */
+    void solve(int w, int b) {
+        _white = w;
+        _black = b;
+        int size = (int) Tablebase.size(w, b);
+        _values = new byte[size];
+        _counts = new byte[size];
+        _longest = new byte[size];
+        int pending = 0;
+        for (int i = 0; i < size; i += 1) {
+            pending = Math.max(pending, initialize(i));
+        }
+        for (int n = 0; n <= pending; n += 1) {
+            for (int i = 0; i < size; i += 1) {
+                if ((_values[i] & 0xff) == n) {
+                    setUp(i);
+                    pending = Math.max(pending, retract(n));
+                }
+            }
+        }
+        int wins, losses, draws;
+        wins = losses = draws = 0;
+        for (int i = 0; i < size; i += 1) {
+            int value = _values[i] & 0xff;
+            if (value == INVALID) {
+                _values[i] = (byte) Tablebase.DRAW;
+            } else if (value == Tablebase.DRAW) {
+                draws += 1;
+            } else if (Tablebase.isWin(value)) {
+                wins += 1;
+            } else {
+                losses += 1;
+            }
+        }
+        if (_verbose) {
+            System.err.printf("%d white, %d black: %d wins, %d losses,"
+                              + " %d draws, longest %d%n", w, b, wins,
+                              losses, draws, pending);
+        }
+        _tables[w][b] = _values;
+        _values = _counts = _longest = null;
+    }
+
+    /**
+     * Set the initial value and move count of the position with index
+     * I, and return its value if it is a decided or tentative one, and 0
+     * otherwise.  Games that are over are lost (for the side to move) in
+     * 0; capturing moves are made on the board and their values looked
+     * up in the smaller tables.
+     */
+    private int initialize(int i) {
+        if (!setUp(i)) {
+            _values[i] = (byte) INVALID;
+            return 0;
+        }
+        if (sq(_king).isEdge()) {
+            _values[i] = (byte) (_turn == BLACK ? 0 : INVALID);
+            return 0;
+        }
+        if (!_board.hasMove(_turn)) {
+            _values[i] = 0;
+            return 0;
+        }
+        int count, win, longest;
+        count = longest = 0;
+        win = Tablebase.DRAW;
+        _board.legalMoves(_turn, _moves);
+        for (int k = 0; k < _moves.size(); k += 1) {
+            int mv = _moves.get(k);
+            if (!Move.isCapture(mv)) {
+                count += 1;
+                continue;
+            }
+            _board.makeMove(mv);
+            int value = _board.winner() != null ? 0 : lookup(_board);
+            _board.undo();
+            if (value == Tablebase.DRAW) {
+                count += 1;
+            } else if (Tablebase.isLoss(value)) {
+                win = Math.min(win, value + 1);
+            } else {
+                longest = Math.max(longest, value);
+            }
+        }
+        _counts[i] = (byte) count;
+        _longest[i] = (byte) longest;
+        if (win != Tablebase.DRAW) {
+            return decide(i, win);
+        } else if (count == 0) {
+            return decide(i, longest + 1);
+        }
+        _values[i] = (byte) Tablebase.DRAW;
+        return 0;
+    }
+
+    /**
+     * Record VALUE as the value, possibly tentative, of the position with
+     * index I, and return VALUE.
+     */
+    private int decide(int i, int value) {
+        if (value > MAX_VALUE) {
+            throw Utils.error("game too long for tablebase");
+        }
+        _values[i] = (byte) value;
+        return value;
+    }
+
+    /**
+     * Return the value of the position on BOARD, which is covered by a
+     * table of less material than the one being solved.
+     */
+    private int lookup(Board board) {
+        int[] whites = new int[Tablebase.MAX_PIECES],
+            blacks = new int[Tablebase.MAX_PIECES];
+        int w = board.squares(WHITE, whites), b = board.squares(BLACK, blacks);
+        long index = Tablebase.index(board.turn(),
+                                     board.kingPosition().index(),
+                                     whites, w, blacks, b);
+        return _tables[w][b][(int) index] & 0xff;
+    }
+
+    /**
+     * Decode the index I of the table being solved into _turn, _king,
+     * _whites, and _blacks, and set up _board accordingly.  Return false
+     * (leaving _board unchanged) if I denotes no position: if two pieces
+     * share a square, or a piece other than the king is on the throne.
+     */
+    private boolean setUp(long i) {
+        long blackSets = Tablebase.combinations(_black),
+            whiteSets = Tablebase.combinations(_white);
+        Tablebase.unrank(i % blackSets, _black, _blacks);
+        i /= blackSets;
+        Tablebase.unrank(i % whiteSets, _white, _whites);
+        i /= whiteSets;
+        _king = (int) (i % NUM_SQUARES);
+        _turn = i < NUM_SQUARES ? WHITE : BLACK;
+        for (int k = 0; k < _white; k += 1) {
+            if (_whites[k] == _king || _whites[k] == THRONE_INDEX) {
+                return false;
+            }
+        }
+        for (int k = 0; k < _black; k += 1) {
+            if (_blacks[k] == _king || _blacks[k] == THRONE_INDEX) {
+                return false;
+            }
+            for (int j = 0; j < _white; j += 1) {
+                if (_whites[j] == _blacks[k]) {
+                    return false;
+                }
+            }
+        }
+        _board.clear(_turn);
+        _board.put(KING, sq(_king));
+        for (int k = 0; k < _white; k += 1) {
+            _board.put(WHITE, sq(_whites[k]));
+        }
+        for (int k = 0; k < _black; k += 1) {
+            _board.put(BLACK, sq(_blacks[k]));
+        }
+        return true;
+    }
+
+    /**
+     * Update the positions from which a non-capturing move leads to the
+     * position last set up, whose value is N, and return the greatest
+     * value newly decided (0 if none).
+     */
+    private int retract(int n) {
+        Piece mover = _turn.opponent();
+        int pending = 0;
+        if (mover == WHITE) {
+            pending = retract(n, KING, 0);
+            for (int k = 0; k < _white; k += 1) {
+                pending = Math.max(pending, retract(n, WHITE, k));
+            }
+        } else {
+            for (int k = 0; k < _black; k += 1) {
+                pending = Math.max(pending, retract(n, BLACK, k));
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Update the positions from which the K-th PIECE (the king if PIECE
+     * is KING) moved, without capturing, to give the position last set
+     * up, whose value is N, and return the greatest value newly decided
+     * (0 if none).  Since captures depend only on the position after a
+     * move, there are none if this piece would capture on arriving where
+     * it is.
+     */
+    private int retract(int n, Piece piece, int k) {
+        int to = piece == KING ? _king
+            : piece == WHITE ? _whites[k] : _blacks[k];
+        if (_board.captureMask(to) != 0) {
+            return 0;
+        }
+        int pending = 0;
+        for (int d = 0; d < 4; d += 1) {
+            for (int from = STEP[to][d];
+                 from != -1 && _board.get(sq(from)) == EMPTY
+                     && (piece == KING || from != THRONE_INDEX);
+                 from = STEP[from][d]) {
+                pending = Math.max(pending,
+                                   update(predecessor(piece, k, from), n));
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Return the index of the position before the K-th PIECE (the king if
+     * PIECE is KING) of the position last set up moved to it from the
+     * square with index FROM.
+     */
+    private int predecessor(Piece piece, int k, int from) {
+        Piece mover = _turn.opponent();
+        if (piece == KING) {
+            return (int) Tablebase.index(mover, from, _whites, _white,
+                                         _blacks, _black);
+        } else if (piece == WHITE) {
+            moved(_whites, _white, k, from);
+            return (int) Tablebase.index(mover, _king, _moved, _white,
+                                         _blacks, _black);
+        } else {
+            moved(_blacks, _black, k, from);
+            return (int) Tablebase.index(mover, _king, _whites, _white,
+                                         _moved, _black);
+        }
+    }
+
+    /**
+     * Store in _moved, in increasing order, the N squares with indices
+     * SQUARES[0 .. N-1], except with SQUARES[K] replaced by FROM.
+     */
+    private void moved(int[] squares, int n, int k, int from) {
+        int j = 0;
+        for (int i = 0; i < n; i += 1) {
+            if (i != k) {
+                _moved[j] = squares[i];
+                j += 1;
+            }
+        }
+        for (; j > 0 && _moved[j - 1] > from; j -= 1) {
+            _moved[j] = _moved[j - 1];
+        }
+        _moved[j] = from;
+    }
+
+    /**
+     * Update the position with index I, one of whose non-capturing moves
+     * leads to a position whose value is N, and return its value if this
+     * decides it, or 0 otherwise.
+     */
+    private int update(int i, int n) {
+        int value = _values[i] & 0xff;
+        if (value <= n || value == INVALID) {
+            return 0;
+        }
+        if (Tablebase.isLoss(n)) {
+            return value > n + 1 ? decide(i, n + 1) : 0;
+        }
+        _longest[i] = (byte) Math.max(_longest[i] & 0xff, n);
+        _counts[i] -= 1;
+        if (_counts[i] == 0 && value == Tablebase.DRAW) {
+            return decide(i, (_longest[i] & 0xff) + 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Write the tablebase, which must have been built, to the file named
+     * NAME.
+     */
+    void write(String name) throws IOException {
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(name)))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(_pieces);
+            for (int n = 0; n < _pieces; n += 1) {
+                for (int w = 0; w <= n; w += 1) {
+                    out.write(_tables[w][n - w]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the tablebase described by ARGS (see the class comment).
+     */
+    public static void main(String... args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java tablut.TablebaseBuilder FILE"
+                               + " [PIECES]");
+            System.exit(1);
+        }
+        try {
+            int pieces = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+            TablebaseBuilder builder = new TablebaseBuilder(pieces);
+            builder.setVerbose(true);
+            builder.build();
+            builder.write(args[0]);
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package tablut;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static tablut.Piece.*;
+import static tablut.Square.*;
+
+/**
+ * The suite of all JUnit tests for the Tablebase and TablebaseBuilder
+ * classes.
+ *
+ * @author IanTien
+ */
+public class TablebaseTest {
+
+    /**
+     * A three-piece tablebase, built when first needed.
+     */
+    private static Tablebase _tablebase;
+
+    /**
+     * Return a three-piece tablebase, building it if needed.
+     */
+    private static Tablebase tablebase() throws IOException {
+        if (_tablebase == null) {
+            TablebaseBuilder builder = new TablebaseBuilder(3);
+            builder.build();
+            File file = File.createTempFile("tablut", ".tb");
+            file.deleteOnExit();
+            builder.write(file.getPath());
+            _tablebase = new Tablebase(file.getPath());
+        }
+        return _tablebase;
+    }
+
+    /**
+     * Set up BOARD with TURN to move, the king on KING, and the white
+     * and black pieces on the squares in WHITES and BLACKS.
+     */
+    private static void setUp(Board board, Piece turn, String king,
+                              String[] whites, String[] blacks) {
+        board.clear(turn);
+        board.put(KING, sq(king));
+        for (String s : whites) {
+            board.put(WHITE, sq(s));
+        }
+        for (String s : blacks) {
+            board.put(BLACK, sq(s));
+        }
+    }
+
+    /**
+     * Check that set ranks are consecutive and invertible.
+     */
+    @Test
+    public void testRank() {
+        int[] back = new int[3];
+        long expected = 0;
+        for (int a = 0; a < NUM_SQUARES; a += 1) {
+            for (int b = a + 1; b < NUM_SQUARES; b += 1) {
+                for (int c = b + 1; c < NUM_SQUARES; c += 1) {
+                    long rank = Tablebase.rank(new int[] { a, b, c }, 3);
+                    assertTrue(rank < Tablebase.combinations(3));
+                    Tablebase.unrank(rank, 3, back);
+                    assertEquals(a, back[0]);
+                    assertEquals(b, back[1]);
+                    assertEquals(c, back[2]);
+                    expected += 1;
+                }
+            }
+        }
+        assertEquals(Tablebase.combinations(3), expected);
+    }
+
+    /**
+     * Check the values of some simple positions.
+     */
+    @Test
+    public void testValues() throws IOException {
+        Tablebase tablebase = tablebase();
+        Board board = new Board();
+        assertEquals(3, tablebase.pieces());
+        assertFalse(tablebase.covers(board));
+        assertEquals(Tablebase.ABSENT, tablebase.probe(board));
+        setUp(board, WHITE, "c3", new String[0], new String[0]);
+        assertEquals(1, tablebase.probe(board));
+        setUp(board, BLACK, "c3", new String[0], new String[] { "c7" });
+        assertEquals(2, tablebase.probe(board));
+        setUp(board, BLACK, "c5", new String[0],
+              new String[] { "c4", "c7" });
+        assertEquals(1, tablebase.probe(board));
+        assertTrue(Tablebase.isWin(1));
+        assertTrue(Tablebase.isLoss(2));
+        assertFalse(Tablebase.isWin(Tablebase.DRAW));
+        assertFalse(Tablebase.isLoss(Tablebase.DRAW));
+    }
+
+    /**
+     * Check that in randomly chosen positions, the value of each position
+     * follows from those of its successors, found by making moves on a
+     * Board.
+     */
+    @Test
+    public void testConsistent() throws IOException {
+        Tablebase tablebase = tablebase();
+        Random rand = new Random(61);
+        Board board = new Board();
+        for (int trial = 0; trial < 2000; trial += 1) {
+            randomPosition(board, rand, rand.nextInt(3));
+            int value = tablebase.probe(board);
+            int win = Tablebase.DRAW, longest = -1;
+            boolean draw = false;
+            for (Move mv : board.legalMoves(board.turn())) {
+                board.makeMove(mv);
+                int next = board.winner() != null ? 0
+                    : tablebase.probe(board);
+                board.undo();
+                if (next == Tablebase.DRAW) {
+                    draw = true;
+                } else if (Tablebase.isLoss(next)) {
+                    win = Math.min(win, next + 1);
+                } else {
+                    longest = Math.max(longest, next);
+                }
+            }
+            int expected = win != Tablebase.DRAW ? win
+                : draw ? Tablebase.DRAW : longest + 1;
+            assertEquals(board.toString(), expected, value);
+        }
+    }
+
+    /**
+     * Check that an AI using the tablebase moves as it directs.
+     */
+    @Test
+    public void testAI() throws IOException {
+        Controller controller =
+            new Controller(new NullView(), null, new NullReporter(),
+                           new AI(), new AI(), false);
+        controller.setTablebase(tablebase());
+        Board board = controller.board();
+        Random rand = new Random(17);
+        for (int trial = 0; trial < 20; trial += 1) {
+            randomPosition(board, rand, 2);
+            int value = tablebase().probe(board);
+            if (value == Tablebase.DRAW) {
+                continue;
+            }
+            AI ai = new AI(board.turn(), controller);
+            Move mv = ai.findMove(4);
+            board.makeMove(mv);
+            assertTrue(board.winner() != null && value == 1
+                       || tablebase().probe(board) == value - 1);
+            assertTrue(ai.nodes() <= Board.MAX_MOVES + 1);
+        }
+    }
+
+    /**
+     * Set up on BOARD a random position, not yet won, with the king,
+     * WHITES other white pieces, and 2 - WHITES black pieces, choosing
+     * with RAND.
+     */
+    private static void randomPosition(Board board, Random rand,
+                                       int whites) {
+        while (true) {
+            board.clear(rand.nextBoolean() ? WHITE : BLACK);
+            List<Square> squares = new ArrayList<>(SQUARE_LIST);
+            Collections.shuffle(squares, rand);
+            squares.remove(Board.THRONE);
+            Square king = rand.nextInt(4) == 0 ? Board.THRONE
+                : squares.remove(0);
+            board.put(KING, king);
+            for (int k = 0; k < 2; k += 1) {
+                board.put(k < whites ? WHITE : BLACK, squares.remove(0));
+            }
+            if (!king.isEdge() && board.hasMove(board.turn())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Check that a file that is not a tablebase is rejected.
+     */
+    @Test(expected = IOException.class)
+    public void testBadFile() throws IOException {
+        File file = File.createTempFile("tablut", ".tb");
+        file.deleteOnExit();
+        new Tablebase(file.getPath());
+    }
+
+    /**
+     * Check that the tablebase command reads a file whose path is not in
+     * lower case.
+     */
+    @Test
+    public void testTablebaseCommand() throws IOException {
+        File dir = Files.createTempDirectory("Tablut").toFile();
+        File file = new File(dir, "Endgame.tb");
+        try {
+            TablebaseBuilder builder = new TablebaseBuilder(2);
+            builder.build();
+            builder.write(file.getPath());
+            Controller controller =
+                EvaluatorTest.runCommands("tablebase " + file.getPath());
+            assertEquals(2, controller.tablebase().pieces());
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package tablut;
 
+import java.io.PrintStream;
+
 /**
  * A Reporter that uses the standard output for messaeges.
  *
@@ -7,20 +9,47 @@ package tablut;
  */
 class TextReporter implements Reporter {
 
+    /**
+     * Destinations of notes and moves, and of errors.
+     */
+    private final PrintStream _out, _err;
+
+    /**
+     * A reporter that writes to the standard output and error.
+     */
+    TextReporter() {
+        this(System.out, System.err);
+    }
+
+    /**
+     * A reporter that writes notes and moves to OUT and errors to ERR.
+     */
+    TextReporter(PrintStream out, PrintStream err) {
+        _out = out;
+        _err = err;
+    }
+
     @Override
     public void reportError(String fmt, Object... args) {
-        System.err.printf(fmt, args);
-        System.err.println();
+        _err.printf(fmt, args);
+        _err.println();
     }
 
     @Override
     public void reportNote(String fmt, Object... args) {
-        System.out.printf("* " + fmt, args);
-        System.out.println();
+        _out.printf("* " + fmt, args);
+        _out.println();
     }
 
     @Override
     public void reportMove(Move move) {
-        System.out.printf("* %s%n", move);
+        _out.printf("* %s%n", move);
+    }
+
+    @Override
+    public void reportStats(SearchStats stats) {
+        for (String line : stats.toString().split("\\R")) {
+            _out.printf("* %s%n", line);
+        }
     }
 }
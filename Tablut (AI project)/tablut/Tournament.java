@@ -0,0 +1,334 @@
+package tablut;
+
+import ucb.util.CommandArgs;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static tablut.Piece.*;
+
+/**
+ * Plays many AI-vs-AI games without display, in parallel, and reports
+ * the results as CSV.  Usage:
+ *
+ * <pre>
+ *   java tablut.Tournament [--games=N] [--threads=T] [--seed=S]
+ *       [--depth=D] [--white-depth=D] [--black-depth=D] [--movetime=MS]
+ *       [--limit=M] [--white=WEIGHTS] [--black=WEIGHTS]
+ *       [--quiesce=SIDES] [--out=FILE]
+ * </pre>
+ *
+ * Plays N games (default 100) on T threads (default: the number of
+ * processors).  Game G is seeded with S + G (S defaults to 0), so each
+ * game is reproducible whatever the number of threads.  Each search goes
+ * at most D levels deep (default 4; --white-depth and --black-depth
+ * override it for one side) and, if MS is given, stops after about MS
+ * milliseconds.  SIDES (both, white, black, or none; default both) are
+ * the sides that use quiescence search.  M, if given, is the move limit
+ * of each game.  WEIGHTS are properties files of evaluation weights for
+ * each side (see Evaluator); by default, both sides use the default
+ * weights.
+ *
+ * <p>One CSV line per game goes to FILE (default: the standard output),
+ * followed on the standard output (after a blank line, if FILE is also
+ * the standard output) by a CSV summary: win rates with 95%
+ * confidence intervals, average moves per game and time per move, and
+ * positions searched per second.
+ *
+ * @author IanTien
+ */
+public class Tournament {
+
+    /**
+     * The value of z for a 95% confidence interval.
+     */
+    private static final double Z95 = 1.96;
+
+    /**
+     * The outcome of one game.
+     */
+    private static class Result {
+        /**
+         * The game number.
+         */
+        private int _game;
+        /**
+         * The seed of the game.
+         */
+        private long _seed;
+        /**
+         * The winning side.
+         */
+        private Piece _winner;
+        /**
+         * The number of moves made.
+         */
+        private int _moves;
+        /**
+         * Total nanoseconds spent searching.
+         */
+        private long _searchTime;
+        /**
+         * Total positions searched.
+         */
+        private long _nodes;
+    }
+
+    /**
+     * Number of games to play.
+     */
+    private final int _games;
+    /**
+     * Number of games played at once.
+     */
+    private final int _threads;
+    /**
+     * Seed of game 0.
+     */
+    private final long _seed;
+    /**
+     * Maximum search depths of white and black.
+     */
+    private final int _whiteDepth, _blackDepth;
+    /**
+     * True iff white and black, respectively, use quiescence search.
+     */
+    private final boolean _whiteQuiescence, _blackQuiescence;
+    /**
+     * Approximate milliseconds per move, or 0 for no limit.
+     */
+    private final int _moveTime;
+    /**
+     * Move limit of each game, or 0 for none.
+     */
+    private final int _limit;
+    /**
+     * Evaluators for white and black.
+     */
+    private final Evaluator _white, _black;
+    /**
+     * The Controller (and so Board) used by each worker thread.
+     */
+    private final ThreadLocal<Controller> _controllers =
+        ThreadLocal.withInitial(() ->
+            new Controller(new NullView(), null, new NullReporter(),
+                           new AI(), new AI(), false));
+    /**
+     * The transposition tables of white and black used by each worker
+     * thread.  Each side has its own, since the sides' searches differ in
+     * evaluation, depth, and quiescence, and so their scores and bounds
+     * are not interchangeable.
+     */
+    private final ThreadLocal<TranspositionTable[]> _tables =
+        ThreadLocal.withInitial(() -> new TranspositionTable[] {
+            new TranspositionTable(TranspositionTable.DEFAULT_SIZE),
+            new TranspositionTable(TranspositionTable.DEFAULT_SIZE)
+        });
+
+    /**
+     * A tournament as described by OPTIONS (see the class comment).
+     */
+    Tournament(CommandArgs options) {
+        _games = intOption(options, "--games", 100);
+        _threads = intOption(options, "--threads",
+                             Runtime.getRuntime().availableProcessors());
+        _seed = intOption(options, "--seed", 0);
+        int depth = intOption(options, "--depth", 4);
+        _whiteDepth = intOption(options, "--white-depth", depth);
+        _blackDepth = intOption(options, "--black-depth", depth);
+        String quiesce = options.contains("--quiesce")
+            ? options.getFirst("--quiesce") : "both";
+        if (!quiesce.matches("both|white|black|none")) {
+            throw Utils.error("bad value for --quiesce");
+        }
+        _whiteQuiescence = quiesce.equals("both") || quiesce.equals("white");
+        _blackQuiescence = quiesce.equals("both") || quiesce.equals("black");
+        _moveTime = intOption(options, "--movetime", 0);
+        _limit = intOption(options, "--limit", 0);
+        _white = evaluatorOption(options, "--white");
+        _black = evaluatorOption(options, "--black");
+        if (_games < 1 || _threads < 1 || _whiteDepth < 1
+            || _blackDepth < 1) {
+            throw Utils.error("need at least one game, thread, and level");
+        }
+        if (_moveTime < 0) {
+            throw Utils.error("bad value for --movetime");
+        }
+    }
+
+    /**
+     * Return the value of integer option KEY in OPTIONS, or DEFLT if it
+     * is absent.
+     */
+    private static int intOption(CommandArgs options, String key,
+                                 int deflt) {
+        if (!options.contains(key)) {
+            return deflt;
+        }
+        try {
+            return Integer.parseInt(options.getFirst(key));
+        } catch (NumberFormatException excp) {
+            throw Utils.error("bad value for %s", key);
+        }
+    }
+
+    /**
+     * Return the Evaluator whose weights are in the file named by option
+     * KEY in OPTIONS, or the default Evaluator if it is absent.
+     */
+    private static Evaluator evaluatorOption(CommandArgs options,
+                                             String key) {
+        if (!options.contains(key)) {
+            return Evaluator.defaults();
+        }
+        return Evaluator.load(options.getFirst(key));
+    }
+
+    /**
+     * Play game number GAME on this thread's Controller and return its
+     * result.  Each side searches with its own transposition table,
+     * cleared at the start of the game.
+     */
+    private Result play(int game) {
+        Controller controller = _controllers.get();
+        Result result = new Result();
+        result._game = game;
+        result._seed = _seed + game;
+        controller.setSeed(result._seed);
+        controller.setMoveTime(_moveTime);
+        TranspositionTable[] tables = _tables.get();
+        for (TranspositionTable table : tables) {
+            table.clear();
+        }
+        Board board = controller.board();
+        board.init();
+        if (_limit > 0) {
+            board.setMoveLimit(_limit);
+        }
+        AI white = new AI(WHITE, controller), black = new AI(BLACK, controller);
+        white.setEvaluator(_white);
+        black.setEvaluator(_black);
+        white.setTranspositionTable(tables[0]);
+        black.setTranspositionTable(tables[1]);
+        white.setQuiescence(_whiteQuiescence);
+        black.setQuiescence(_blackQuiescence);
+        while (board.winner() == null) {
+            AI player = board.turn() == WHITE ? white : black;
+            long start = System.nanoTime();
+            Move mv =
+                player.findMove(player == white ? _whiteDepth : _blackDepth);
+            result._searchTime += System.nanoTime() - start;
+            result._nodes += player.nodes();
+            board.makeMove(mv);
+            result._moves += 1;
+        }
+        result._winner = board.winner();
+        return result;
+    }
+
+    /**
+     * Play all the games, writing one CSV line for each to GAMES and then
+     * a summary to SUMMARY.
+     */
+    void run(PrintStream games, PrintStream summary) {
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        List<Future<Result>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int g = 0; g < _games; g += 1) {
+            final int game = g;
+            futures.add(pool.submit(() -> play(game)));
+        }
+        games.println("game,seed,winner,moves,search_seconds,avg_move_ms,"
+                      + "nodes,nodes_per_sec");
+        int whiteWins, moves;
+        whiteWins = moves = 0;
+        long searchTime, nodes;
+        searchTime = nodes = 0;
+        try {
+            for (Future<Result> future : futures) {
+                Result r = future.get();
+                games.printf("%d,%d,%s,%d,%.3f,%.3f,%d,%.0f%n", r._game,
+                             r._seed, r._winner.toName(), r._moves,
+                             r._searchTime * 1e-9,
+                             r._searchTime * 1e-6 / r._moves, r._nodes,
+                             r._nodes / (r._searchTime * 1e-9));
+                whiteWins += r._winner == WHITE ? 1 : 0;
+                moves += r._moves;
+                searchTime += r._searchTime;
+                nodes += r._nodes;
+            }
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new IllegalStateException(excp);
+        } finally {
+            pool.shutdownNow();
+        }
+        games.flush();
+        if (games == summary) {
+            summary.println();
+        }
+        double wall = (System.nanoTime() - start) * 1e-9;
+        summary.println("statistic,value,ci95_low,ci95_high");
+        summary.printf("games,%d,,%n", _games);
+        rate(summary, "white_win_rate", whiteWins, _games);
+        rate(summary, "black_win_rate", _games - whiteWins, _games);
+        summary.printf("avg_moves,%.2f,,%n", (double) moves / _games);
+        summary.printf("avg_move_ms,%.3f,,%n", searchTime * 1e-6 / moves);
+        summary.printf("nodes_per_sec,%.0f,,%n", nodes / (searchTime * 1e-9));
+        summary.printf("games_per_sec,%.3f,,%n", _games / wall);
+        summary.flush();
+    }
+
+    /**
+     * Print the rate of K successes in N trials to OUT as statistic NAME,
+     * with its 95% Wilson score interval.
+     */
+    private static void rate(PrintStream out, String name, int k, int n) {
+        double p = (double) k / n, z2 = Z95 * Z95;
+        double denom = 1 + z2 / n;
+        double center = (p + z2 / (2 * n)) / denom;
+        double half = Z95 * Math.sqrt(p * (1 - p) / n + z2 / (4.0 * n * n))
+            / denom;
+        out.printf("%s,%.4f,%.4f,%.4f%n", name, p, Math.max(0, center - half),
+                   Math.min(1, center + half));
+    }
+
+    /**
+     * Run a tournament as described by ARGS (see the class comment).
+     */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--games={0,1} --threads={0,1} --seed={0,1}"
+                            + " --depth={0,1} --white-depth={0,1}"
+                            + " --black-depth={0,1} --movetime={0,1}"
+                            + " --limit={0,1} --white={0,1} --black={0,1}"
+                            + " --quiesce={0,1} --out={0,1}", args);
+        if (!options.ok()) {
+            System.err.println("Usage: java tablut.Tournament [--games=N]"
+                    + " [--threads=T] [--seed=S] [--depth=D]"
+                    + " [--white-depth=D] [--black-depth=D] [--movetime=MS]"
+                    + " [--limit=M] [--white=WEIGHTS] [--black=WEIGHTS]"
+                    + " [--quiesce=SIDES] [--out=FILE]");
+            System.exit(1);
+        }
+        try {
+            PrintStream games = System.out;
+            if (options.contains("--out")) {
+                games = new PrintStream(options.getFirst("--out"));
+            }
+            new Tournament(options).run(games, System.out);
+            if (games != System.out) {
+                games.close();
+            }
+        } catch (IllegalArgumentException | FileNotFoundException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
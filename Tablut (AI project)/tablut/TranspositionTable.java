@@ -0,0 +1,217 @@
+package tablut;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of search results keyed by Board.hashKey().  The
+ * table has a power-of-two number of slots held in parallel arrays, so
+ * probing and storing allocate nothing.  Each position hashes to a single
+ * slot; a new result replaces the old one only if the slot belongs to an
+ * earlier search or the new result was searched at least as deeply.
+ *
+ * <p>Each result is packed into a single long, and each slot holds that
+ * long together with the position's key XORed with it.  A slot torn by
+ * concurrent stores from several threads then simply fails to match its
+ * key, so the table may be shared by parallel searches without locking.
+ * The probe counters are not synchronized and are only approximate when
+ * the table is shared.
+ *
+ * @author IanTien
+ */
+final class TranspositionTable {
+
+    /**
+     * Default number of slots.
+     */
+    static final int DEFAULT_SIZE = 1 << 18;
+    /**
+     * Bound types: the stored score is exact, a lower bound on the true
+     * value, or an upper bound on it.
+     */
+    static final int EXACT = 0, LOWER = 1, UPPER = 2;
+    /**
+     * The value returned by probe for an absent position.
+     */
+    static final long ABSENT = 0;
+
+    /**
+     * Bit positions and masks of the fields of a packed entry: the score
+     * in bits 0-31, the best move's index in bits 32-45 (all ones for
+     * none), the depth plus 1 in bits 46-53 (so that no entry is ABSENT),
+     * the bound type in bits 54-55, and the generation in bits 56-63.
+     */
+    private static final int MOVE_SHIFT = 32, DEPTH_SHIFT = 46,
+        BOUND_SHIFT = 54, GENERATION_SHIFT = 56;
+    /**
+     * Masks of the move, depth, bound, and generation fields after
+     * shifting.
+     */
+    private static final int MOVE_MASK = 0x3fff, DEPTH_MASK = 0xff,
+        BOUND_MASK = 0x3, GENERATION_MASK = 0xff;
+    /**
+     * The greatest depth that can be stored.
+     */
+    private static final int MAX_DEPTH = DEPTH_MASK - 1;
+
+    /**
+     * Position keys XORed with their entries, by slot.
+     */
+    private final long[] _keys;
+    /**
+     * Packed entries, by slot.
+     */
+    private final long[] _entries;
+    /**
+     * Mask selecting a slot from a key.
+     */
+    private final int _mask;
+    /**
+     * The current search generation.
+     */
+    private int _generation;
+    /**
+     * Counts of successful and unsuccessful probes, and of probes whose
+     * result ended the search of a position.
+     */
+    private long _hits, _misses, _cutoffs;
+
+    /**
+     * A new empty table with SIZE slots, rounded down to a power of two
+     * (and at least 1).
+     */
+    TranspositionTable(int size) {
+        int n = Integer.highestOneBit(Math.max(1, size));
+        _keys = new long[n];
+        _entries = new long[n];
+        _mask = n - 1;
+    }
+
+    /**
+     * Return the number of slots.
+     */
+    int size() {
+        return _keys.length;
+    }
+
+    /**
+     * Start a new search.  Entries from earlier searches remain available
+     * but may be replaced regardless of depth.
+     */
+    void newSearch() {
+        _generation = (_generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Remove all entries and reset the counters.
+     */
+    void clear() {
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_entries, ABSENT);
+        _generation = 0;
+        _hits = _misses = _cutoffs = 0;
+    }
+
+    /**
+     * Return the entry stored for KEY, or ABSENT if it is not present.
+     */
+    long probe(long key) {
+        int slot = (int) key & _mask;
+        long entry = _entries[slot];
+        if (entry != ABSENT && (_keys[slot] ^ entry) == key) {
+            _hits += 1;
+            return entry;
+        }
+        _misses += 1;
+        return ABSENT;
+    }
+
+    /**
+     * Return the depth of ENTRY.
+     */
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT & DEPTH_MASK) - 1;
+    }
+
+    /**
+     * Return the bound type (EXACT, LOWER, or UPPER) of ENTRY.
+     */
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT & BOUND_MASK);
+    }
+
+    /**
+     * Return the score of ENTRY.
+     */
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Return the Move.index() of the best move of ENTRY, or -1.
+     */
+    static int move(long entry) {
+        int move = (int) (entry >>> MOVE_SHIFT & MOVE_MASK);
+        return move == MOVE_MASK ? -1 : move;
+    }
+
+    /**
+     * Return the generation of ENTRY.
+     */
+    private static int generation(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT & GENERATION_MASK);
+    }
+
+    /**
+     * Record that the result of a probe ended the search of a position.
+     */
+    void recordCutoff() {
+        _cutoffs += 1;
+    }
+
+    /**
+     * Store SCORE, with bound type BOUND, and the index BESTMOVE of the
+     * best move (-1 if none) for the position with KEY searched to DEPTH,
+     * unless its slot holds a deeper result from the current search.
+     */
+    void store(long key, int depth, int bound, int score, int bestMove) {
+        int slot = (int) key & _mask;
+        long old = _entries[slot];
+        boolean same = (_keys[slot] ^ old) == key;
+        if (old != ABSENT && generation(old) == _generation
+            && depth(old) > depth) {
+            return;
+        }
+        if (bestMove == -1 && old != ABSENT && same) {
+            bestMove = move(old);
+        }
+        long entry = (score & 0xffffffffL)
+            | (long) (bestMove & MOVE_MASK) << MOVE_SHIFT
+            | (long) (Math.min(depth, MAX_DEPTH) + 1) << DEPTH_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) _generation << GENERATION_SHIFT;
+        _entries[slot] = entry;
+        _keys[slot] = key ^ entry;
+    }
+
+    /**
+     * Return the number of successful probes.
+     */
+    long hits() {
+        return _hits;
+    }
+
+    /**
+     * Return the number of unsuccessful probes.
+     */
+    long misses() {
+        return _misses;
+    }
+
+    /**
+     * Return the number of probes that ended the search of a position.
+     */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+}
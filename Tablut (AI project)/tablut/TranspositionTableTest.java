@@ -0,0 +1,74 @@
+package tablut;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static tablut.TranspositionTable.*;
+
+/**
+ * The suite of all JUnit tests for the TranspositionTable class.
+ *
+ * @author IanTien
+ */
+public class TranspositionTableTest {
+
+    /**
+     * Check storing and finding entries.
+     */
+    @Test
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(1000);
+        assertEquals(512, table.size());
+        assertEquals(ABSENT, table.probe(12345L));
+        table.store(12345L, 3, LOWER, -17, 42);
+        long entry = table.probe(12345L);
+        assertNotEquals(ABSENT, entry);
+        assertEquals(3, depth(entry));
+        assertEquals(LOWER, bound(entry));
+        assertEquals(-17, score(entry));
+        assertEquals(42, move(entry));
+        assertEquals(ABSENT, table.probe(12345L + 512));
+        assertEquals(1, table.hits());
+        assertEquals(2, table.misses());
+        table.store(99L, 0, EXACT, Integer.MAX_VALUE - 20, -1);
+        entry = table.probe(99L);
+        assertEquals(Integer.MAX_VALUE - 20, score(entry));
+        assertEquals(-1, move(entry));
+        assertEquals(0, depth(entry));
+    }
+
+    /**
+     * Check that deeper results from the current search are kept, and
+     * that results from earlier searches are replaced.
+     */
+    @Test
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(16);
+        table.store(5L, 4, EXACT, 1, 7);
+        table.store(21L, 2, EXACT, 2, 8);
+        assertNotEquals(ABSENT, table.probe(5L));
+        assertEquals(ABSENT, table.probe(21L));
+        table.store(21L, 4, EXACT, 2, 8);
+        assertEquals(ABSENT, table.probe(5L));
+        table.newSearch();
+        table.store(5L, 1, UPPER, 3, -1);
+        long entry = table.probe(5L);
+        assertEquals(1, depth(entry));
+        assertEquals(UPPER, bound(entry));
+        assertEquals(-1, move(entry));
+    }
+
+    /**
+     * Check that clearing removes all entries.
+     */
+    @Test
+    public void testClear() {
+        TranspositionTable table = new TranspositionTable(64);
+        table.store(5L, 2, EXACT, 7, 3);
+        table.probe(5L);
+        table.clear();
+        assertEquals(0, table.hits());
+        assertEquals(ABSENT, table.probe(5L));
+    }
+
+}
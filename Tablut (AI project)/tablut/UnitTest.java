@@ -17,7 +17,10 @@ public class UnitTest {
      * the arguments of runClasses to run other JUnit tests.
      */
     public static void main(String[] ignored) {
-        textui.runClasses(UnitTest.class);
+        textui.runClasses(UnitTest.class, BoardTest.class,
+                          TranspositionTableTest.class, EvaluatorTest.class,
+                          OpeningBookTest.class, SearchStatsTest.class,
+                          SessionServerTest.class, TablebaseTest.class);
     }
 
     /**